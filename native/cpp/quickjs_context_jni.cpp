@@ -52,9 +52,11 @@ Java_com_whl_quickjs_wrapper_QuickJSContext_getProperty(JNIEnv *env, jobject thi
 extern "C"
 JNIEXPORT jobject JNICALL
 Java_com_whl_quickjs_wrapper_QuickJSContext_call(JNIEnv *env, jobject thiz, jlong context,
-                                                 jlong func, jlong this_obj, jint this_obj_tag, jobjectArray args) {
+                                                 jlong func, jlong this_obj, jint this_obj_tag,
+                                                 jbyteArray arg_types, jlongArray arg_primitives,
+                                                 jobjectArray arg_references) {
     auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
-    return wrapper->call(env, thiz, func, this_obj, this_obj_tag, args);
+    return wrapper->call(env, thiz, func, this_obj, this_obj_tag, arg_types, arg_primitives, arg_references);
 }
 
 extern "C"
@@ -290,4 +292,417 @@ Java_com_whl_quickjs_wrapper_QuickJSContext_setGCThreshold(JNIEnv *env, jobject
         size = -1;
     }
     JS_SetGCThreshold(rt, size);
-}
\ No newline at end of file
+}
+extern "C"
+JNIEXPORT jint JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_getInt(JNIEnv *env, jobject thiz, jlong context,
+                                                   jlong value, jstring name, jint default_value) {
+    if (name == nullptr) {
+        env->ThrowNew(env->FindClass("java/lang/NullPointerException"), "Property Name cannot be null");
+        return default_value;
+    }
+
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->getInt(env, value, name, default_value);
+}
+extern "C"
+JNIEXPORT jlong JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_getLong(JNIEnv *env, jobject thiz, jlong context,
+                                                    jlong value, jstring name, jlong default_value) {
+    if (name == nullptr) {
+        env->ThrowNew(env->FindClass("java/lang/NullPointerException"), "Property Name cannot be null");
+        return default_value;
+    }
+
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->getLong(env, value, name, default_value);
+}
+extern "C"
+JNIEXPORT jdouble JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_getDouble(JNIEnv *env, jobject thiz, jlong context,
+                                                      jlong value, jstring name, jdouble default_value) {
+    if (name == nullptr) {
+        env->ThrowNew(env->FindClass("java/lang/NullPointerException"), "Property Name cannot be null");
+        return default_value;
+    }
+
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->getDouble(env, value, name, default_value);
+}
+extern "C"
+JNIEXPORT jboolean JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_getBoolean(JNIEnv *env, jobject thiz, jlong context,
+                                                       jlong value, jstring name, jboolean default_value) {
+    if (name == nullptr) {
+        env->ThrowNew(env->FindClass("java/lang/NullPointerException"), "Property Name cannot be null");
+        return default_value;
+    }
+
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->getBoolean(env, value, name, default_value);
+}
+extern "C"
+JNIEXPORT jint JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_callInt(JNIEnv *env, jobject thiz, jlong context,
+                                                    jlong func, jlong this_obj, jint this_obj_tag,
+                                                    jbyteArray arg_types, jlongArray arg_primitives,
+                                                    jobjectArray arg_references) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->callInt(env, thiz, func, this_obj, this_obj_tag, arg_types, arg_primitives, arg_references);
+}
+extern "C"
+JNIEXPORT jdouble JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_callDouble(JNIEnv *env, jobject thiz, jlong context,
+                                                       jlong func, jlong this_obj, jint this_obj_tag,
+                                                       jbyteArray arg_types, jlongArray arg_primitives,
+                                                       jobjectArray arg_references) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->callDouble(env, thiz, func, this_obj, this_obj_tag, arg_types, arg_primitives, arg_references);
+}
+extern "C"
+JNIEXPORT jboolean JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_callBoolean(JNIEnv *env, jobject thiz, jlong context,
+                                                        jlong func, jlong this_obj, jint this_obj_tag,
+                                                        jbyteArray arg_types, jlongArray arg_primitives,
+                                                        jobjectArray arg_references) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->callBoolean(env, thiz, func, this_obj, this_obj_tag, arg_types, arg_primitives, arg_references);
+}
+extern "C"
+JNIEXPORT jintArray JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_toIntArray(JNIEnv *env, jobject thiz, jlong context,
+                                                       jlong value) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->toIntArray(env, value);
+}
+extern "C"
+JNIEXPORT jlongArray JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_toLongArray(JNIEnv *env, jobject thiz, jlong context,
+                                                        jlong value) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->toLongArray(env, value);
+}
+extern "C"
+JNIEXPORT jdoubleArray JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_toDoubleArray(JNIEnv *env, jobject thiz, jlong context,
+                                                          jlong value) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->toDoubleArray(env, value);
+}
+extern "C"
+JNIEXPORT jobjectArray JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_toStringArray(JNIEnv *env, jobject thiz, jlong context,
+                                                          jlong value) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->toStringArray(env, value);
+}
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_copyInto(JNIEnv *env, jobject thiz, jlong context,
+                                                     jlong value, jdoubleArray dst, jint offset,
+                                                     jint from, jint len) {
+    if (dst == nullptr) {
+        env->ThrowNew(env->FindClass("java/lang/NullPointerException"), "Destination array cannot be null");
+        return;
+    }
+
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    wrapper->copyInto(env, value, dst, offset, from, len);
+}
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_newIntArray(JNIEnv *env, jobject thiz, jlong context,
+                                                        jintArray values) {
+    if (values == nullptr) {
+        env->ThrowNew(env->FindClass("java/lang/NullPointerException"), "Array values cannot be null");
+        return nullptr;
+    }
+
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->newIntArray(env, thiz, values);
+}
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_newDoubleArray(JNIEnv *env, jobject thiz, jlong context,
+                                                           jdoubleArray values) {
+    if (values == nullptr) {
+        env->ThrowNew(env->FindClass("java/lang/NullPointerException"), "Array values cannot be null");
+        return nullptr;
+    }
+
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->newDoubleArray(env, thiz, values);
+}
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_newStringArray(JNIEnv *env, jobject thiz, jlong context,
+                                                           jobjectArray values) {
+    if (values == nullptr) {
+        env->ThrowNew(env->FindClass("java/lang/NullPointerException"), "Array values cannot be null");
+        return nullptr;
+    }
+
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->newStringArray(env, thiz, values);
+}
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_newObjectArray(JNIEnv *env, jobject thiz, jlong context,
+                                                           jbyteArray arg_types, jlongArray arg_primitives,
+                                                           jobjectArray arg_references) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->newObjectArray(env, thiz, arg_types, arg_primitives, arg_references);
+}
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_readArrayBuffer(JNIEnv *env, jobject thiz, jlong context,
+                                                            jlong obj, jstring name, jobject reader) {
+    if (name == nullptr) {
+        env->ThrowNew(env->FindClass("java/lang/NullPointerException"), "Property Name cannot be null");
+        return nullptr;
+    }
+
+    if (reader == nullptr) {
+        env->ThrowNew(env->FindClass("java/lang/NullPointerException"), "ArrayBufferReader cannot be null");
+        return nullptr;
+    }
+
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->readArrayBuffer(env, obj, name, reader);
+}
+extern "C"
+JNIEXPORT jint JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_newAtom(JNIEnv *env, jobject thiz, jlong context, jstring name) {
+    if (name == nullptr) {
+        env->ThrowNew(env->FindClass("java/lang/NullPointerException"), "Property Name cannot be null");
+        return 0;
+    }
+
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->newAtom(env, name);
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_freeAtoms(JNIEnv *env, jobject thiz, jlong context, jintArray atoms) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    wrapper->freeAtoms(env, atoms);
+}
+
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_getPropertyByAtom(JNIEnv *env, jobject thiz, jlong context,
+                                                              jlong obj_value, jint atom) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->getPropertyByAtom(env, thiz, obj_value, atom);
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_setPropertyByAtom(JNIEnv *env, jobject thiz, jlong context,
+                                                              jlong obj_value, jint atom, jobject value) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    wrapper->setPropertyByAtom(env, thiz, obj_value, atom, value);
+}
+extern "C"
+JNIEXPORT jobjectArray JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_getProperties(JNIEnv *env, jobject thiz, jlong context,
+                                                          jlong obj_value, jobjectArray names) {
+    if (names == nullptr) {
+        env->ThrowNew(env->FindClass("java/lang/NullPointerException"), "Property Names cannot be null");
+        return nullptr;
+    }
+
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->getProperties(env, thiz, obj_value, names);
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_setProperties(JNIEnv *env, jobject thiz, jlong context,
+                                                          jlong obj_value, jobjectArray names,
+                                                          jbyteArray arg_types, jlongArray arg_primitives,
+                                                          jobjectArray arg_references) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    wrapper->setProperties(env, thiz, obj_value, names, arg_types, arg_primitives, arg_references);
+}
+
+extern "C"
+JNIEXPORT jobjectArray JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_keys(JNIEnv *env, jobject thiz, jlong context, jlong obj_value) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->keys(env, obj_value);
+}
+
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_entries(JNIEnv *env, jobject thiz, jlong context, jlong obj_value) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->entries(env, thiz, obj_value);
+}
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_toJavaCollection(JNIEnv *env, jobject thiz, jlong context,
+                                                             jlong obj_value, jobject filter, jobject extra,
+                                                             jobject creator) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->toJavaCollection(env, thiz, obj_value, filter, extra, creator);
+}
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_toJS(JNIEnv *env, jobject thiz, jlong context, jbyteArray types,
+                                                 jlongArray primitives, jobjectArray references,
+                                                 jobjectArray keys, jint size) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->toJS(env, thiz, types, primitives, references, keys, size);
+}
+extern "C"
+JNIEXPORT jbyteArray JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_encode(JNIEnv *env, jobject thiz, jlong context, jlong obj_value) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->encode(env, obj_value);
+}
+
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_decode(JNIEnv *env, jobject thiz, jlong context,
+                                                   jobject direct_buffer, jbyteArray array, jint offset,
+                                                   jint length) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->decode(env, thiz, direct_buffer, array, offset, length);
+}
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_stringifyTo(JNIEnv *env, jobject thiz, jlong context, jlong obj_value,
+                                                        jobject out, jbyteArray buffer) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    wrapper->stringify(env, obj_value, out, buffer);
+}
+
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_parseBytes(JNIEnv *env, jobject thiz, jlong context, jbyteArray json,
+                                                       jint offset, jint length) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->parseBytes(env, thiz, json, offset, length);
+}
+
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_parseDirectBuffer(JNIEnv *env, jobject thiz, jlong context,
+                                                              jobject buffer, jint position, jint limit) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->parseDirectBuffer(env, thiz, buffer, position, limit);
+}
+
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_parseStream(JNIEnv *env, jobject thiz, jlong context, jobject in,
+                                                        jbyteArray chunk) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->parseStream(env, thiz, in, chunk);
+}
+
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_evaluateBytes(JNIEnv *env, jobject thiz, jlong context,
+                                                          jbyteArray array, jobject direct, jint offset, jint length,
+                                                          jstring file_name, jboolean is_module) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->evaluateBytes(env, thiz, array, direct, offset, length, file_name, is_module);
+}
+
+extern "C"
+JNIEXPORT jbyteArray JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_compileBytes(JNIEnv *env, jobject thiz, jlong context,
+                                                         jbyteArray array, jobject direct, jint offset, jint length,
+                                                         jstring file_name, jboolean is_module) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->compileBytes(env, array, direct, offset, length, file_name, is_module);
+}
+
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_evaluateFile(JNIEnv *env, jobject thiz, jlong context, jstring path,
+                                                         jstring file_name, jboolean is_module) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->evaluateFile(env, thiz, path, file_name, is_module);
+}
+
+extern "C"
+JNIEXPORT jbyteArray JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_compileFile(JNIEnv *env, jobject thiz, jlong context, jstring path,
+                                                        jstring file_name, jboolean is_module) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->compileFile(env, path, file_name, is_module);
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_setStringCacheSize(JNIEnv *env, jobject thiz, jlong context, jint capacity) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    wrapper->setStringCacheSize(env, capacity);
+}
+
+extern "C"
+JNIEXPORT jlongArray JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_getStringCacheStats(JNIEnv *env, jobject thiz, jlong context) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->getStringCacheStats(env);
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_freeValues(JNIEnv *env, jobject thiz, jlong context, jlongArray obj_values,
+                                                       jintArray counts, jint size) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    wrapper->freeValues(env, obj_values, counts, size);
+}
+
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_createFunction(JNIEnv *env, jobject thiz, jlong context, jstring name,
+                                                           jint call_function_id, jint kind) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->createFunction(env, thiz, name, call_function_id, kind);
+}
+
+extern "C"
+JNIEXPORT jint JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_getArgumentInt(JNIEnv *env, jobject thiz, jlong context, jlong args,
+                                                           jint index) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->getArgumentInt(env, args, index);
+}
+
+extern "C"
+JNIEXPORT jdouble JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_getArgumentDouble(JNIEnv *env, jobject thiz, jlong context, jlong args,
+                                                              jint index) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->getArgumentDouble(env, args, index);
+}
+
+extern "C"
+JNIEXPORT jboolean JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_getArgumentBoolean(JNIEnv *env, jobject thiz, jlong context, jlong args,
+                                                               jint index) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->getArgumentBoolean(env, args, index);
+}
+
+extern "C"
+JNIEXPORT jstring JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_getArgumentString(JNIEnv *env, jobject thiz, jlong context, jlong args,
+                                                              jint index) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->getArgumentString(env, args, index);
+}
+
+extern "C"
+JNIEXPORT jobject JNICALL
+Java_com_whl_quickjs_wrapper_QuickJSContext_getArgumentObject(JNIEnv *env, jobject thiz, jlong context, jlong args,
+                                                              jint index) {
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(context);
+    return wrapper->getArgumentObject(env, thiz, args, index);
+}
@@ -6,6 +6,13 @@
 #include "quickjs_extend_libraries.h"
 #include <cstring>
 #include <cmath>
+#include <unordered_map>
+#include <unordered_set>
+#include <cerrno>
+#include <fcntl.h>
+#include <unistd.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
 
 #define MAX_SAFE_INTEGER (((int64_t)1 << 53) - 1)
 
@@ -30,6 +37,40 @@ static bool JS_IsArrayBuffer(JSValue  value) {
     return JS_GetClassID(value) == JS_CLASS_ARRAY_BUFFER;
 }
 
+static void freeArrayBufferData(JSRuntime *rt, void *opaque, void *ptr) {
+    js_free_rt(rt, ptr);
+}
+
+// 通过构造一个空实例拿到内置类型对应的 class id
+static JSClassID getInstanceClassId(JSContext *ctx, JSValueConst global, const char *name) {
+    JSValue constructor = JS_GetPropertyStr(ctx, global, name);
+    JSValue instance = JS_CallConstructor(ctx, constructor, 0, nullptr);
+    JSClassID classId = JS_GetClassID(instance);
+    JS_FreeValue(ctx, instance);
+    JS_FreeValue(ctx, constructor);
+    return classId;
+}
+
+// 外部内存 ArrayBuffer 被回收时释放对 DirectByteBuffer 的全局引用，之后 Java 层才可以回收这块内存
+static void freeDirectBuffer(JSRuntime *rt, void *opaque, void *ptr) {
+    auto wrapper = reinterpret_cast<const QuickJSWrapper*>(JS_GetRuntimeOpaque(rt));
+    wrapper->jniEnv->DeleteGlobalRef(reinterpret_cast<jobject>(opaque));
+}
+
+static const char *typedArrayNames[TYPED_ARRAY_COUNT] = {
+        "Int8Array",
+        "Uint8Array",
+        "Uint8ClampedArray",
+        "Int16Array",
+        "Uint16Array",
+        "Int32Array",
+        "Uint32Array",
+        "BigInt64Array",
+        "BigUint64Array",
+        "Float32Array",
+        "Float64Array",
+};
+
 static void tryToTriggerOnError(JSContext *ctx, JSValueConst *error) {
     JSValue global = JS_GetGlobalObject(ctx);
     JSValue onerror = JS_GetPropertyStr(ctx, global, "onError");
@@ -87,6 +128,10 @@ static string getJSErrorStr(JSContext *ctx) {
 }
 
 static void throwJavaException(JNIEnv *env, const char *exceptionClass, const char *fmt, ...) {
+    if (env->ExceptionCheck()) {
+        return;
+    }
+
     char msg[512];
     va_list args;
     va_start (args, fmt);
@@ -111,10 +156,92 @@ static void throwJSException(JNIEnv *env, const char* msg) {
 }
 
 static void throwJSException(JNIEnv *env, JSContext *ctx) {
-    string error = getJSErrorStr(ctx);
-    throwJSException(env, error.c_str());
+    // 已经有 Java 异常等待抛出时保留原来的异常，不设置 cause
+    bool pending = env->ExceptionCheck();
+    JSValue error = JS_GetException(ctx);
+    string error_str = getJSErrorStr(ctx, error);
+    throwJSException(env, error_str.c_str());
+    auto wrapper = reinterpret_cast<QuickJSWrapper*>(JS_GetRuntimeOpaque(JS_GetRuntime(ctx)));
+    if (!pending && wrapper) {
+        wrapper->attachJavaCause(env, error);
+    }
+    JS_FreeValue(ctx, error);
+}
+
+static JSValue newLong(JSContext *ctx, jlong value) {
+    if (value > MAX_SAFE_INTEGER || value < -MAX_SAFE_INTEGER) {
+        return JS_NewBigInt64(ctx, value);
+    }
+
+    return JS_NewInt64(ctx, value);
+}
+
+static bool getArrayLength(JNIEnv *env, JSContext *ctx, JSValueConst array, uint32_t *plen) {
+    JSValue length = JS_GetPropertyStr(ctx, array, "length");
+    if (JS_IsException(length)) {
+        throwJSException(env, ctx);
+        return false;
+    }
+
+    int64_t len = 0;
+    int ret = JS_ToInt64(ctx, &len, length);
+    JS_FreeValue(ctx, length);
+    if (ret < 0) {
+        throwJSException(env, ctx);
+        return false;
+    }
+
+    // 长度来自 JS，稀疏数组的 length 可以远超 Java 数组的上限，分配之前先检查
+    if (len > INT32_MAX) {
+        char msg[128];
+        snprintf(msg, sizeof(msg), "Array length %lld exceeds the maximum Java array size", (long long) len);
+        throwJSException(env, msg);
+        return false;
+    }
+
+    *plen = len < 0 ? 0 : static_cast<uint32_t>(len);
+    return true;
+}
+
+// 逐个读取数组元素并转换成基础类型。
+// JS_GetPropertyUint32 对 QuickJS 的 fast array 会直接走数组下标读取，不会创建 atom，
+// 这里再对 int/float64 标记的元素直接取值，只有其他类型才走完整的类型转换。
+static bool readDoubleElements(JNIEnv *env, JSContext *ctx, JSValueConst array, uint32_t from, uint32_t len, double *out) {
+    for (uint32_t i = 0; i < len; i++) {
+        JSValue item = JS_GetPropertyUint32(ctx, array, from + i);
+        int tag = JS_VALUE_GET_TAG(item);
+        if (tag == JS_TAG_INT) {
+            out[i] = JS_VALUE_GET_INT(item);
+        } else if (JS_TAG_IS_FLOAT64(tag)) {
+            out[i] = JS_VALUE_GET_FLOAT64(item);
+        } else {
+            int ret = JS_IsException(item) ? -1 : JS_ToFloat64(ctx, &out[i], item);
+            JS_FreeValue(ctx, item);
+            if (ret < 0) {
+                throwJSException(env, ctx);
+                return false;
+            }
+        }
+    }
+    return true;
 }
 
+// 函数调用参数的类型标记，需要和 CallArguments.java 保持一致
+enum ArgumentType {
+    ARG_TYPE_NULL = 0,
+    ARG_TYPE_BOOLEAN = 1,
+    ARG_TYPE_INTEGER = 2,
+    ARG_TYPE_LONG = 3,
+    ARG_TYPE_DOUBLE = 4,
+    ARG_TYPE_STRING = 5,
+    ARG_TYPE_JS_OBJECT = 6,
+    ARG_TYPE_CALL_FUNCTION = 7,
+    ARG_TYPE_OTHER = 8,
+    ARG_TYPE_MAP = 9,
+    ARG_TYPE_LIST = 10,
+    ARG_TYPE_REFERENCE = 11,
+};
+
 // js function callback
 static JSClassID js_func_callback_class_id;
 
@@ -139,6 +266,15 @@ static JSValue jsFnCallback(JSContext *ctx,
 
     int callbackId = *((int *)JS_GetOpaque2(ctx, func_data[0], js_func_callback_class_id));
     auto wrapper = reinterpret_cast<QuickJSWrapper*>(JS_GetRuntimeOpaque(JS_GetRuntime(ctx)));
+    if (magic == CALLBACK_KIND_ARGUMENTS) {
+        return wrapper->jsArgumentsFuncCall(callbackId, this_obj, argc, argv);
+    }
+
+    if (magic != CALLBACK_KIND_CALL_FUNCTION) {
+        // 固定签名的回调，参数和返回值直接以基础类型传递
+        return wrapper->jsTypedFuncCall(callbackId, magic, argc, argv);
+    }
+
     JSValue value = wrapper->jsFuncCall(callbackId, this_obj, argc, argv);
     return value;
 }
@@ -333,12 +469,28 @@ QuickJSWrapper::QuickJSWrapper(JNIEnv *env, jobject thiz, JSRuntime *rt) {
     const char *getOwnPropertyNames = "Object.getOwnPropertyNames";
     ownPropertyNames = JS_Eval(context, getOwnPropertyNames, strlen(getOwnPropertyNames), getOwnPropertyNames, JS_EVAL_TYPE_GLOBAL);
 
+    // 缓存 TypedArray 的构造函数，并通过创建空实例拿到对应的 class id，避免硬编码 quickjs 内部的枚举值
+    JSValue global = JS_GetGlobalObject(context);
+    JSValue zero = JS_NewInt32(context, 0);
+    for (int i = 0; i < TYPED_ARRAY_COUNT; i++) {
+        typedArrayConstructors[i] = JS_GetPropertyStr(context, global, typedArrayNames[i]);
+        JSValue instance = JS_CallConstructor(context, typedArrayConstructors[i], 1, &zero);
+        typedArrayClassIds[i] = JS_GetClassID(instance);
+        JS_FreeValue(context, instance);
+    }
+    numberClassId = getInstanceClassId(context, global, "Number");
+    stringClassId = getInstanceClassId(context, global, "String");
+    booleanClassId = getInstanceClassId(context, global, "Boolean");
+    JS_FreeValue(context, global);
+
 
     objectClass = (jclass)(jniEnv->NewGlobalRef(jniEnv->FindClass("java/lang/Object")));
     booleanClass = (jclass)(jniEnv->NewGlobalRef(jniEnv->FindClass("java/lang/Boolean")));
     integerClass = (jclass)(jniEnv->NewGlobalRef(jniEnv->FindClass("java/lang/Integer")));
     longClass = (jclass)(jniEnv->NewGlobalRef(jniEnv->FindClass("java/lang/Long")));
     doubleClass = (jclass)(jniEnv->NewGlobalRef(jniEnv->FindClass("java/lang/Double")));
+    numberClass = (jclass)(jniEnv->NewGlobalRef(jniEnv->FindClass("java/lang/Number")));
+    characterClass = (jclass)(jniEnv->NewGlobalRef(jniEnv->FindClass("java/lang/Character")));
     stringClass = (jclass)(jniEnv->NewGlobalRef(jniEnv->FindClass("java/lang/String")));
     jsObjectClass = (jclass)(jniEnv->NewGlobalRef(jniEnv->FindClass("com/whl/quickjs/wrapper/JSObject")));
     jsArrayClass = (jclass)(jniEnv->NewGlobalRef(jniEnv->FindClass("com/whl/quickjs/wrapper/JSArray")));
@@ -348,6 +500,18 @@ QuickJSWrapper::QuickJSWrapper(JNIEnv *env, jobject thiz, JSRuntime *rt) {
     moduleLoaderClass = (jclass)(jniEnv->NewGlobalRef(jniEnv->FindClass("com/whl/quickjs/wrapper/ModuleLoader")));
     creatorClass = (jclass)(jniEnv->NewGlobalRef(jniEnv->FindClass("com/whl/quickjs/wrapper/JSObjectCreator")));
     byteArrayClass = (jclass) jniEnv->NewGlobalRef(env->FindClass("[B"));
+    shortArrayClass = (jclass) jniEnv->NewGlobalRef(env->FindClass("[S"));
+    intArrayClass = (jclass) jniEnv->NewGlobalRef(env->FindClass("[I"));
+    longArrayClass = (jclass) jniEnv->NewGlobalRef(env->FindClass("[J"));
+    floatArrayClass = (jclass) jniEnv->NewGlobalRef(env->FindClass("[F"));
+    doubleArrayClass = (jclass) jniEnv->NewGlobalRef(env->FindClass("[D"));
+    byteBufferClass = (jclass) jniEnv->NewGlobalRef(env->FindClass("java/nio/ByteBuffer"));
+    arrayBufferReaderClass = (jclass) jniEnv->NewGlobalRef(env->FindClass("com/whl/quickjs/wrapper/ArrayBufferReader"));
+    jsEntriesClass = (jclass) jniEnv->NewGlobalRef(env->FindClass("com/whl/quickjs/wrapper/JSEntries"));
+    hashMapClass = (jclass) jniEnv->NewGlobalRef(env->FindClass("java/util/HashMap"));
+    arrayListClass = (jclass) jniEnv->NewGlobalRef(env->FindClass("java/util/ArrayList"));
+    mapFilterClass = (jclass) jniEnv->NewGlobalRef(env->FindClass("com/whl/quickjs/wrapper/MapFilter"));
+    mapCreatorClass = (jclass) jniEnv->NewGlobalRef(env->FindClass("com/whl/quickjs/wrapper/MapCreator"));
 
     booleanValueOf = jniEnv->GetStaticMethodID(booleanClass, "valueOf", "(Z)Ljava/lang/Boolean;");
     integerValueOf = jniEnv->GetStaticMethodID(integerClass, "valueOf", "(I)Ljava/lang/Integer;");
@@ -358,11 +522,48 @@ QuickJSWrapper::QuickJSWrapper(JNIEnv *env, jobject thiz, JSRuntime *rt) {
     integerGetValue = jniEnv->GetMethodID(integerClass, "intValue", "()I");
     longGetValue = jniEnv->GetMethodID(longClass, "longValue", "()J");
     doubleGetValue = jniEnv->GetMethodID(doubleClass, "doubleValue", "()D");
+    numberDoubleValue = jniEnv->GetMethodID(numberClass, "doubleValue", "()D");
     jsObjectGetValue = jniEnv->GetMethodID(jsObjectClass, "getPointer", "()J");
+    jsObjectReleaseM = jniEnv->GetMethodID(jsObjectClass, "release", "()V");
+    objectToStringM = jniEnv->GetMethodID(objectClass, "toString", "()Ljava/lang/String;");
+    jclass throwableClass = jniEnv->FindClass("java/lang/Throwable");
+    throwableInitCauseM = jniEnv->GetMethodID(throwableClass, "initCause", "(Ljava/lang/Throwable;)Ljava/lang/Throwable;");
+    jniEnv->DeleteLocalRef(throwableClass);
+    byteBufferPositionM = jniEnv->GetMethodID(byteBufferClass, "position", "()I");
+    byteBufferLimitM = jniEnv->GetMethodID(byteBufferClass, "limit", "()I");
+    byteBufferIsReadOnlyM = jniEnv->GetMethodID(byteBufferClass, "isReadOnly", "()Z");
+    byteBufferDuplicateM = jniEnv->GetMethodID(byteBufferClass, "duplicate", "()Ljava/nio/ByteBuffer;");
+    byteBufferGetM = jniEnv->GetMethodID(byteBufferClass, "get", "([B)Ljava/nio/ByteBuffer;");
+    byteBufferAsReadOnlyM = jniEnv->GetMethodID(byteBufferClass, "asReadOnlyBuffer", "()Ljava/nio/ByteBuffer;");
+    hashMapInitM = jniEnv->GetMethodID(hashMapClass, "<init>", "()V");
+    arrayListInitM = jniEnv->GetMethodID(arrayListClass, "<init>", "(I)V");
+    jclass mapClass = env->FindClass("java/util/Map");
+    mapPutM = jniEnv->GetMethodID(mapClass, "put", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
+    env->DeleteLocalRef(mapClass);
+    jclass listClass = env->FindClass("java/util/List");
+    listAddM = jniEnv->GetMethodID(listClass, "add", "(Ljava/lang/Object;)Z");
+    listGetM = jniEnv->GetMethodID(listClass, "get", "(I)Ljava/lang/Object;");
+    env->DeleteLocalRef(listClass);
+    mapFilterShouldSkipKeyM = jniEnv->GetMethodID(mapFilterClass, "shouldSkipKey", "(Ljava/lang/String;JLjava/lang/Object;)Z");
+    mapCreatorGetM = jniEnv->GetMethodID(mapCreatorClass, "get", "()Ljava/util/Map;");
+    jclass outputStreamClass = env->FindClass("java/io/OutputStream");
+    outputStreamWriteM = jniEnv->GetMethodID(outputStreamClass, "write", "([BII)V");
+    env->DeleteLocalRef(outputStreamClass);
+    jclass inputStreamClass = env->FindClass("java/io/InputStream");
+    inputStreamReadM = jniEnv->GetMethodID(inputStreamClass, "read", "([BII)I");
+    env->DeleteLocalRef(inputStreamClass);
+    jsEntriesInitM = jniEnv->GetMethodID(jsEntriesClass, "<init>", "([Ljava/lang/String;[Ljava/lang/Object;)V");
+    arrayBufferReaderReadM = jniEnv->GetMethodID(arrayBufferReaderClass, "read", "(Ljava/nio/ByteBuffer;)Ljava/lang/Object;");
 
     callFunctionBackM = jniEnv->GetMethodID(quickjsContextClass, "callFunctionBack", "(I[Ljava/lang/Object;)Ljava/lang/Object;");
     removeCallFunctionM = jniEnv->GetMethodID(quickjsContextClass, "removeCallFunction", "(I)V");
-    callFunctionHashCodeM = jniEnv->GetMethodID(objectClass, "hashCode", "()I");
+    registerCallFunctionM = jniEnv->GetMethodID(quickjsContextClass, "registerCallFunction", "(Lcom/whl/quickjs/wrapper/JSCallFunction;)I");
+    callDoubleBinaryBackM = jniEnv->GetMethodID(quickjsContextClass, "callDoubleBinaryBack", "(IDD)D");
+    callDoubleBackM = jniEnv->GetMethodID(quickjsContextClass, "callDoubleBack", "(ID)D");
+    callIntBackM = jniEnv->GetMethodID(quickjsContextClass, "callIntBack", "(II)I");
+    callIntConsumerBackM = jniEnv->GetMethodID(quickjsContextClass, "callIntConsumerBack", "(II)V");
+    callStringToIntBackM = jniEnv->GetMethodID(quickjsContextClass, "callStringToIntBack", "(ILjava/lang/String;)I");
+    callArgumentsBackM = jniEnv->GetMethodID(quickjsContextClass, "callArgumentsBack", "(IJI)Ljava/lang/Object;");
     creatorM = jniEnv->GetMethodID(quickjsContextClass, "getCreator", "()Lcom/whl/quickjs/wrapper/JSObjectCreator;");
     newObjectM = jniEnv->GetMethodID(creatorClass, "newObject",
                                      "(Lcom/whl/quickjs/wrapper/QuickJSContext;J)Lcom/whl/quickjs/wrapper/JSObject;");
@@ -373,13 +574,23 @@ QuickJSWrapper::QuickJSWrapper(JNIEnv *env, jobject thiz, JSRuntime *rt) {
 }
 
 QuickJSWrapper::~QuickJSWrapper() {
+    stringCache.clear(jniEnv, context);
     JS_FreeValue(context, ownPropertyNames);
+    for (auto &constructor : typedArrayConstructors) {
+        JS_FreeValue(context, constructor);
+    }
+    JS_FreeValue(context, javaError);
+    if (javaErrorCause != nullptr) {
+        jniEnv->DeleteGlobalRef(javaErrorCause);
+    }
     JS_FreeContext(context);
     JS_FreeRuntime(runtime);
 
     jniEnv->DeleteGlobalRef(jniThiz);
     jniEnv->DeleteGlobalRef(objectClass);
     jniEnv->DeleteGlobalRef(doubleClass);
+    jniEnv->DeleteGlobalRef(numberClass);
+    jniEnv->DeleteGlobalRef(characterClass);
     jniEnv->DeleteGlobalRef(integerClass);
     jniEnv->DeleteGlobalRef(longClass);
     jniEnv->DeleteGlobalRef(booleanClass);
@@ -392,6 +603,18 @@ QuickJSWrapper::~QuickJSWrapper() {
     jniEnv->DeleteGlobalRef(quickjsContextClass);
     jniEnv->DeleteGlobalRef(creatorClass);
     jniEnv->DeleteGlobalRef(byteArrayClass);
+    jniEnv->DeleteGlobalRef(shortArrayClass);
+    jniEnv->DeleteGlobalRef(intArrayClass);
+    jniEnv->DeleteGlobalRef(longArrayClass);
+    jniEnv->DeleteGlobalRef(floatArrayClass);
+    jniEnv->DeleteGlobalRef(doubleArrayClass);
+    jniEnv->DeleteGlobalRef(byteBufferClass);
+    jniEnv->DeleteGlobalRef(arrayBufferReaderClass);
+    jniEnv->DeleteGlobalRef(jsEntriesClass);
+    jniEnv->DeleteGlobalRef(hashMapClass);
+    jniEnv->DeleteGlobalRef(arrayListClass);
+    jniEnv->DeleteGlobalRef(mapFilterClass);
+    jniEnv->DeleteGlobalRef(mapCreatorClass);
 }
 
 jobject QuickJSWrapper::toJavaObject(JNIEnv *env, jobject thiz, JSValueConst this_obj, JSValueConst value) const{
@@ -447,11 +670,23 @@ jobject QuickJSWrapper::toJavaObject(JNIEnv *env, jobject thiz, JSValueConst thi
         case JS_TAG_OBJECT: {
             auto value_ptr = reinterpret_cast<jlong>(JS_VALUE_GET_PTR(value));
             jobject creatorObj = env->CallObjectMethod(thiz, creatorM);
+            int typedArrayType = getTypedArrayType(value);
             if (JS_IsFunction(context, value)) {
                 auto obj_ptr = reinterpret_cast<jlong>(JS_VALUE_GET_PTR(this_obj));
+                // JSFunction 调用时需要 this 仍然有效，对象类型的 this 计数加一，由 Java 层在函数释放时一起释放
+                bool hasReceiver = JS_VALUE_GET_TAG(this_obj) == JS_TAG_OBJECT;
+                if (hasReceiver) {
+                    JS_DupValue(context, this_obj);
+                }
                 result = env->CallObjectMethod(creatorObj, newFunctionM, thiz, value_ptr, obj_ptr, JS_VALUE_GET_TAG(this_obj));
+                if (hasReceiver && env->ExceptionCheck()) {
+                    JS_FreeValue(context, this_obj);
+                }
             } else if (JS_IsArray(context, value)) {
                 result = env->CallObjectMethod(creatorObj, newArrayM, thiz, value_ptr);
+            } else if (typedArrayType >= 0) {
+                result = toJavaTypedArray(env, value, typedArrayType);
+                JS_FreeValue(context, value);
             } else if (JS_IsArrayBuffer(value)) {
                 size_t byteLength = 0;
                 uint8_t *buffer = JS_GetArrayBuffer(context, &byteLength, value);
@@ -460,8 +695,9 @@ jobject QuickJSWrapper::toJavaObject(JNIEnv *env, jobject thiz, JSValueConst thi
                 jbyte *elements = reinterpret_cast<jbyte *>(elementsPtr);
                 memcpy(elements, buffer, byteLength);
                 result = byteArray;
-                JS_FreeValue(context, value);
                 env->ReleasePrimitiveArrayCritical(byteArray, elements, 0);
+                // 释放 value 可能触发 ArrayBuffer 的 free 回调（JNI 调用），不能放在 Critical 区间内
+                JS_FreeValue(context, value);
             } else {
                 result = env->CallObjectMethod(creatorObj, newObjectM, thiz, value_ptr);
             }
@@ -481,9 +717,16 @@ jobject QuickJSWrapper::evaluate(JNIEnv *env, jobject thiz, jstring script, jstr
     const char *c_script = env->GetStringUTFChars(script, JNI_FALSE);
     const char *c_file_name = env->GetStringUTFChars(file_name, JNI_FALSE);
 
-    JSValue result = JS_Eval(context, c_script, strlen(c_script), c_file_name, JS_EVAL_TYPE_GLOBAL);
+    jobject result = evalBuffer(env, thiz, c_script, strlen(c_script), c_file_name, false);
     env->ReleaseStringUTFChars(script, c_script);
     env->ReleaseStringUTFChars(file_name, c_file_name);
+    return result;
+}
+
+// buf[len] 必须为 '\0'，QuickJS 的解析器依赖结尾的 '\0'
+jobject QuickJSWrapper::evalBuffer(JNIEnv *env, jobject thiz, const char *buf, size_t len, const char *file_name,
+                                   bool isModule) {
+    JSValue result = JS_Eval(context, buf, len, file_name, isModule ? JS_EVAL_TYPE_MODULE : JS_EVAL_TYPE_GLOBAL);
     if (JS_IsException(result)) {
         throwJSException(env, context);
         return nullptr;
@@ -494,7 +737,14 @@ jobject QuickJSWrapper::evaluate(JNIEnv *env, jobject thiz, jstring script, jstr
         return nullptr;
     }
 
-    return toJavaObject(env, thiz, JS_UNDEFINED, result);
+    if (!isModule) {
+        return toJavaObject(env, thiz, JS_UNDEFINED, result);
+    }
+
+    JSValue global = JS_GetGlobalObject(context);
+    jobject jsObj = toJavaObject(env, thiz, global, result);
+    JS_FreeValue(context, global);
+    return jsObj;
 }
 
 jobject QuickJSWrapper::getGlobalObject(JNIEnv *env, jobject thiz) const {
@@ -507,7 +757,7 @@ jobject QuickJSWrapper::getGlobalObject(JNIEnv *env, jobject thiz) const {
     return result;
 }
 
-jobject QuickJSWrapper::getProperty(JNIEnv *env, jobject thiz, jlong value, jstring name) {
+JSValue QuickJSWrapper::getPropertyValue(JNIEnv *env, jlong value, jstring name) const {
     JSValue jsObject = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value));
 
     const char *propsName = env->GetStringUTFChars(name, JNI_FALSE);
@@ -515,33 +765,94 @@ jobject QuickJSWrapper::getProperty(JNIEnv *env, jobject thiz, jlong value, jstr
     env->ReleaseStringUTFChars(name, propsName);
     if (JS_IsException(propsValue)) {
         throwJSException(env, context);
+    }
+
+    return propsValue;
+}
+
+jobject QuickJSWrapper::getProperty(JNIEnv *env, jobject thiz, jlong value, jstring name) {
+    JSValue propsValue = getPropertyValue(env, value, name);
+    if (JS_IsException(propsValue)) {
         return nullptr;
     }
 
+    JSValue jsObject = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value));
     return toJavaObject(env, thiz, jsObject, propsValue);
 }
 
-jobject QuickJSWrapper::call(JNIEnv *env, jobject thiz, jlong func, jlong this_obj,
-                             jint this_obj_tag, jobjectArray args) {
-    int argc = env->GetArrayLength(args);
-    vector<JSValue> arguments;
-    vector<JSValue> freeArguments;
-    for (int numArgs = 0; numArgs < argc && !env->ExceptionCheck(); numArgs++) {
-        jobject arg = env->GetObjectArrayElement(args, numArgs);
-        auto jsArg = toJSValue(env, thiz, arg);
-        if (JS_IsException(jsArg)) {
-            return nullptr;
+JSValue QuickJSWrapper::toJSArgument(JNIEnv *env, jobject thiz, jbyte type, jlong primitive,
+                                     jobjectArray references, jsize index) const {
+    JSValue result;
+    switch (type) {
+        case ARG_TYPE_NULL:
+            result = JS_NULL;
+            break;
+        case ARG_TYPE_BOOLEAN:
+            result = JS_NewBool(context, primitive != 0);
+            break;
+        case ARG_TYPE_INTEGER:
+            result = JS_NewInt32(context, static_cast<int32_t>(primitive));
+            break;
+        case ARG_TYPE_LONG:
+            result = newLong(context, primitive);
+            break;
+        case ARG_TYPE_DOUBLE: {
+            double d;
+            memcpy(&d, &primitive, sizeof(d));
+            result = JS_NewFloat64(context, d);
+            break;
+        }
+        case ARG_TYPE_STRING: {
+            auto str = (jstring) env->GetObjectArrayElement(references, index);
+            result = toJSString(env, str);
+            env->DeleteLocalRef(str);
+            break;
+        }
+        case ARG_TYPE_JS_OBJECT:
+            // 注意：这里没有增加引用计数，由调用方决定是否需要 JS_DupValue
+            result = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(primitive));
+            break;
+        case ARG_TYPE_CALL_FUNCTION:
+            result = newCallFunction(static_cast<int>(primitive));
+            break;
+        default: {
+            jobject arg = env->GetObjectArrayElement(references, index);
+            result = toJSValue(env, thiz, arg);
+            env->DeleteLocalRef(arg);
+            break;
         }
+    }
 
-        // 基础类型(例如 string )和 Java callback 类型需要使用完 free.
-        if (env->IsInstanceOf(arg, stringClass) || env->IsInstanceOf(arg, doubleClass) ||
-            env->IsInstanceOf(arg, integerClass) || env->IsInstanceOf(arg, longClass) ||
-            env->IsInstanceOf(arg, booleanClass) || env->IsInstanceOf(arg, jsCallFunctionClass)
-            || env->IsInstanceOf(arg, byteArrayClass)) {
-            freeArguments.push_back(jsArg);
+    return result;
+}
+
+// JSObject 类型的参数由 Java 层持有引用，不需要 free，替换成 undefined 之后其他参数可以统一 free
+static void dropBorrowedArguments(const vector<jbyte> &types, vector<JSValue> &arguments) {
+    for (size_t i = 0; i < arguments.size(); i++) {
+        if (types[i] == ARG_TYPE_JS_OBJECT) {
+            arguments[i] = JS_UNDEFINED;
         }
+    }
+}
+
+JSValue QuickJSWrapper::callFunction(JNIEnv *env, jobject thiz, jlong func, jlong this_obj, jint this_obj_tag,
+                                     jbyteArray arg_types, jlongArray arg_primitives, jobjectArray arg_references) {
+    int argc = env->GetArrayLength(arg_types);
+    vector<jbyte> types(argc);
+    vector<jlong> primitives(argc);
+    env->GetByteArrayRegion(arg_types, 0, argc, types.data());
+    env->GetLongArrayRegion(arg_primitives, 0, argc, primitives.data());
+
+    vector<JSValue> arguments;
+    arguments.reserve(argc);
+    for (int i = 0; i < argc; i++) {
+        JSValue jsArg = toJSArgument(env, thiz, types[i], primitives[i], arg_references, i);
 
-        env->DeleteLocalRef(arg);
+        if (JS_IsException(jsArg)) {
+            dropBorrowedArguments(types, arguments);
+            releaseArguments(env, thiz, types, primitives, i + 1, arguments);
+            return JS_EXCEPTION;
+        }
 
         arguments.push_back(jsArg);
     }
@@ -549,26 +860,33 @@ jobject QuickJSWrapper::call(JNIEnv *env, jobject thiz, jlong func, jlong this_o
     JSValue jsObj = JS_MKPTR(this_obj_tag, reinterpret_cast<void *>(this_obj));
     JSValue jsFunc = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(func));
 
-    JSValue ret = JS_Call(context, jsFunc, jsObj, arguments.size(), arguments.data());
+    JSValue ret = JS_Call(context, jsFunc, jsObj, argc, arguments.data());
+
+    // 除了 JSObject 类型的参数（由 Java 层持有引用），其他参数都是这里新创建的，使用完需要 free.
+    dropBorrowedArguments(types, arguments);
+    releaseArguments(env, thiz, types, primitives, argc, arguments);
+
     if (JS_IsException(ret)) {
-        JS_FreeValue(context, ret);
         throwJSException(env, context);
-        return nullptr;
+        return JS_EXCEPTION;
     }
 
-    for (JSValue argument : freeArguments) {
-        JS_FreeValue(context, argument);
+    if (!executePendingJobLoop(env, runtime, context)) {
+        JS_FreeValue(context, ret);
+        return JS_EXCEPTION;
     }
 
-    // release vector by swap.
-    vector<JSValue>().swap(arguments);
-    vector<JSValue>().swap(freeArguments);
+    return ret;
+}
 
-    if (!executePendingJobLoop(env, runtime, context)) {
-        JS_FreeValue(context, ret);
+jobject QuickJSWrapper::call(JNIEnv *env, jobject thiz, jlong func, jlong this_obj, jint this_obj_tag,
+                             jbyteArray arg_types, jlongArray arg_primitives, jobjectArray arg_references) {
+    JSValue ret = callFunction(env, thiz, func, this_obj, this_obj_tag, arg_types, arg_primitives, arg_references);
+    if (JS_IsException(ret)) {
         return nullptr;
     }
 
+    JSValue jsObj = JS_MKPTR(this_obj_tag, reinterpret_cast<void *>(this_obj));
     return toJavaObject(env, thiz, jsObj, ret);
 }
 
@@ -606,37 +924,43 @@ jobject QuickJSWrapper::get(JNIEnv *env, jobject thiz, jlong value, jint index)
 void QuickJSWrapper::set(JNIEnv *env, jobject thiz, jlong this_obj, jobject value, jint index) {
     JSValue jsObj = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(this_obj));
     JSValue child = toJSValue(env, thiz, value);
-    if (JS_IsString(child)) {
-        // JSString 类型不需要 JS_DupValue
-        JS_SetPropertyUint32(context, jsObj, index, child);
-    } else {
-        JS_SetPropertyUint32(context, jsObj, index, JS_DupValue(context, child));
+    if (env->IsInstanceOf(value, jsObjectClass)) {
+        // 已有的 JSObject 对象由 Java 层持有一份计数，这里需要手动增加引用计数，和 setPropertyValue 一致。
+        // 其他类型（包括 DirectByteBuffer 对应的 ArrayBuffer）是新创建的值，直接转移给数组。
+        JS_DupValue(context, child);
     }
-
+    JS_SetPropertyUint32(context, jsObj, index, child);
 }
 
 void
 QuickJSWrapper::setProperty(JNIEnv *env, jobject thiz, jlong this_obj, jstring name, jobject value) const {
     const char* propName = env->GetStringUTFChars(name, JNI_FALSE);
+    JSAtom atom = JS_NewAtom(context, propName);
+    env->ReleaseStringUTFChars(name, propName);
+
+    setPropertyValue(env, thiz, this_obj, atom, value);
+    JS_FreeAtom(context, atom);
+}
+
+void QuickJSWrapper::defineFunctionName(JSValueConst func, JSAtom atom) const {
+    // 通过 JS_NewCFunctionData 创建的 fn 对象的 name 属性值被定义为 Empty 了，
+    // 这里需要额外定义下，不然 js 层拿到的 fn.name 的值为空.
+    JSAtom name_atom_key = JS_NewAtom(context, "name");
+    JS_DefinePropertyValue(context, func, name_atom_key, JS_AtomToString(context, atom), JS_PROP_CONFIGURABLE);
+    JS_FreeAtom(context, name_atom_key);
+}
+
+void QuickJSWrapper::setPropertyValue(JNIEnv *env, jobject thiz, jlong this_obj, JSAtom atom, jobject value) const {
     JSValue propValue = toJSValue(env, thiz, value);
     if(env->IsInstanceOf(value, jsObjectClass)) {
         // 这里需要手动增加引用计数，不然 QuickJS 垃圾回收会报 assertion "p->ref_count > 0" 的错误。
         JS_DupValue(context, propValue);
     } else if (env->IsInstanceOf(value, jsCallFunctionClass)) {
-        // 通过 JS_NewCFunctionData 创建的 fn 对象的 name 属性值被定义为 Empty 了，
-        // 这里需要额外定义下，不然 js 层拿到的 fn.name 的值为空.
-        JSAtom name_atom = JS_NewAtom(context, propName);
-        JSAtom name_atom_key = JS_NewAtom(context, "name");
-        JS_DefinePropertyValue(context, propValue, name_atom_key,
-                               JS_AtomToString(context, name_atom), JS_PROP_CONFIGURABLE);
-        JS_FreeAtom(context, name_atom);
-        JS_FreeAtom(context, name_atom_key);
+        defineFunctionName(propValue, atom);
     }
 
     JSValue jsObj = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(this_obj));
-    JS_SetPropertyStr(context, jsObj, propName, propValue);
-
-    env->ReleaseStringUTFChars(name, propName);
+    JS_SetProperty(context, jsObj, atom, propValue);
 }
 
 JSValue QuickJSWrapper::jsFuncCall(int callback_id, JSValueConst this_val, int argc, JSValueConst *argv){
@@ -663,6 +987,151 @@ JSValue QuickJSWrapper::jsFuncCall(int callback_id, JSValueConst this_val, int a
     return jsValue;
 }
 
+// 把回调刚抛出的 Java 异常转为 JS 的 InternalError，消息是 Java 异常的 toString。
+// 只返回 JS_EXCEPTION 而没有 JS 异常时，JS 的 try/catch 拿不到错误，所以先清除 Java 异常再抛出 JS 异常。
+// 原始的 Java 异常记录下来，错误没有被 JS 捕获时作为 QuickJSException 的 cause
+JSValue QuickJSWrapper::throwPendingJavaException() {
+    jthrowable exception = jniEnv->ExceptionOccurred();
+    jniEnv->ExceptionClear();
+
+    auto message = (jstring) jniEnv->CallObjectMethod(exception, objectToStringM);
+    if (jniEnv->ExceptionCheck() || message == nullptr) {
+        // toString 本身也抛出异常时只保留类名
+        jniEnv->ExceptionClear();
+        jclass type = jniEnv->GetObjectClass(exception);
+        string name = getJavaName(jniEnv, type);
+        jniEnv->DeleteLocalRef(type);
+        JS_ThrowInternalError(context, "%s", name.c_str());
+    } else {
+        const char *c_message = jniEnv->GetStringUTFChars(message, nullptr);
+        JS_ThrowInternalError(context, "%s", c_message);
+        jniEnv->ReleaseStringUTFChars(message, c_message);
+        jniEnv->DeleteLocalRef(message);
+    }
+
+    JS_FreeValue(context, javaError);
+    if (javaErrorCause != nullptr) {
+        jniEnv->DeleteGlobalRef(javaErrorCause);
+    }
+    JSValue error = JS_GetException(context);
+    javaError = JS_DupValue(context, error);
+    javaErrorCause = (jthrowable) jniEnv->NewGlobalRef(exception);
+    jniEnv->DeleteLocalRef(exception);
+    return JS_Throw(context, error);
+}
+
+// 抛到 Java 层的 JS 错误是由 Java 异常转换来的时，把原始的 Java 异常设置为 cause
+void QuickJSWrapper::attachJavaCause(JNIEnv *env, JSValueConst error) {
+    if (javaErrorCause == nullptr) {
+        return;
+    }
+
+    if (JS_VALUE_GET_TAG(error) == JS_TAG_OBJECT && JS_VALUE_GET_PTR(error) == JS_VALUE_GET_PTR(javaError)) {
+        jthrowable exception = env->ExceptionOccurred();
+        env->ExceptionClear();
+        env->CallObjectMethod(exception, throwableInitCauseM, javaErrorCause);
+        env->ExceptionClear();
+        env->Throw(exception);
+        env->DeleteLocalRef(exception);
+    }
+
+    // 只对应最近一次抛出的错误，报告之后不再保留
+    JS_FreeValue(context, javaError);
+    javaError = JS_UNDEFINED;
+    env->DeleteGlobalRef(javaErrorCause);
+    javaErrorCause = nullptr;
+}
+
+JSValue QuickJSWrapper::jsTypedFuncCall(int callback_id, int kind, int argc, JSValueConst *argv) {
+    // 之前的回调抛出的 Java 异常还没有处理，保留它，直接中断 JS 的执行
+    if (jniEnv->ExceptionCheck()) {
+        return JS_EXCEPTION;
+    }
+
+    // 缺少的参数按 undefined 处理，和 JS 的类型转换规则一致（数值为 NaN，整数为 0）
+    JSValueConst arg0 = argc > 0 ? argv[0] : JS_UNDEFINED;
+    JSValueConst arg1 = argc > 1 ? argv[1] : JS_UNDEFINED;
+    JSValue result;
+    switch (kind) {
+        case CALLBACK_KIND_DOUBLE_BINARY: {
+            double a, b;
+            if (JS_ToFloat64(context, &a, arg0) < 0 || JS_ToFloat64(context, &b, arg1) < 0) {
+                return JS_EXCEPTION;
+            }
+            result = JS_NewFloat64(context, jniEnv->CallDoubleMethod(jniThiz, callDoubleBinaryBackM, callback_id, a, b));
+            break;
+        }
+        case CALLBACK_KIND_DOUBLE: {
+            double a;
+            if (JS_ToFloat64(context, &a, arg0) < 0) {
+                return JS_EXCEPTION;
+            }
+            result = JS_NewFloat64(context, jniEnv->CallDoubleMethod(jniThiz, callDoubleBackM, callback_id, a));
+            break;
+        }
+        case CALLBACK_KIND_INT: {
+            int32_t a;
+            if (JS_ToInt32(context, &a, arg0) < 0) {
+                return JS_EXCEPTION;
+            }
+            result = JS_NewInt32(context, jniEnv->CallIntMethod(jniThiz, callIntBackM, callback_id, a));
+            break;
+        }
+        case CALLBACK_KIND_INT_CONSUMER: {
+            int32_t a;
+            if (JS_ToInt32(context, &a, arg0) < 0) {
+                return JS_EXCEPTION;
+            }
+            jniEnv->CallVoidMethod(jniThiz, callIntConsumerBackM, callback_id, a);
+            result = JS_UNDEFINED;
+            break;
+        }
+        case CALLBACK_KIND_STRING_TO_INT: {
+            JSValue str = JS_ToString(context, arg0);
+            if (JS_IsException(str)) {
+                return JS_EXCEPTION;
+            }
+            jstring javaStr = toJavaString(jniEnv, str);
+            result = JS_NewInt32(context, jniEnv->CallIntMethod(jniThiz, callStringToIntBackM, callback_id, javaStr));
+            jniEnv->DeleteLocalRef(javaStr);
+            break;
+        }
+        default:
+            return JS_ThrowInternalError(context, "Unknown callback kind: %d", kind);
+    }
+
+    // Java 层抛出的异常转为 JS 异常，中断 JS 的执行，没有被 JS 捕获时由上层调用抛出 QuickJSException
+    if (jniEnv->ExceptionCheck()) {
+        return throwPendingJavaException();
+    }
+
+    return result;
+}
+
+JSValue QuickJSWrapper::jsArgumentsFuncCall(int callback_id, JSValueConst this_val, int argc, JSValueConst *argv) {
+    // 之前的回调抛出的 Java 异常还没有处理，保留它，直接中断 JS 的执行
+    if (jniEnv->ExceptionCheck()) {
+        return JS_EXCEPTION;
+    }
+
+    // 参数不做转换，Java 层通过 JSArguments 按需读取
+    JSArgumentsView view = {this_val, argc, argv};
+    auto result = jniEnv->CallObjectMethod(jniThiz, callArgumentsBackM, callback_id, reinterpret_cast<jlong>(&view), argc);
+    if (jniEnv->ExceptionCheck()) {
+        return throwPendingJavaException();
+    }
+
+    JSValue jsValue = toJSValue(jniEnv, jniThiz, result);
+    jniEnv->DeleteLocalRef(result);
+    // 返回值不支持转换时 toJSValue 抛出的是 Java 异常，同样转为 JS 异常
+    if (jniEnv->ExceptionCheck()) {
+        JS_FreeValue(context, jsValue);
+        return throwPendingJavaException();
+    }
+
+    return jsValue;
+}
+
 void QuickJSWrapper::removeCallFunction(int callback_id) const {
     if (jniEnv->ExceptionCheck()) {
         return;
@@ -671,6 +1140,248 @@ void QuickJSWrapper::removeCallFunction(int callback_id) const {
     jniEnv->CallVoidMethod(jniThiz, removeCallFunctionM, callback_id);
 }
 
+// 字符串转换直接在 UTF-16 和 QuickJS 使用的 UTF-8 之间转换，不经过 JNI 的 modified UTF-8，
+// 补充平面的字符按 4 字节编码，落单的代理项按 3 字节编码（和 QuickJS 的 JS_ToCStringLen 一致），可以原样往返。
+// out 至少需要 len * 3 字节，返回写入的字节数
+static size_t utf16ToUtf8(const jchar *chars, size_t len, char *out) {
+    size_t i = 0;
+    // ASCII 快速路径
+    while (i < len && chars[i] < 0x80) {
+        out[i] = static_cast<char>(chars[i]);
+        i++;
+    }
+
+    char *p = out + i;
+    for (; i < len; i++) {
+        uint32_t c = chars[i];
+        if (c < 0x80) {
+            *p++ = static_cast<char>(c);
+        } else if (c < 0x800) {
+            *p++ = static_cast<char>(0xC0 | (c >> 6));
+            *p++ = static_cast<char>(0x80 | (c & 0x3F));
+        } else if (c >= 0xD800 && c <= 0xDBFF && i + 1 < len && chars[i + 1] >= 0xDC00 && chars[i + 1] <= 0xDFFF) {
+            c = 0x10000 + ((c - 0xD800) << 10) + (chars[++i] - 0xDC00);
+            *p++ = static_cast<char>(0xF0 | (c >> 18));
+            *p++ = static_cast<char>(0x80 | ((c >> 12) & 0x3F));
+            *p++ = static_cast<char>(0x80 | ((c >> 6) & 0x3F));
+            *p++ = static_cast<char>(0x80 | (c & 0x3F));
+        } else {
+            *p++ = static_cast<char>(0xE0 | (c >> 12));
+            *p++ = static_cast<char>(0x80 | ((c >> 6) & 0x3F));
+            *p++ = static_cast<char>(0x80 | (c & 0x3F));
+        }
+    }
+    return p - out;
+}
+
+// out 至少需要 len 个 jchar（UTF-16 的长度不会超过 UTF-8 的字节数），返回写入的 jchar 数
+static size_t utf8ToUtf16(const char *str, size_t len, jchar *out) {
+    auto s = reinterpret_cast<const uint8_t *>(str);
+    size_t i = 0;
+    // ASCII 快速路径
+    while (i < len && s[i] < 0x80) {
+        out[i] = s[i];
+        i++;
+    }
+
+    jchar *p = out + i;
+    while (i < len) {
+        uint32_t c = s[i];
+        if (c < 0x80) {
+            i++;
+        } else if (c >= 0xF0 && i + 3 < len) {
+            c = ((c & 0x07) << 18) | ((s[i + 1] & 0x3F) << 12) | ((s[i + 2] & 0x3F) << 6) | (s[i + 3] & 0x3F);
+            i += 4;
+            c -= 0x10000;
+            *p++ = static_cast<jchar>(0xD800 + (c >> 10));
+            c = 0xDC00 + (c & 0x3FF);
+        } else if (c >= 0xE0 && i + 2 < len) {
+            c = ((c & 0x0F) << 12) | ((s[i + 1] & 0x3F) << 6) | (s[i + 2] & 0x3F);
+            i += 3;
+        } else if (c >= 0xC0 && i + 1 < len) {
+            c = ((c & 0x1F) << 6) | (s[i + 1] & 0x3F);
+            i += 2;
+        } else {
+            // QuickJS 不会输出非法的 UTF-8，这里只是兜底
+            c = 0xFFFD;
+            i++;
+        }
+        *p++ = static_cast<jchar>(c);
+    }
+    return p - out;
+}
+
+JSValue QuickJSWrapper::toJSString(JNIEnv *env, jstring value) const {
+    jsize len = env->GetStringLength(value);
+    size_t capacity = static_cast<size_t>(len) * 3;
+
+    char stackBuffer[256];
+    vector<char> heapBuffer;
+    char *buffer = stackBuffer;
+    if (capacity > sizeof(stackBuffer)) {
+        heapBuffer.resize(capacity);
+        buffer = heapBuffer.data();
+    }
+
+    // 临界区内只做编码转换，不调用其他 JNI 方法
+    const jchar *chars = env->GetStringCritical(value, nullptr);
+    size_t size = utf16ToUtf8(chars, len, buffer);
+    env->ReleaseStringCritical(value, chars);
+
+    if (stringCache.capacity > 0 && size <= StringCache::MAX_LENGTH) {
+        string key(buffer, size);
+        JSValue cached;
+        if (stringCache.getJS(context, key, &cached)) {
+            return cached;
+        }
+
+        JSValue result = JS_NewStringLen(context, buffer, size);
+        if (!JS_IsException(result)) {
+            stringCache.put(env, context, key, value, result);
+        }
+        return result;
+    }
+
+    return JS_NewStringLen(context, buffer, size);
+}
+
+JSValue QuickJSWrapper::newCallFunction(int callback_id, int kind) const {
+    // 这里的 obj 是用来获取 JSFuncCallback 对象的
+    JSValue obj = JS_NewObjectClass(context, js_func_callback_class_id);
+    if (JS_IsException(obj)) {
+        // 回调 id 在 Java 层已经注册了，没有对象的 finalizer 负责注销，这里直接注销
+        removeCallFunction(callback_id);
+        return obj;
+    }
+
+    // 先设置好 id，后面创建函数失败时 obj 的 finalizer 会注销回调 id
+    int *callbackId = new int(callback_id);
+    JS_SetOpaque(obj, callbackId);
+
+    int length = kind == CALLBACK_KIND_DOUBLE_BINARY ? 2 : 1;
+    JSValue result = JS_NewCFunctionData(context, jsFnCallback, length, kind, 1, &obj);
+    // JS_NewCFunctionData 有 dupValue obj，这里需要对 obj 计数减一，保持计数平衡
+    JS_FreeValue(context, obj);
+    return result;
+}
+
+JSValue QuickJSWrapper::toJSTypedArray(JNIEnv *env, jobject array, int type, size_t elementSize) const {
+    size_t byteLength = env->GetArrayLength(static_cast<jarray>(array)) * elementSize;
+    // Java 数组和 TypedArray 都是本机字节序，可以直接整块拷贝
+    // 先分配好内存再进入 Critical 区间拷贝，区间内不能有可能触发 GC 的 QuickJS 调用
+    auto data = reinterpret_cast<uint8_t *>(js_malloc(context, byteLength == 0 ? 1 : byteLength));
+    if (data == nullptr) {
+        return JS_EXCEPTION;
+    }
+    void *elements = env->GetPrimitiveArrayCritical(static_cast<jarray>(array), nullptr);
+    memcpy(data, elements, byteLength);
+    env->ReleasePrimitiveArrayCritical(static_cast<jarray>(array), elements, JNI_ABORT);
+
+    JSValue buffer = JS_NewArrayBuffer(context, data, byteLength, freeArrayBufferData, nullptr, false);
+    if (JS_IsException(buffer)) {
+        js_free(context, data);
+        return buffer;
+    }
+
+    JSValue result = JS_CallConstructor(context, typedArrayConstructors[type], 1, &buffer);
+    JS_FreeValue(context, buffer);
+    return result;
+}
+
+int QuickJSWrapper::getTypedArrayType(JSValueConst value) const {
+    JSClassID classId = JS_GetClassID(value);
+    for (int i = 0; i < TYPED_ARRAY_COUNT; i++) {
+        if (typedArrayClassIds[i] == classId) {
+            return i;
+        }
+    }
+    return -1;
+}
+
+jobject QuickJSWrapper::toJavaTypedArray(JNIEnv *env, JSValueConst value, int type) const {
+    size_t byteOffset = 0;
+    size_t byteLength = 0;
+    size_t bytesPerElement = 1;
+    JSValue buffer = JS_GetTypedArrayBuffer(context, value, &byteOffset, &byteLength, &bytesPerElement);
+
+    size_t bufferSize = 0;
+    uint8_t *data = JS_GetArrayBuffer(context, &bufferSize, buffer);
+    JS_FreeValue(context, buffer);
+    if (data == nullptr) {
+        // 已经 detached 的 TypedArray 长度为 0，清理掉 JS_GetArrayBuffer 抛出的异常
+        JS_FreeValue(context, JS_GetException(context));
+        byteLength = 0;
+    }
+
+    // 无符号类型按位拷贝到对应宽度的 Java 有符号数组
+    auto length = static_cast<jsize>(byteLength / bytesPerElement);
+    jarray result;
+    switch (type) {
+        case TYPED_ARRAY_INT8:
+        case TYPED_ARRAY_UINT8:
+        case TYPED_ARRAY_UINT8C:
+            result = env->NewByteArray(length);
+            break;
+        case TYPED_ARRAY_INT16:
+        case TYPED_ARRAY_UINT16:
+            result = env->NewShortArray(length);
+            break;
+        case TYPED_ARRAY_INT32:
+        case TYPED_ARRAY_UINT32:
+            result = env->NewIntArray(length);
+            break;
+        case TYPED_ARRAY_BIGINT64:
+        case TYPED_ARRAY_BIGUINT64:
+            result = env->NewLongArray(length);
+            break;
+        case TYPED_ARRAY_FLOAT32:
+            result = env->NewFloatArray(length);
+            break;
+        default:
+            result = env->NewDoubleArray(length);
+            break;
+    }
+
+    if (length > 0) {
+        void *elements = env->GetPrimitiveArrayCritical(result, nullptr);
+        memcpy(elements, data + byteOffset, byteLength);
+        env->ReleasePrimitiveArrayCritical(result, elements, 0);
+    }
+
+    return result;
+}
+
+JSValue QuickJSWrapper::toJSArrayBuffer(JNIEnv *env, jobject buffer) const {
+    jint position = env->CallIntMethod(buffer, byteBufferPositionM);
+    jint limit = env->CallIntMethod(buffer, byteBufferLimitM);
+    size_t length = limit - position;
+
+    auto address = reinterpret_cast<uint8_t *>(env->GetDirectBufferAddress(buffer));
+    if (address != nullptr && !env->CallBooleanMethod(buffer, byteBufferIsReadOnlyM)) {
+        // DirectByteBuffer 直接作为 ArrayBuffer 的外部内存，不做拷贝。
+        // 这里持有 buffer 的全局引用，直到 ArrayBuffer 被回收，避免 Java 层提前释放内存。
+        jobject ref = env->NewGlobalRef(buffer);
+        JSValue result = JS_NewArrayBuffer(context, address + position, length, freeDirectBuffer, ref, false);
+        if (JS_IsException(result)) {
+            env->DeleteGlobalRef(ref);
+        }
+        return result;
+    }
+
+    // 堆内存和只读的 ByteBuffer 没法安全地共享内存，退化为拷贝
+    jbyteArray bytes = env->NewByteArray(static_cast<jsize>(length));
+    jobject duplicate = env->CallObjectMethod(buffer, byteBufferDuplicateM);
+    jobject ret = env->CallObjectMethod(duplicate, byteBufferGetM, bytes);
+    env->DeleteLocalRef(ret);
+    env->DeleteLocalRef(duplicate);
+
+    jbyte *byteData = env->GetByteArrayElements(bytes, nullptr);
+    JSValue result = JS_NewArrayBufferCopy(context, reinterpret_cast<uint8_t *>(byteData), length);
+    env->ReleaseByteArrayElements(bytes, byteData, JNI_ABORT);
+    env->DeleteLocalRef(bytes);
+    return result;
+}
+
 JSValue QuickJSWrapper::toJSValue(JNIEnv *env, jobject thiz, jobject value) const {
     if (value == nullptr) {
         return JS_NULL;
@@ -678,39 +1389,46 @@ JSValue QuickJSWrapper::toJSValue(JNIEnv *env, jobject thiz, jobject value) cons
 
     JSValue result;
     if (env->IsInstanceOf(value, stringClass)) {
-        const auto s = env->GetStringUTFChars((jstring)(value), JNI_FALSE);
-        result = JS_NewString(context, s);
-        env->ReleaseStringUTFChars((jstring)(value), s);
+        result = toJSString(env, (jstring) value);
     } else if (env->IsInstanceOf(value, doubleClass)) {
         result = JS_NewFloat64(context, env->CallDoubleMethod(value, doubleGetValue));
     } else if (env->IsInstanceOf(value, integerClass)) {
         result = JS_NewInt32(context, env->CallIntMethod(value, integerGetValue));
     } else if(env->IsInstanceOf(value, longClass)) {
-        jlong l_val = env->CallLongMethod(value, longGetValue);
-        if (l_val > MAX_SAFE_INTEGER || l_val < -MAX_SAFE_INTEGER) {
-            result = JS_NewBigInt64(context, l_val);
-        } else {
-            result = JS_NewInt64(context, l_val);
-        }
+        result = newLong(context, env->CallLongMethod(value, longGetValue));
     } else if (env->IsInstanceOf(value, booleanClass)) {
         result = JS_NewBool(context, env->CallBooleanMethod(value, booleanGetValue));
+    } else if (env->IsInstanceOf(value, numberClass)) {
+        // Float、Short、Byte 等其他数字类型统一按 double 转换，整数值在 JS 里的表现和 int 一致
+        result = JS_NewFloat64(context, env->CallDoubleMethod(value, numberDoubleValue));
+    } else if (env->IsInstanceOf(value, characterClass)) {
+        auto str = (jstring) env->CallObjectMethod(value, objectToStringM);
+        result = toJSString(env, str);
+        env->DeleteLocalRef(str);
     } else if (env->IsInstanceOf(value, byteArrayClass)) {
         jbyteArray bytes = static_cast<jbyteArray>(value);
         jbyte* byteData = env->GetByteArrayElements(bytes, nullptr);
         jsize length = env->GetArrayLength(bytes);
         result = JS_NewArrayBufferCopy(context, reinterpret_cast<uint8_t*>(byteData), length);
         env->ReleaseByteArrayElements(bytes, byteData, JNI_ABORT);
+    } else if (env->IsInstanceOf(value, intArrayClass)) {
+        result = toJSTypedArray(env, value, TYPED_ARRAY_INT32, sizeof(jint));
+    } else if (env->IsInstanceOf(value, doubleArrayClass)) {
+        result = toJSTypedArray(env, value, TYPED_ARRAY_FLOAT64, sizeof(jdouble));
+    } else if (env->IsInstanceOf(value, floatArrayClass)) {
+        result = toJSTypedArray(env, value, TYPED_ARRAY_FLOAT32, sizeof(jfloat));
+    } else if (env->IsInstanceOf(value, shortArrayClass)) {
+        result = toJSTypedArray(env, value, TYPED_ARRAY_INT16, sizeof(jshort));
+    } else if (env->IsInstanceOf(value, longArrayClass)) {
+        result = toJSTypedArray(env, value, TYPED_ARRAY_BIGINT64, sizeof(jlong));
+    } else if (env->IsInstanceOf(value, byteBufferClass)) {
+        result = toJSArrayBuffer(env, value);
     } else if (env->IsInstanceOf(value, jsObjectClass)) {
         result = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(env->CallLongMethod(value, jsObjectGetValue)));
     } else if (env->IsInstanceOf(value, jsCallFunctionClass)) {
-        // 这里的 obj 是用来获取 JSFuncCallback 对象的
-        JSValue obj = JS_NewObjectClass(context, js_func_callback_class_id);
-        result = JS_NewCFunctionData(context, jsFnCallback, 1, 0, 1, &obj);
-        // JS_NewCFunctionData 有 dupValue obj，这里需要对 obj 计数减一，保持计数平衡
-        JS_FreeValue(context, obj);
-
-        int *callbackId = new int(jniEnv->CallIntMethod(value, callFunctionHashCodeM));
-        JS_SetOpaque(obj, callbackId);
+        // 每创建一个 JS 函数都需要在 Java 层注册一次，函数被回收时通过 removeCallFunction 注销
+        jint callbackId = env->CallIntMethod(thiz, registerCallFunctionM, value);
+        result = env->ExceptionCheck() ? JS_EXCEPTION : newCallFunction(callbackId);
     } else {
         auto classType = env->GetObjectClass(value);
         const auto typeName = getJavaName(env, classType);
@@ -729,6 +1447,20 @@ void QuickJSWrapper::freeValue(jlong value) const {
     JS_FreeValue(context, jsObj);
 }
 
+void QuickJSWrapper::freeValues(JNIEnv *env, jlongArray values, jintArray counts, jint size) const {
+    vector<jlong> pointers(size);
+    vector<jint> times(size);
+    env->GetLongArrayRegion(values, 0, size, pointers.data());
+    env->GetIntArrayRegion(counts, 0, size, times.data());
+
+    for (jint i = 0; i < size; i++) {
+        JSValue jsObj = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(pointers[i]));
+        for (jint j = 0; j < times[i]; j++) {
+            JS_FreeValue(context, jsObj);
+        }
+    }
+}
+
 void QuickJSWrapper::dupValue(jlong value) const {
     JSValue jsObj = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value));
     JS_DupValue(context, jsObj);
@@ -761,13 +1493,20 @@ jobject QuickJSWrapper::parseJSON(JNIEnv *env, jobject thiz, jstring json) {
 jbyteArray QuickJSWrapper::compile(JNIEnv *env, jstring source, jstring file_name, jboolean isModule) const {
     const auto sourceCode = env->GetStringUTFChars(source, JNI_FALSE);
     const auto fileName = env->GetStringUTFChars(file_name, JNI_FALSE);
-    auto eval_flags =  JS_EVAL_FLAG_COMPILE_ONLY;
-    if (isModule) {
-        eval_flags = JS_EVAL_TYPE_MODULE | JS_EVAL_FLAG_COMPILE_ONLY;
-    }
-    auto compiled = JS_Eval(context, sourceCode, strlen(sourceCode), fileName, eval_flags);
+    jbyteArray result = compileBuffer(env, sourceCode, strlen(sourceCode), fileName, isModule);
     env->ReleaseStringUTFChars(source, sourceCode);
     env->ReleaseStringUTFChars(file_name, fileName);
+    return result;
+}
+
+// buf[len] 必须为 '\0'
+jbyteArray QuickJSWrapper::compileBuffer(JNIEnv *env, const char *buf, size_t len, const char *file_name,
+                                         bool isModule) const {
+    auto eval_flags =  JS_EVAL_FLAG_COMPILE_ONLY;
+    if (isModule) {
+        eval_flags = JS_EVAL_TYPE_MODULE | JS_EVAL_FLAG_COMPILE_ONLY;
+    }
+    auto compiled = JS_Eval(context, buf, len, file_name, eval_flags);
 
     if (JS_IsException(compiled)) {
         throwJSException(env, context);
@@ -835,23 +1574,10 @@ QuickJSWrapper::evaluateModule(JNIEnv *env, jobject thiz, jstring script, jstrin
     const char *c_script = env->GetStringUTFChars(script, JNI_FALSE);
     const char *c_file_name = env->GetStringUTFChars(file_name, JNI_FALSE);
 
-    JSValue result = JS_Eval(context, c_script, strlen(c_script), c_file_name, JS_EVAL_TYPE_MODULE);
+    jobject result = evalBuffer(env, thiz, c_script, strlen(c_script), c_file_name, true);
     env->ReleaseStringUTFChars(script, c_script);
     env->ReleaseStringUTFChars(file_name, c_file_name);
-    if (JS_IsException(result)) {
-        throwJSException(env, context);
-        return nullptr;
-    }
-
-    if (!executePendingJobLoop(env, runtime, context)) {
-        JS_FreeValue(context, result);
-        return nullptr;
-    }
-
-    JSValue global = JS_GetGlobalObject(context);
-    jobject jsObj = toJavaObject(env, thiz, global, result);
-    JS_FreeValue(context, global);
-    return jsObj;
+    return result;
 }
 
 jobject QuickJSWrapper::getOwnPropertyNames(JNIEnv *env, jobject thiz, jlong obj) {
@@ -872,31 +1598,2175 @@ jobject QuickJSWrapper::getOwnPropertyNames(JNIEnv *env, jobject thiz, jlong obj
 }
 
 jstring QuickJSWrapper::toJavaString(JNIEnv *env, JSValue value) const {
-    jstring result;
-#ifdef IS_ANDROID
-    const char* string = JS_ToCString(context, value);
-    result = env->NewStringUTF(string);
-    JS_FreeCString(context, string);
-    // JSString 类型的 JSValue 需要手动释放掉，不然会泄漏
-    JS_FreeValue(context, value);
-#else
-    // 这里需要注意，JVM 平台下 NewStringUTF 方法对部分 unicode 的转换有问题，会出现乱码，换了另一种方式解决。
     const char *str;
     size_t len;
     str = JS_ToCStringLen(context, &len, value);
 
-    jbyteArray jba = env->NewByteArray(len);
-    env->SetByteArrayRegion(jba, 0, len, reinterpret_cast<const jbyte *>(str));
+    string key;
+    bool cacheable = stringCache.capacity > 0 && JS_IsString(value) && len <= StringCache::MAX_LENGTH;
+    if (cacheable) {
+        key.assign(str, len);
+        jstring cached = stringCache.getJava(env, key);
+        if (cached != nullptr) {
+            JS_FreeCString(context, str);
+            JS_FreeValue(context, value);
+            return cached;
+        }
+    }
+
+    jchar stackBuffer[128];
+    vector<jchar> heapBuffer;
+    jchar *chars = stackBuffer;
+    if (len > sizeof(stackBuffer) / sizeof(jchar)) {
+        heapBuffer.resize(len);
+        chars = heapBuffer.data();
+    }
+
+    jstring result = env->NewString(chars, static_cast<jsize>(utf8ToUtf16(str, len, chars)));
 
-    result = static_cast<jstring>(env->NewObject(stringClass,
-                                                 env->GetMethodID(stringClass, "<init>", "([B)V"),
-                                                 jba));
+    if (cacheable) {
+        stringCache.put(env, context, key, result, value);
+    }
 
     JS_FreeCString(context, str);
-    env->DeleteLocalRef(jba);
     // JSString 类型的 JSValue 需要手动释放掉，不然会泄漏
     JS_FreeValue(context, value);
-#endif
+    return result;
+}
+
+jint QuickJSWrapper::getInt(JNIEnv *env, jlong value, jstring name, jint default_value) const {
+    JSValue propsValue = getPropertyValue(env, value, name);
+    jint result = default_value;
+    if (JS_IsNumber(propsValue)) {
+        int32_t v;
+        if (JS_ToInt32(context, &v, propsValue) == 0) {
+            result = v;
+        }
+    }
+
+    JS_FreeValue(context, propsValue);
+    return result;
+}
+
+jlong QuickJSWrapper::getLong(JNIEnv *env, jlong value, jstring name, jlong default_value) const {
+    JSValue propsValue = getPropertyValue(env, value, name);
+    jlong result = default_value;
+    int64_t v;
+    if (JS_IsNumber(propsValue)) {
+        if (JS_ToInt64(context, &v, propsValue) == 0) {
+            result = v;
+        }
+    } else if (JS_VALUE_GET_TAG(propsValue) == JS_TAG_BIG_INT) {
+        if (JS_ToBigInt64(context, &v, propsValue) == 0) {
+            result = v;
+        }
+    }
+
+    JS_FreeValue(context, propsValue);
+    return result;
+}
+
+jdouble QuickJSWrapper::getDouble(JNIEnv *env, jlong value, jstring name, jdouble default_value) const {
+    JSValue propsValue = getPropertyValue(env, value, name);
+    jdouble result = default_value;
+    if (JS_IsNumber(propsValue)) {
+        double v;
+        if (JS_ToFloat64(context, &v, propsValue) == 0) {
+            result = v;
+        }
+    }
+
+    JS_FreeValue(context, propsValue);
+    return result;
+}
+
+jboolean QuickJSWrapper::getBoolean(JNIEnv *env, jlong value, jstring name, jboolean default_value) const {
+    JSValue propsValue = getPropertyValue(env, value, name);
+    jboolean result = default_value;
+    if (JS_IsBool(propsValue)) {
+        result = JS_VALUE_GET_BOOL(propsValue) ? JNI_TRUE : JNI_FALSE;
+    }
+
+    JS_FreeValue(context, propsValue);
+    return result;
+}
+
+jint QuickJSWrapper::callInt(JNIEnv *env, jobject thiz, jlong func, jlong this_obj, jint this_obj_tag,
+                             jbyteArray arg_types, jlongArray arg_primitives, jobjectArray arg_references) {
+    JSValue ret = callFunction(env, thiz, func, this_obj, this_obj_tag, arg_types, arg_primitives, arg_references);
+    if (JS_IsException(ret)) {
+        return 0;
+    }
+
+    int32_t result = 0;
+    if (JS_ToInt32(context, &result, ret) < 0) {
+        throwJSException(env, context);
+    }
+    JS_FreeValue(context, ret);
+    return result;
+}
+
+jdouble QuickJSWrapper::callDouble(JNIEnv *env, jobject thiz, jlong func, jlong this_obj, jint this_obj_tag,
+                                   jbyteArray arg_types, jlongArray arg_primitives, jobjectArray arg_references) {
+    JSValue ret = callFunction(env, thiz, func, this_obj, this_obj_tag, arg_types, arg_primitives, arg_references);
+    if (JS_IsException(ret)) {
+        return NAN;
+    }
+
+    double result = NAN;
+    if (JS_ToFloat64(context, &result, ret) < 0) {
+        throwJSException(env, context);
+    }
+    JS_FreeValue(context, ret);
+    return result;
+}
+
+jboolean QuickJSWrapper::callBoolean(JNIEnv *env, jobject thiz, jlong func, jlong this_obj, jint this_obj_tag,
+                                     jbyteArray arg_types, jlongArray arg_primitives, jobjectArray arg_references) {
+    JSValue ret = callFunction(env, thiz, func, this_obj, this_obj_tag, arg_types, arg_primitives, arg_references);
+    if (JS_IsException(ret)) {
+        return JNI_FALSE;
+    }
+
+    int result = JS_ToBool(context, ret);
+    JS_FreeValue(context, ret);
+    return result > 0 ? JNI_TRUE : JNI_FALSE;
+}
+
+jintArray QuickJSWrapper::toIntArray(JNIEnv *env, jlong value) const {
+    JSValue jsObj = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value));
+    uint32_t len;
+    if (!getArrayLength(env, context, jsObj, &len)) {
+        return nullptr;
+    }
+
+    vector<jint> elements(len);
+    for (uint32_t i = 0; i < len; i++) {
+        JSValue item = JS_GetPropertyUint32(context, jsObj, i);
+        if (JS_VALUE_GET_TAG(item) == JS_TAG_INT) {
+            elements[i] = JS_VALUE_GET_INT(item);
+        } else {
+            int32_t v = 0;
+            int ret = JS_IsException(item) ? -1 : JS_ToInt32(context, &v, item);
+            JS_FreeValue(context, item);
+            if (ret < 0) {
+                throwJSException(env, context);
+                return nullptr;
+            }
+            elements[i] = v;
+        }
+    }
+
+    jintArray result = env->NewIntArray(static_cast<jsize>(len));
+    if (result) {
+        env->SetIntArrayRegion(result, 0, static_cast<jsize>(len), elements.data());
+    }
+    return result;
+}
+
+jlongArray QuickJSWrapper::toLongArray(JNIEnv *env, jlong value) const {
+    JSValue jsObj = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value));
+    uint32_t len;
+    if (!getArrayLength(env, context, jsObj, &len)) {
+        return nullptr;
+    }
+
+    vector<jlong> elements(len);
+    for (uint32_t i = 0; i < len; i++) {
+        JSValue item = JS_GetPropertyUint32(context, jsObj, i);
+        int tag = JS_VALUE_GET_TAG(item);
+        if (tag == JS_TAG_INT) {
+            elements[i] = JS_VALUE_GET_INT(item);
+        } else {
+            int64_t v = 0;
+            int ret;
+            if (JS_IsException(item)) {
+                ret = -1;
+            } else if (tag == JS_TAG_BIG_INT) {
+                ret = JS_ToBigInt64(context, &v, item);
+            } else {
+                ret = JS_ToInt64(context, &v, item);
+            }
+            JS_FreeValue(context, item);
+            if (ret < 0) {
+                throwJSException(env, context);
+                return nullptr;
+            }
+            elements[i] = v;
+        }
+    }
+
+    jlongArray result = env->NewLongArray(static_cast<jsize>(len));
+    if (result) {
+        env->SetLongArrayRegion(result, 0, static_cast<jsize>(len), elements.data());
+    }
+    return result;
+}
+
+jdoubleArray QuickJSWrapper::toDoubleArray(JNIEnv *env, jlong value) const {
+    JSValue jsObj = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value));
+    uint32_t len;
+    if (!getArrayLength(env, context, jsObj, &len)) {
+        return nullptr;
+    }
+
+    vector<jdouble> elements(len);
+    if (!readDoubleElements(env, context, jsObj, 0, len, elements.data())) {
+        return nullptr;
+    }
+
+    jdoubleArray result = env->NewDoubleArray(static_cast<jsize>(len));
+    if (result) {
+        env->SetDoubleArrayRegion(result, 0, static_cast<jsize>(len), elements.data());
+    }
+    return result;
+}
+
+jobjectArray QuickJSWrapper::toStringArray(JNIEnv *env, jlong value) const {
+    JSValue jsObj = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value));
+    uint32_t len;
+    if (!getArrayLength(env, context, jsObj, &len)) {
+        return nullptr;
+    }
+
+    jobjectArray result = env->NewObjectArray(static_cast<jsize>(len), stringClass, nullptr);
+    if (!result) {
+        return nullptr;
+    }
+
+    for (uint32_t i = 0; i < len; i++) {
+        JSValue item = JS_GetPropertyUint32(context, jsObj, i);
+        if (JS_IsNull(item) || JS_IsUndefined(item)) {
+            continue;
+        }
+
+        // 非字符串类型的元素按 String(value) 转换
+        JSValue str = JS_IsString(item) ? item : JS_ToString(context, item);
+        if (!JS_IsString(item)) {
+            JS_FreeValue(context, item);
+        }
+        if (JS_IsException(str)) {
+            throwJSException(env, context);
+            return nullptr;
+        }
+
+        jstring element = toJavaString(env, str);
+        env->SetObjectArrayElement(result, static_cast<jsize>(i), element);
+        env->DeleteLocalRef(element);
+    }
+
+    return result;
+}
+
+void QuickJSWrapper::copyInto(JNIEnv *env, jlong value, jdoubleArray dst, jint offset, jint from, jint len) const {
+    JSValue jsObj = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value));
+    uint32_t length;
+    if (!getArrayLength(env, context, jsObj, &length)) {
+        return;
+    }
+
+    if (static_cast<int64_t>(from) + len > length) {
+        throwJavaException(env, "java/lang/IndexOutOfBoundsException",
+                           "Range [%d, %d) out of bounds for array length %u", from, from + len, length);
+        return;
+    }
+
+    vector<jdouble> elements(len);
+    if (!readDoubleElements(env, context, jsObj, static_cast<uint32_t>(from), static_cast<uint32_t>(len), elements.data())) {
+        return;
+    }
+
+    env->SetDoubleArrayRegion(dst, offset, len, elements.data());
+}
+
+// 按下标顺序追加元素，QuickJS 会保持数组为 fast array，不会退化成普通对象属性。
+jobject QuickJSWrapper::newIntArray(JNIEnv *env, jobject thiz, jintArray values) const {
+    jsize len = env->GetArrayLength(values);
+    vector<jint> elements(len);
+    env->GetIntArrayRegion(values, 0, len, elements.data());
+
+    JSValue array = JS_NewArray(context);
+    if (JS_IsException(array)) {
+        throwJSException(env, context);
+        return nullptr;
+    }
+    for (jsize i = 0; i < len; i++) {
+        if (JS_DefinePropertyValueUint32(context, array, i, JS_NewInt32(context, elements[i]), JS_PROP_C_W_E) < 0) {
+            JS_FreeValue(context, array);
+            throwJSException(env, context);
+            return nullptr;
+        }
+    }
+
+    return toJavaObject(env, thiz, JS_UNDEFINED, array);
+}
+
+jobject QuickJSWrapper::newDoubleArray(JNIEnv *env, jobject thiz, jdoubleArray values) const {
+    jsize len = env->GetArrayLength(values);
+    vector<jdouble> elements(len);
+    env->GetDoubleArrayRegion(values, 0, len, elements.data());
+
+    JSValue array = JS_NewArray(context);
+    if (JS_IsException(array)) {
+        throwJSException(env, context);
+        return nullptr;
+    }
+    for (jsize i = 0; i < len; i++) {
+        if (JS_DefinePropertyValueUint32(context, array, i, JS_NewFloat64(context, elements[i]), JS_PROP_C_W_E) < 0) {
+            JS_FreeValue(context, array);
+            throwJSException(env, context);
+            return nullptr;
+        }
+    }
+
+    return toJavaObject(env, thiz, JS_UNDEFINED, array);
+}
+
+jobject QuickJSWrapper::newStringArray(JNIEnv *env, jobject thiz, jobjectArray values) const {
+    jsize len = env->GetArrayLength(values);
+
+    JSValue array = JS_NewArray(context);
+    if (JS_IsException(array)) {
+        throwJSException(env, context);
+        return nullptr;
+    }
+    for (jsize i = 0; i < len; i++) {
+        auto str = (jstring) env->GetObjectArrayElement(values, i);
+        JSValue element = str == nullptr ? JS_NULL : toJSString(env, str);
+        env->DeleteLocalRef(str);
+        if (JS_IsException(element) || JS_DefinePropertyValueUint32(context, array, i, element, JS_PROP_C_W_E) < 0) {
+            JS_FreeValue(context, array);
+            throwJSException(env, context);
+            return nullptr;
+        }
+    }
+
+    return toJavaObject(env, thiz, JS_UNDEFINED, array);
+}
+
+jobject QuickJSWrapper::newObjectArray(JNIEnv *env, jobject thiz, jbyteArray arg_types, jlongArray arg_primitives,
+                                       jobjectArray arg_references) const {
+    jsize len = env->GetArrayLength(arg_types);
+    vector<jbyte> types(len);
+    vector<jlong> primitives(len);
+    env->GetByteArrayRegion(arg_types, 0, len, types.data());
+    env->GetLongArrayRegion(arg_primitives, 0, len, primitives.data());
+
+    JSValue array = JS_NewArray(context);
+    if (JS_IsException(array)) {
+        throwJSException(env, context);
+        releaseArguments(env, thiz, types, primitives, 0, {});
+        return nullptr;
+    }
+    for (jsize i = 0; i < len; i++) {
+        JSValue element = toJSArgument(env, thiz, types[i], primitives[i], arg_references, i);
+        if (JS_IsException(element)) {
+            // toJSValue 失败时可能已经有 Java 异常，throwJSException 会保留它
+            throwJSException(env, context);
+            releaseArguments(env, thiz, types, primitives, i + 1, {array});
+            return nullptr;
+        }
+
+        if (types[i] == ARG_TYPE_JS_OBJECT) {
+            // 数组持有 JSObject 的引用，需要手动增加引用计数
+            JS_DupValue(context, element);
+        }
+        if (JS_DefinePropertyValueUint32(context, array, i, element, JS_PROP_C_W_E) < 0) {
+            throwJSException(env, context);
+            releaseArguments(env, thiz, types, primitives, i + 1, {array});
+            return nullptr;
+        }
+    }
+
+    return toJavaObject(env, thiz, JS_UNDEFINED, array);
+}
+
+jobject QuickJSWrapper::readArrayBuffer(JNIEnv *env, jlong obj, jstring name, jobject reader) const {
+    JSValue value = getPropertyValue(env, obj, name);
+    if (JS_IsException(value)) {
+        // getPropertyValue 已经抛出了 JS 的异常
+        return nullptr;
+    }
+
+    if (!JS_IsArrayBuffer(value)) {
+        JS_FreeValue(context, value);
+        const auto propName = env->GetStringUTFChars(name, JNI_FALSE);
+        throwJavaException(env, "java/lang/IllegalArgumentException", "The property %s is not an ArrayBuffer", propName);
+        env->ReleaseStringUTFChars(name, propName);
+        return nullptr;
+    }
+
+    size_t byteLength = 0;
+    uint8_t *data = JS_GetArrayBuffer(context, &byteLength, value);
+    // detached 的 ArrayBuffer 没有存储空间，NewDirectByteBuffer 不接受空地址
+    static uint8_t empty;
+    jobject buffer = env->NewDirectByteBuffer(data == nullptr ? &empty : data, data == nullptr ? 0 : byteLength);
+    jobject readOnlyBuffer = env->CallObjectMethod(buffer, byteBufferAsReadOnlyM);
+    env->DeleteLocalRef(buffer);
+
+    // 回调期间持有 value，保证 ArrayBuffer 的内存不会被回收
+    jobject result = env->CallObjectMethod(reader, arrayBufferReaderReadM, readOnlyBuffer);
+    env->DeleteLocalRef(readOnlyBuffer);
+    JS_FreeValue(context, value);
+    return result;
+}
+
+jint QuickJSWrapper::newAtom(JNIEnv *env, jstring name) const {
+    const char *propName = env->GetStringUTFChars(name, JNI_FALSE);
+    JSAtom atom = JS_NewAtom(context, propName);
+    env->ReleaseStringUTFChars(name, propName);
+    return static_cast<jint>(atom);
+}
+
+void QuickJSWrapper::freeAtoms(JNIEnv *env, jintArray atoms) const {
+    jsize len = env->GetArrayLength(atoms);
+    vector<jint> values(len);
+    env->GetIntArrayRegion(atoms, 0, len, values.data());
+    for (jint atom : values) {
+        JS_FreeAtom(context, static_cast<JSAtom>(atom));
+    }
+}
+
+jobject QuickJSWrapper::getPropertyByAtom(JNIEnv *env, jobject thiz, jlong value, jint atom) const {
+    JSValue jsObject = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value));
+    JSValue propsValue = JS_GetProperty(context, jsObject, static_cast<JSAtom>(atom));
+    if (JS_IsException(propsValue)) {
+        throwJSException(env, context);
+        return nullptr;
+    }
+
+    return toJavaObject(env, thiz, jsObject, propsValue);
+}
+
+void QuickJSWrapper::setPropertyByAtom(JNIEnv *env, jobject thiz, jlong this_obj, jint atom, jobject value) const {
+    setPropertyValue(env, thiz, this_obj, static_cast<JSAtom>(atom), value);
+}
+
+void QuickJSWrapper::freeJSValues(const vector<JSValue> &values, size_t from) const {
+    for (size_t i = from; i < values.size(); i++) {
+        JS_FreeValue(context, values[i]);
+    }
+}
+
+// 中途失败时释放已经转换好的 JSObject，保留原来的异常
+void QuickJSWrapper::releaseConverted(JNIEnv *env, jobjectArray array, jsize count) const {
+    jthrowable pending = env->ExceptionOccurred();
+    env->ExceptionClear();
+    for (jsize i = 0; i < count; i++) {
+        jobject element = env->GetObjectArrayElement(array, i);
+        if (element != nullptr && env->IsInstanceOf(element, jsObjectClass)) {
+            env->CallVoidMethod(element, jsObjectReleaseM);
+            env->ExceptionClear();
+        }
+        env->DeleteLocalRef(element);
+    }
+
+    if (pending != nullptr) {
+        env->Throw(pending);
+        env->DeleteLocalRef(pending);
+    }
+}
+
+// 参数里的回调 id 在 Java 层已经注册了：转换好的函数被 free 时由 finalizer 注销，from 之后还没有转换的直接注销。
+// 有 Java 异常等待抛出时 finalizer 里的 removeCallFunction 会跳过，所以先取出异常，释放完再重新抛出
+void QuickJSWrapper::releaseArguments(JNIEnv *env, jobject thiz, const vector<jbyte> &types,
+                                      const vector<jlong> &primitives, size_t from,
+                                      const vector<JSValue> &converted) const {
+    jthrowable pending = env->ExceptionOccurred();
+    env->ExceptionClear();
+    freeJSValues(converted, 0);
+    for (size_t i = from; i < types.size(); i++) {
+        if (types[i] == ARG_TYPE_CALL_FUNCTION) {
+            env->CallVoidMethod(thiz, removeCallFunctionM, static_cast<jint>(primitives[i]));
+            env->ExceptionClear();
+        }
+    }
+
+    if (pending != nullptr) {
+        env->Throw(pending);
+        env->DeleteLocalRef(pending);
+    }
+}
+
+jobjectArray QuickJSWrapper::getProperties(JNIEnv *env, jobject thiz, jlong value, jobjectArray names) const {
+    JSValue jsObject = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value));
+    jsize len = env->GetArrayLength(names);
+
+    // 先读出所有属性值，都成功之后再转换，读取失败时只需要释放 JSValue，不会留下已经创建的 JSObject
+    vector<JSValue> values;
+    values.reserve(len);
+    for (jsize i = 0; i < len; i++) {
+        auto name = (jstring) env->GetObjectArrayElement(names, i);
+        if (name == nullptr) {
+            freeJSValues(values, 0);
+            throwJavaException(env, "java/lang/NullPointerException", "Property Name cannot be null");
+            return nullptr;
+        }
+
+        const char *propName = env->GetStringUTFChars(name, JNI_FALSE);
+        JSValue propValue = JS_GetPropertyStr(context, jsObject, propName);
+        env->ReleaseStringUTFChars(name, propName);
+        env->DeleteLocalRef(name);
+        if (JS_IsException(propValue)) {
+            freeJSValues(values, 0);
+            throwJSException(env, context);
+            return nullptr;
+        }
+        values.push_back(propValue);
+    }
+
+    jobjectArray result = env->NewObjectArray(len, objectClass, nullptr);
+    if (result == nullptr) {
+        freeJSValues(values, 0);
+        return nullptr;
+    }
+
+    for (jsize i = 0; i < len; i++) {
+        jobject element = toJavaObject(env, thiz, jsObject, values[i]);
+        if (env->ExceptionCheck()) {
+            env->DeleteLocalRef(element);
+            freeJSValues(values, i + 1);
+            releaseConverted(env, result, i);
+            env->DeleteLocalRef(result);
+            return nullptr;
+        }
+        env->SetObjectArrayElement(result, i, element);
+        env->DeleteLocalRef(element);
+    }
 
     return result;
 }
+
+void QuickJSWrapper::setProperties(JNIEnv *env, jobject thiz, jlong this_obj, jobjectArray names, jbyteArray arg_types,
+                                   jlongArray arg_primitives, jobjectArray arg_references) const {
+    jsize len = env->GetArrayLength(names);
+    vector<jbyte> types(len);
+    vector<jlong> primitives(len);
+    env->GetByteArrayRegion(arg_types, 0, len, types.data());
+    env->GetLongArrayRegion(arg_primitives, 0, len, primitives.data());
+
+    JSValue jsObj = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(this_obj));
+    for (jsize i = 0; i < len; i++) {
+        JSValue propValue = toJSArgument(env, thiz, types[i], primitives[i], arg_references, i);
+        if (JS_IsException(propValue)) {
+            releaseArguments(env, thiz, types, primitives, i + 1, {});
+            return;
+        }
+
+        auto name = (jstring) env->GetObjectArrayElement(names, i);
+        const char *propName = env->GetStringUTFChars(name, JNI_FALSE);
+        JSAtom atom = JS_NewAtom(context, propName);
+        env->ReleaseStringUTFChars(name, propName);
+        env->DeleteLocalRef(name);
+
+        if (types[i] == ARG_TYPE_JS_OBJECT) {
+            // 属性持有 JSObject 的引用，需要手动增加引用计数
+            JS_DupValue(context, propValue);
+        } else if (types[i] == ARG_TYPE_CALL_FUNCTION) {
+            defineFunctionName(propValue, atom);
+        }
+
+        int ret = JS_SetProperty(context, jsObj, atom, propValue);
+        JS_FreeAtom(context, atom);
+        if (ret < 0) {
+            throwJSException(env, context);
+            releaseArguments(env, thiz, types, primitives, i + 1, {});
+            return;
+        }
+    }
+}
+
+bool QuickJSWrapper::getOwnPropertyAtoms(JNIEnv *env, jlong value, JSPropertyEnum **tab, uint32_t *len) const {
+    JSValue jsObject = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value));
+    // 和 getNames (Object.getOwnPropertyNames) 保持一致：包含不可枚举的属性，不包含 Symbol
+    if (JS_GetOwnPropertyNames(context, tab, len, jsObject, JS_GPN_STRING_MASK) < 0) {
+        throwJSException(env, context);
+        return false;
+    }
+
+    return true;
+}
+
+void QuickJSWrapper::freePropertyAtoms(JSPropertyEnum *tab, uint32_t len) const {
+    for (uint32_t i = 0; i < len; i++) {
+        JS_FreeAtom(context, tab[i].atom);
+    }
+    js_free(context, tab);
+}
+
+jobjectArray QuickJSWrapper::keys(JNIEnv *env, jlong value) const {
+    JSPropertyEnum *tab;
+    uint32_t len;
+    if (!getOwnPropertyAtoms(env, value, &tab, &len)) {
+        return nullptr;
+    }
+
+    jobjectArray result = env->NewObjectArray(static_cast<jsize>(len), stringClass, nullptr);
+    for (uint32_t i = 0; i < len; i++) {
+        jstring key = toJavaString(env, JS_AtomToString(context, tab[i].atom));
+        env->SetObjectArrayElement(result, static_cast<jsize>(i), key);
+        env->DeleteLocalRef(key);
+    }
+
+    freePropertyAtoms(tab, len);
+    return result;
+}
+
+jobject QuickJSWrapper::entries(JNIEnv *env, jobject thiz, jlong value) const {
+    JSPropertyEnum *tab;
+    uint32_t len;
+    if (!getOwnPropertyAtoms(env, value, &tab, &len)) {
+        return nullptr;
+    }
+
+    // 和 getProperties 一样，先读出所有属性值再转换
+    JSValue jsObject = JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value));
+    vector<JSValue> propValues;
+    propValues.reserve(len);
+    for (uint32_t i = 0; i < len; i++) {
+        JSValue propValue = JS_GetProperty(context, jsObject, tab[i].atom);
+        if (JS_IsException(propValue)) {
+            freeJSValues(propValues, 0);
+            freePropertyAtoms(tab, len);
+            throwJSException(env, context);
+            return nullptr;
+        }
+        propValues.push_back(propValue);
+    }
+
+    jobjectArray keys = env->NewObjectArray(static_cast<jsize>(len), stringClass, nullptr);
+    jobjectArray values = keys == nullptr ? nullptr : env->NewObjectArray(static_cast<jsize>(len), objectClass, nullptr);
+    if (values == nullptr) {
+        env->DeleteLocalRef(keys);
+        freeJSValues(propValues, 0);
+        freePropertyAtoms(tab, len);
+        return nullptr;
+    }
+
+    for (uint32_t i = 0; i < len; i++) {
+        jstring key = toJavaString(env, JS_AtomToString(context, tab[i].atom));
+        env->SetObjectArrayElement(keys, static_cast<jsize>(i), key);
+        env->DeleteLocalRef(key);
+
+        jobject element = toJavaObject(env, thiz, jsObject, propValues[i]);
+        if (env->ExceptionCheck()) {
+            env->DeleteLocalRef(element);
+            freeJSValues(propValues, i + 1);
+            freePropertyAtoms(tab, len);
+            releaseConverted(env, values, static_cast<jsize>(i));
+            env->DeleteLocalRef(keys);
+            env->DeleteLocalRef(values);
+            return nullptr;
+        }
+        env->SetObjectArrayElement(values, static_cast<jsize>(i), element);
+        env->DeleteLocalRef(element);
+    }
+    freePropertyAtoms(tab, len);
+
+    jobject result = env->NewObject(jsEntriesClass, jsEntriesInitM, keys, values);
+    env->DeleteLocalRef(keys);
+    env->DeleteLocalRef(values);
+    return result;
+}
+
+// toMap/toArray 遍历时的一层对象，obj 持有引用，container 是对应 Java 容器的局部引用，出栈时删除
+struct ConvertFrame {
+    JSValue obj;
+    jobject container;
+    bool isArray;
+    JSPropertyEnum *tab;
+    uint32_t len;
+    uint32_t index;
+};
+
+jobject QuickJSWrapper::newJavaContainer(JNIEnv *env, JSValueConst value, bool isArray, jobject creator) const {
+    if (isArray) {
+        uint32_t len = 0;
+        if (!getArrayLength(env, context, value, &len)) {
+            return nullptr;
+        }
+        return env->NewObject(arrayListClass, arrayListInitM, static_cast<jint>(len));
+    }
+
+    if (creator == nullptr) {
+        return env->NewObject(hashMapClass, hashMapInitM);
+    }
+
+    return env->CallObjectMethod(creator, mapCreatorGetM);
+}
+
+jobject QuickJSWrapper::toJavaCollection(JNIEnv *env, jobject thiz, jlong value, jobject filter, jobject extra,
+                                         jobject creator) const {
+    JSValue root = JS_DupValue(context, JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value)));
+    bool rootIsArray = JS_IsArray(context, root);
+    jobject rootContainer = newJavaContainer(env, root, rootIsArray, creator);
+    if (env->ExceptionCheck()) {
+        JS_FreeValue(context, root);
+        return nullptr;
+    }
+
+    // 已经转换过的对象：指针 -> containers 里的下标，用于处理循环引用和重复引用。
+    // 容器放在 Java 层的列表里，不占用全局引用，局部引用只有遍历栈上的容器，数量和嵌套深度一致。
+    jobject containers = env->NewObject(arrayListClass, arrayListInitM, 16);
+    if (containers == nullptr) {
+        env->DeleteLocalRef(rootContainer);
+        JS_FreeValue(context, root);
+        return nullptr;
+    }
+    unordered_map<void *, jint> circulars;
+    vector<ConvertFrame> stack;
+    bool failed = false;
+
+    auto pushFrame = [&](JSValue obj, jobject container, bool isArray) -> bool {
+        // 每一层需要保留一个容器的局部引用，另外遍历时还会用到几个临时的局部引用
+        if (env->EnsureLocalCapacity(8) < 0) {
+            JS_FreeValue(context, obj);
+            return false;
+        }
+
+        env->CallBooleanMethod(containers, listAddM, container);
+        if (env->ExceptionCheck()) {
+            JS_FreeValue(context, obj);
+            return false;
+        }
+        jint containerIndex = static_cast<jint>(circulars.size());
+        circulars[JS_VALUE_GET_PTR(obj)] = containerIndex;
+
+        ConvertFrame frame = {obj, nullptr, isArray, nullptr, 0, 0};
+        if (isArray) {
+            if (!getArrayLength(env, context, obj, &frame.len)) {
+                JS_FreeValue(context, obj);
+                return false;
+            }
+        } else if (JS_GetOwnPropertyNames(context, &frame.tab, &frame.len, obj, JS_GPN_STRING_MASK) < 0) {
+            throwJSException(env, context);
+            JS_FreeValue(context, obj);
+            return false;
+        }
+        frame.container = env->NewLocalRef(container);
+        stack.push_back(frame);
+        return true;
+    };
+
+    // Map.put/List.add 可能抛出异常（例如 creator 返回了不可修改的 Map），返回 false 时需要中止遍历
+    auto addToContainer = [&](ConvertFrame &frame, jstring key, jobject element) -> bool {
+        if (frame.isArray) {
+            env->CallBooleanMethod(frame.container, listAddM, element);
+        } else {
+            jobject old = env->CallObjectMethod(frame.container, mapPutM, key, element);
+            env->DeleteLocalRef(old);
+        }
+        return !env->ExceptionCheck();
+    };
+
+    jobject result = env->NewLocalRef(rootContainer);
+    failed = !pushFrame(root, rootContainer, rootIsArray);
+    env->DeleteLocalRef(rootContainer);
+
+    while (!failed && !stack.empty()) {
+        ConvertFrame &frame = stack.back();
+        if (frame.index >= frame.len) {
+            if (frame.tab != nullptr) {
+                freePropertyAtoms(frame.tab, frame.len);
+            }
+            JS_FreeValue(context, frame.obj);
+            env->DeleteLocalRef(frame.container);
+            stack.pop_back();
+            continue;
+        }
+
+        uint32_t index = frame.index++;
+        jstring key = nullptr;
+        JSValue child;
+        if (frame.isArray) {
+            child = JS_GetPropertyUint32(context, frame.obj, index);
+        } else {
+            JSAtom atom = frame.tab[index].atom;
+            key = toJavaString(env, JS_AtomToString(context, atom));
+            if (filter != nullptr) {
+                auto owner = reinterpret_cast<jlong>(JS_VALUE_GET_PTR(frame.obj));
+                bool skip = env->CallBooleanMethod(filter, mapFilterShouldSkipKeyM, key, owner, extra);
+                if (env->ExceptionCheck()) {
+                    env->DeleteLocalRef(key);
+                    failed = true;
+                    break;
+                }
+
+                if (skip) {
+                    env->DeleteLocalRef(key);
+                    continue;
+                }
+            }
+            child = JS_GetProperty(context, frame.obj, atom);
+        }
+
+        if (JS_IsException(child)) {
+            env->DeleteLocalRef(key);
+            throwJSException(env, context);
+            failed = true;
+            break;
+        }
+
+        if (JS_IsObject(child)) {
+            auto it = circulars.find(JS_VALUE_GET_PTR(child));
+            if (it != circulars.end()) {
+                // Circular reference objects.
+                jobject container = env->CallObjectMethod(containers, listGetM, it->second);
+                bool added = container != nullptr && addToContainer(frame, key, container);
+                env->DeleteLocalRef(container);
+                JS_FreeValue(context, child);
+                env->DeleteLocalRef(key);
+                if (!added) {
+                    failed = true;
+                    break;
+                }
+                continue;
+            }
+
+            if (JS_IsFunction(context, child)) {
+                // Unsupported type.
+                JS_FreeValue(context, child);
+                env->DeleteLocalRef(key);
+                continue;
+            }
+
+            bool isArray = JS_IsArray(context, child);
+            if (isArray || (getTypedArrayType(child) < 0 && !JS_IsArrayBuffer(child))) {
+                jobject container = newJavaContainer(env, child, isArray, creator);
+                if (env->ExceptionCheck()) {
+                    JS_FreeValue(context, child);
+                    env->DeleteLocalRef(key);
+                    failed = true;
+                    break;
+                }
+
+                // 注意 push 之后 frame 引用可能失效，需要先放入父容器
+                bool added = addToContainer(frame, key, container);
+                env->DeleteLocalRef(key);
+                if (!added) {
+                    JS_FreeValue(context, child);
+                    env->DeleteLocalRef(container);
+                    failed = true;
+                    break;
+                }
+                failed = !pushFrame(child, container, isArray);
+                env->DeleteLocalRef(container);
+                continue;
+            }
+        }
+
+        // Primitive types.
+        jobject element = toJavaObject(env, thiz, frame.obj, child);
+        bool added = !env->ExceptionCheck() && addToContainer(frame, key, element);
+        env->DeleteLocalRef(element);
+        env->DeleteLocalRef(key);
+        if (!added) {
+            failed = true;
+            break;
+        }
+    }
+
+    for (auto &frame : stack) {
+        if (frame.tab != nullptr) {
+            freePropertyAtoms(frame.tab, frame.len);
+        }
+        JS_FreeValue(context, frame.obj);
+        env->DeleteLocalRef(frame.container);
+    }
+    env->DeleteLocalRef(containers);
+
+    if (failed) {
+        env->DeleteLocalRef(result);
+        return nullptr;
+    }
+    return result;
+}
+
+// toJS 还原对象图时的一层容器，obj 不持有引用（由父容器或 root 持有）
+struct BuildFrame {
+    JSValue obj;
+    jlong remaining;
+    bool isArray;
+    uint32_t index;
+};
+
+jobject QuickJSWrapper::toJS(JNIEnv *env, jobject thiz, jbyteArray node_types, jlongArray node_primitives,
+                             jobjectArray references, jobjectArray keys, jint size) const {
+    vector<jbyte> types(size);
+    vector<jlong> primitives(size);
+    env->GetByteArrayRegion(node_types, 0, size, types.data());
+    env->GetLongArrayRegion(node_primitives, 0, size, primitives.data());
+
+    // 下标 -> 容器，用于还原重复引用和循环引用
+    vector<JSValue> containers(size, JS_UNDEFINED);
+    vector<BuildFrame> stack;
+    JSValue root = JS_UNDEFINED;
+    for (jint i = 0; i < size; i++) {
+        while (!stack.empty() && stack.back().remaining == 0) {
+            stack.pop_back();
+        }
+
+        jbyte type = types[i];
+        JSValue value;
+        switch (type) {
+            case ARG_TYPE_MAP:
+                value = JS_NewObject(context);
+                break;
+            case ARG_TYPE_LIST:
+                value = JS_NewArray(context);
+                break;
+            case ARG_TYPE_REFERENCE:
+                value = JS_DupValue(context, containers[primitives[i]]);
+                break;
+            case ARG_TYPE_JS_OBJECT:
+                value = JS_DupValue(context, toJSArgument(env, thiz, type, primitives[i], references, i));
+                break;
+            default:
+                value = toJSArgument(env, thiz, type, primitives[i], references, i);
+                break;
+        }
+
+        if (JS_IsException(value)) {
+            // toJSValue 失败时可能已经有 Java 异常，throwJSException 会保留它
+            throwJSException(env, context);
+            releaseArguments(env, thiz, types, primitives, i + 1, {root});
+            return nullptr;
+        }
+
+        if (stack.empty()) {
+            root = value;
+        } else {
+            BuildFrame &parent = stack.back();
+            parent.remaining--;
+            int ret;
+            if (parent.isArray) {
+                ret = JS_DefinePropertyValueUint32(context, parent.obj, parent.index++, value, JS_PROP_C_W_E);
+            } else {
+                // key 按 UTF-16 转换，和字符串值一致，不使用 Modified UTF-8
+                auto key = (jstring) env->GetObjectArrayElement(keys, i);
+                JSValue keyValue = toJSString(env, key);
+                env->DeleteLocalRef(key);
+                JSAtom atom = JS_IsException(keyValue) ? JS_ATOM_NULL : JS_ValueToAtom(context, keyValue);
+                JS_FreeValue(context, keyValue);
+                if (atom == JS_ATOM_NULL) {
+                    JS_FreeValue(context, value);
+                    ret = -1;
+                } else {
+                    if (type == ARG_TYPE_CALL_FUNCTION) {
+                        defineFunctionName(value, atom);
+                    }
+                    ret = JS_DefinePropertyValue(context, parent.obj, atom, value, JS_PROP_C_W_E);
+                    JS_FreeAtom(context, atom);
+                }
+            }
+
+            // 定义属性失败时 value 已经被释放，剩下的容器随 root 一起释放
+            if (ret < 0) {
+                throwJSException(env, context);
+                releaseArguments(env, thiz, types, primitives, i + 1, {root});
+                return nullptr;
+            }
+        }
+
+        if (type == ARG_TYPE_MAP || type == ARG_TYPE_LIST) {
+            containers[i] = value;
+            stack.push_back({value, primitives[i], type == ARG_TYPE_LIST, 0});
+        }
+    }
+
+    return toJavaObject(env, thiz, JS_UNDEFINED, root);
+}
+
+// encode/decode 使用的二进制交换格式，和 Java 端的 JSBinaryCodec 保持一致：
+//   头部：'Q' 'J' 'S' 'B' + 格式版本(1 字节)，格式和 QuickJS 的版本无关
+//   值：tag(1 字节) + 内容，长度、数量和下标都使用 varint（LEB128），整数先做 zigzag 编码
+//   字符串使用 UTF-8，STRING_DEF 会把字符串加入字符串表，之后同样的字符串只写 STRING_REF + 下标
+//   对象和数组按第一次出现的顺序编号，再次出现（共享对象、循环引用）时只写 REF + 编号
+// decode 对每个长度和下标都做了边界校验，可以用来解码不可信的数据。
+enum BinaryTag {
+    BINARY_NULL = 0,
+    BINARY_UNDEFINED = 1,
+    BINARY_FALSE = 2,
+    BINARY_TRUE = 3,
+    BINARY_INT = 4,         // zigzag varint
+    BINARY_DOUBLE = 5,      // 8 字节，小端
+    BINARY_STRING = 6,      // varint 长度 + UTF-8
+    BINARY_STRING_DEF = 7,  // 同 STRING，并加入字符串表
+    BINARY_STRING_REF = 8,  // varint 字符串表下标
+    BINARY_OBJECT = 9,      // varint 属性个数 + 若干 (key, value)，key 只能是三种字符串之一
+    BINARY_ARRAY = 10,      // varint 长度 + 若干 value
+    BINARY_REF = 11,        // varint 对象表下标
+    BINARY_BYTES = 12,      // varint 长度 + 原始字节，对应 ArrayBuffer 和 byte[]
+};
+
+static const uint8_t BINARY_MAGIC[] = {'Q', 'J', 'S', 'B'};
+static const uint8_t BINARY_VERSION = 1;
+// 超过这个长度的字符串值不进入字符串表，避免为大段文本计算哈希；key 总是进入字符串表
+static const size_t BINARY_INTERN_LIMIT = 64;
+
+class BinaryWriter {
+public:
+    vector<uint8_t> data;
+
+    void writeByte(uint8_t b) {
+        data.push_back(b);
+    }
+
+    void writeVarint(uint64_t v) {
+        while (v >= 0x80) {
+            data.push_back(static_cast<uint8_t>(v | 0x80));
+            v >>= 7;
+        }
+        data.push_back(static_cast<uint8_t>(v));
+    }
+
+    void writeBytes(const void *bytes, size_t len) {
+        auto p = reinterpret_cast<const uint8_t *>(bytes);
+        data.insert(data.end(), p, p + len);
+    }
+
+    void writeString(const char *str, size_t len, bool intern) {
+        if (intern) {
+            auto result = strings.emplace(string(str, len), static_cast<uint32_t>(strings.size()));
+            if (!result.second) {
+                writeByte(BINARY_STRING_REF);
+                writeVarint(result.first->second);
+                return;
+            }
+        }
+        writeByte(intern ? BINARY_STRING_DEF : BINARY_STRING);
+        writeVarint(len);
+        writeBytes(str, len);
+    }
+
+private:
+    std::unordered_map<string, uint32_t> strings;
+};
+
+class BinaryReader {
+public:
+    BinaryReader(const uint8_t *data, size_t length) : pos(data), end(data + length) {}
+
+    size_t remaining() const {
+        return end - pos;
+    }
+
+    bool readByte(uint8_t *b) {
+        if (pos == end) {
+            return false;
+        }
+        *b = *pos++;
+        return true;
+    }
+
+    bool readVarint(uint64_t *v) {
+        uint64_t result = 0;
+        for (int shift = 0; shift < 64 && pos < end; shift += 7) {
+            uint8_t b = *pos++;
+            // 第 10 个字节只剩 1 个有效位
+            if (shift == 63 && b > 1) {
+                return false;
+            }
+            result |= static_cast<uint64_t>(b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                *v = result;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 读取一个长度，长度不能超过剩余的字节数（每个元素至少占 minSize 字节）
+    bool readLength(uint32_t *len, size_t minSize) {
+        uint64_t v;
+        if (!readVarint(&v) || v > UINT32_MAX || v > remaining() / minSize) {
+            return false;
+        }
+        *len = static_cast<uint32_t>(v);
+        return true;
+    }
+
+    const uint8_t *readBytes(size_t len) {
+        if (len > remaining()) {
+            return nullptr;
+        }
+        const uint8_t *p = pos;
+        pos += len;
+        return p;
+    }
+
+private:
+    const uint8_t *pos;
+    const uint8_t *end;
+};
+
+struct BinaryEncodeFrame {
+    JSValueConst obj;
+    bool isArray;
+    JSPropertyEnum *tab;
+    uint32_t len;
+    uint32_t index;
+};
+
+jbyteArray QuickJSWrapper::encode(JNIEnv *env, jlong value) const {
+    BinaryWriter writer;
+    vector<BinaryEncodeFrame> stack;
+    // 对象表，编码期间持有这些对象的引用，避免 getter 释放对象之后地址被复用
+    std::unordered_map<void *, uint32_t> objects;
+    vector<JSValue> held;
+    bool failed = false;
+
+    auto fail = [&](const char *message) {
+        JS_ThrowTypeError(context, "%s", message);
+        throwJSException(env, context);
+        return false;
+    };
+
+    // 写入一个值，对象和数组会压栈，v 的引用由这里释放
+    auto writeValue = [&](JSValue v) -> bool {
+        switch (JS_VALUE_GET_NORM_TAG(v)) {
+            case JS_TAG_NULL:
+                writer.writeByte(BINARY_NULL);
+                return true;
+            case JS_TAG_UNDEFINED:
+                writer.writeByte(BINARY_UNDEFINED);
+                return true;
+            case JS_TAG_BOOL:
+                writer.writeByte(JS_VALUE_GET_BOOL(v) ? BINARY_TRUE : BINARY_FALSE);
+                return true;
+            case JS_TAG_INT: {
+                int64_t i = JS_VALUE_GET_INT(v);
+                writer.writeByte(BINARY_INT);
+                writer.writeVarint((static_cast<uint64_t>(i) << 1) ^ static_cast<uint64_t>(i >> 63));
+                return true;
+            }
+            case JS_TAG_FLOAT64: {
+                double d = JS_VALUE_GET_FLOAT64(v);
+                // 安全范围内的整数（-0 除外）按 INT 写入，更紧凑
+                if (d == std::trunc(d) && std::fabs(d) <= MAX_SAFE_INTEGER && !(d == 0 && std::signbit(d))) {
+                    auto i = static_cast<int64_t>(d);
+                    writer.writeByte(BINARY_INT);
+                    writer.writeVarint((static_cast<uint64_t>(i) << 1) ^ static_cast<uint64_t>(i >> 63));
+                    return true;
+                }
+                uint64_t bits;
+                memcpy(&bits, &d, sizeof(bits));
+                writer.writeByte(BINARY_DOUBLE);
+                for (int i = 0; i < 8; i++) {
+                    writer.writeByte(static_cast<uint8_t>(bits >> (i * 8)));
+                }
+                return true;
+            }
+            case JS_TAG_STRING: {
+                size_t len;
+                const char *str = JS_ToCStringLen(context, &len, v);
+                JS_FreeValue(context, v);
+                if (str == nullptr) {
+                    throwJSException(env, context);
+                    return false;
+                }
+                writer.writeString(str, len, len <= BINARY_INTERN_LIMIT);
+                JS_FreeCString(context, str);
+                return true;
+            }
+            case JS_TAG_OBJECT: {
+                void *ptr = JS_VALUE_GET_PTR(v);
+                auto it = objects.find(ptr);
+                if (it != objects.end()) {
+                    JS_FreeValue(context, v);
+                    writer.writeByte(BINARY_REF);
+                    writer.writeVarint(it->second);
+                    return true;
+                }
+
+                if (JS_IsArrayBuffer(v)) {
+                    size_t byteLength = 0;
+                    uint8_t *data = JS_GetArrayBuffer(context, &byteLength, v);
+                    JS_FreeValue(context, v);
+                    if (data == nullptr) {
+                        // detached 的 ArrayBuffer 按空数据处理
+                        JS_FreeValue(context, JS_GetException(context));
+                        byteLength = 0;
+                    }
+                    writer.writeByte(BINARY_BYTES);
+                    writer.writeVarint(byteLength);
+                    writer.writeBytes(data, byteLength);
+                    return true;
+                }
+
+                if (JS_IsFunction(context, v) || getTypedArrayType(v) >= 0) {
+                    JS_FreeValue(context, v);
+                    return fail("Failed to encode, functions and typed arrays are not supported.");
+                }
+
+                int isArray = JS_IsArray(context, v);
+                BinaryEncodeFrame frame = {v, isArray > 0, nullptr, 0, 0};
+                if (isArray > 0) {
+                    if (!getArrayLength(env, context, v, &frame.len)) {
+                        JS_FreeValue(context, v);
+                        return false;
+                    }
+                } else if (isArray < 0 || JS_GetOwnPropertyNames(context, &frame.tab, &frame.len, v,
+                                                                  JS_GPN_STRING_MASK | JS_GPN_ENUM_ONLY) < 0) {
+                    JS_FreeValue(context, v);
+                    throwJSException(env, context);
+                    return false;
+                }
+
+                objects.emplace(ptr, static_cast<uint32_t>(objects.size()));
+                held.push_back(v);
+                stack.push_back(frame);
+                writer.writeByte(frame.isArray ? BINARY_ARRAY : BINARY_OBJECT);
+                writer.writeVarint(frame.len);
+                return true;
+            }
+            default:
+                // BigInt、Symbol 等
+                JS_FreeValue(context, v);
+                return fail("Failed to encode, BigInt and Symbol are not supported.");
+        }
+    };
+
+    writer.writeBytes(BINARY_MAGIC, sizeof(BINARY_MAGIC));
+    writer.writeByte(BINARY_VERSION);
+    failed = !writeValue(JS_DupValue(context, JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value))));
+
+    while (!failed && !stack.empty()) {
+        BinaryEncodeFrame &frame = stack.back();
+        if (frame.index >= frame.len) {
+            if (frame.tab != nullptr) {
+                freePropertyAtoms(frame.tab, frame.len);
+            }
+            stack.pop_back();
+            continue;
+        }
+
+        uint32_t index = frame.index++;
+        JSValue child;
+        if (frame.isArray) {
+            child = JS_GetPropertyUint32(context, frame.obj, index);
+        } else {
+            JSAtom key = frame.tab[index].atom;
+            JSValue keyValue = JS_AtomToString(context, key);
+            size_t len;
+            const char *keyStr = JS_IsException(keyValue) ? nullptr : JS_ToCStringLen(context, &len, keyValue);
+            JS_FreeValue(context, keyValue);
+            if (keyStr == nullptr) {
+                throwJSException(env, context);
+                failed = true;
+                break;
+            }
+            writer.writeString(keyStr, len, true);
+            JS_FreeCString(context, keyStr);
+            child = JS_GetProperty(context, frame.obj, key);
+        }
+
+        if (JS_IsException(child)) {
+            throwJSException(env, context);
+            failed = true;
+            break;
+        }
+        // writeValue 可能压栈，frame 在这之后不能再使用
+        failed = !writeValue(child);
+    }
+
+    for (auto &frame : stack) {
+        if (frame.tab != nullptr) {
+            freePropertyAtoms(frame.tab, frame.len);
+        }
+    }
+    for (auto &obj : held) {
+        JS_FreeValue(context, obj);
+    }
+
+    if (failed) {
+        return nullptr;
+    }
+
+    if (writer.data.size() > INT32_MAX) {
+        throwJSException(env, "Failed to encode, the data is too large.");
+        return nullptr;
+    }
+
+    auto length = static_cast<jsize>(writer.data.size());
+    jbyteArray result = env->NewByteArray(length);
+    if (result != nullptr) {
+        env->SetByteArrayRegion(result, 0, length, reinterpret_cast<const jbyte *>(writer.data.data()));
+    }
+    return result;
+}
+
+struct BinaryDecodeFrame {
+    JSValueConst obj;
+    bool isArray;
+    uint32_t len;
+    uint32_t index;
+};
+
+JSValue QuickJSWrapper::decodeBinary(JNIEnv *env, const uint8_t *data, size_t length) const {
+    BinaryReader reader(data, length);
+    vector<BinaryDecodeFrame> stack;
+    // 对象表和字符串表都持有引用，父对象的属性被后面重复的 key 覆盖时对象也不会被提前释放
+    vector<JSValue> objects;
+    vector<JSValue> strings;
+    JSValue root = JS_UNDEFINED;
+    const char *error = nullptr;
+    bool failed = false;
+
+    // 读取一个字符串（STRING、STRING_DEF 或 STRING_REF），tag 已经读出
+    auto readString = [&](uint8_t tag) -> JSValue {
+        uint64_t n;
+        if (tag == BINARY_STRING_REF) {
+            if (!reader.readVarint(&n) || n >= strings.size()) {
+                error = "invalid string reference";
+                return JS_EXCEPTION;
+            }
+            return JS_DupValue(context, strings[n]);
+        }
+
+        uint32_t len;
+        const uint8_t *bytes;
+        if (!reader.readLength(&len, 1) || (bytes = reader.readBytes(len)) == nullptr) {
+            error = "invalid string length";
+            return JS_EXCEPTION;
+        }
+        JSValue str = JS_NewStringLen(context, reinterpret_cast<const char *>(bytes), len);
+        if (tag == BINARY_STRING_DEF && !JS_IsException(str)) {
+            strings.push_back(JS_DupValue(context, str));
+        }
+        return str;
+    };
+
+    // 读取一个值，对象和数组会压栈
+    auto readValue = [&]() -> JSValue {
+        uint8_t tag;
+        if (!reader.readByte(&tag)) {
+            error = "unexpected end of data";
+            return JS_EXCEPTION;
+        }
+
+        switch (tag) {
+            case BINARY_NULL:
+                return JS_NULL;
+            case BINARY_UNDEFINED:
+                return JS_UNDEFINED;
+            case BINARY_FALSE:
+                return JS_FALSE;
+            case BINARY_TRUE:
+                return JS_TRUE;
+            case BINARY_INT: {
+                uint64_t n;
+                if (!reader.readVarint(&n)) {
+                    error = "invalid integer";
+                    return JS_EXCEPTION;
+                }
+                return newLong(context, static_cast<jlong>((n >> 1) ^ (~(n & 1) + 1)));
+            }
+            case BINARY_DOUBLE: {
+                const uint8_t *bytes = reader.readBytes(8);
+                if (bytes == nullptr) {
+                    error = "unexpected end of data";
+                    return JS_EXCEPTION;
+                }
+                uint64_t bits = 0;
+                for (int i = 0; i < 8; i++) {
+                    bits |= static_cast<uint64_t>(bytes[i]) << (i * 8);
+                }
+                double d;
+                memcpy(&d, &bits, sizeof(d));
+                return JS_NewFloat64(context, d);
+            }
+            case BINARY_STRING:
+            case BINARY_STRING_DEF:
+            case BINARY_STRING_REF:
+                return readString(tag);
+            case BINARY_BYTES: {
+                uint32_t len;
+                const uint8_t *bytes;
+                if (!reader.readLength(&len, 1) || (bytes = reader.readBytes(len)) == nullptr) {
+                    error = "invalid byte length";
+                    return JS_EXCEPTION;
+                }
+                return JS_NewArrayBufferCopy(context, bytes, len);
+            }
+            case BINARY_REF: {
+                uint64_t n;
+                if (!reader.readVarint(&n) || n >= objects.size()) {
+                    error = "invalid object reference";
+                    return JS_EXCEPTION;
+                }
+                return JS_DupValue(context, objects[n]);
+            }
+            case BINARY_OBJECT:
+            case BINARY_ARRAY: {
+                bool isArray = tag == BINARY_ARRAY;
+                uint32_t len;
+                // 对象的每个属性至少占 2 个字节（key 和 value），数组元素至少 1 个字节
+                if (!reader.readLength(&len, isArray ? 1 : 2)) {
+                    error = "invalid length";
+                    return JS_EXCEPTION;
+                }
+                JSValue obj = isArray ? JS_NewArray(context) : JS_NewObject(context);
+                if (JS_IsException(obj)) {
+                    return obj;
+                }
+                objects.push_back(JS_DupValue(context, obj));
+                stack.push_back({obj, isArray, len, 0});
+                return obj;
+            }
+            default:
+                error = "unknown tag";
+                return JS_EXCEPTION;
+        }
+    };
+
+    const uint8_t *magic = reader.readBytes(sizeof(BINARY_MAGIC));
+    uint8_t version = 0;
+    if (magic == nullptr || memcmp(magic, BINARY_MAGIC, sizeof(BINARY_MAGIC)) != 0 || !reader.readByte(&version)) {
+        error = "the data was not produced by encode";
+        failed = true;
+    } else if (version != BINARY_VERSION) {
+        error = "unsupported format version";
+        failed = true;
+    } else {
+        root = readValue();
+        failed = JS_IsException(root);
+    }
+
+    while (!failed && !stack.empty()) {
+        BinaryDecodeFrame &frame = stack.back();
+        if (frame.index >= frame.len) {
+            stack.pop_back();
+            continue;
+        }
+
+        // readValue 可能压栈，先把需要的字段取出来
+        JSValueConst obj = frame.obj;
+        uint32_t index = frame.index++;
+        if (frame.isArray) {
+            JSValue child = readValue();
+            failed = JS_IsException(child) ||
+                     JS_DefinePropertyValueUint32(context, obj, index, child, JS_PROP_C_W_E) < 0;
+            continue;
+        }
+
+        uint8_t tag;
+        if (!reader.readByte(&tag) || (tag != BINARY_STRING && tag != BINARY_STRING_DEF && tag != BINARY_STRING_REF)) {
+            error = "invalid key";
+            failed = true;
+            break;
+        }
+        JSValue keyValue = readString(tag);
+        if (JS_IsException(keyValue)) {
+            failed = true;
+            break;
+        }
+        JSAtom key = JS_ValueToAtom(context, keyValue);
+        JS_FreeValue(context, keyValue);
+        if (key == JS_ATOM_NULL) {
+            failed = true;
+            break;
+        }
+        JSValue child = readValue();
+        failed = JS_IsException(child) || JS_DefinePropertyValue(context, obj, key, child, JS_PROP_C_W_E) < 0;
+        JS_FreeAtom(context, key);
+    }
+
+    if (!failed && reader.remaining() > 0) {
+        error = "unexpected trailing data";
+        failed = true;
+    }
+
+    for (auto &obj : objects) {
+        JS_FreeValue(context, obj);
+    }
+    for (auto &str : strings) {
+        JS_FreeValue(context, str);
+    }
+
+    if (failed) {
+        JS_FreeValue(context, root);
+        if (error != nullptr) {
+            string message = string("Failed to decode, ") + error + ".";
+            throwJSException(env, message.c_str());
+        } else {
+            throwJSException(env, context);
+        }
+        return JS_EXCEPTION;
+    }
+
+    return root;
+}
+
+jobject QuickJSWrapper::decode(JNIEnv *env, jobject thiz, jobject direct_buffer, jbyteArray array, jint offset,
+                               jint length) const {
+    JSValue obj;
+    if (direct_buffer != nullptr) {
+        auto address = reinterpret_cast<const uint8_t *>(env->GetDirectBufferAddress(direct_buffer)) + offset;
+        obj = decodeBinary(env, address, length);
+    } else {
+        jbyte *buffer = env->GetByteArrayElements(array, nullptr);
+        obj = decodeBinary(env, reinterpret_cast<const uint8_t *>(buffer) + offset, length);
+        env->ReleaseByteArrayElements(array, buffer, JNI_ABORT);
+    }
+
+    if (JS_IsException(obj)) {
+        return nullptr;
+    }
+
+    return toJavaObject(env, thiz, JS_UNDEFINED, obj);
+}
+
+// 流式输出 JSON 时使用的缓冲区，写满之后通过 OutputStream.write(byte[], int, int) 输出，内存占用和 JSON 大小无关
+class JsonStreamWriter {
+public:
+    JsonStreamWriter(JNIEnv *env, jobject out, jbyteArray buffer, jmethodID writeM)
+            : env(env), out(out), buffer(buffer), writeM(writeM) {
+        capacity = env->GetArrayLength(buffer);
+        data.resize(capacity);
+    }
+
+    bool write(const char *str, size_t len) {
+        while (len > 0) {
+            if (pos == capacity && !flush()) {
+                return false;
+            }
+
+            size_t n = capacity - pos < len ? capacity - pos : len;
+            memcpy(data.data() + pos, str, n);
+            pos += n;
+            str += n;
+            len -= n;
+        }
+        return true;
+    }
+
+    bool write(const char *str) {
+        return write(str, strlen(str));
+    }
+
+    bool write(char c) {
+        return write(&c, 1);
+    }
+
+    bool writeQuoted(const char *str, size_t len) {
+        static const char *hex = "0123456789abcdef";
+        if (!write('"')) {
+            return false;
+        }
+
+        size_t start = 0;
+        for (size_t i = 0; i < len; i++) {
+            auto c = static_cast<uint8_t>(str[i]);
+            char escape[7] = {0};
+            size_t skip = 0;
+            if (c == '"' || c == '\\') {
+                escape[0] = '\\';
+                escape[1] = static_cast<char>(c);
+            } else if (c < 0x20) {
+                escape[0] = '\\';
+                switch (c) {
+                    case '\b': escape[1] = 'b'; break;
+                    case '\f': escape[1] = 'f'; break;
+                    case '\n': escape[1] = 'n'; break;
+                    case '\r': escape[1] = 'r'; break;
+                    case '\t': escape[1] = 't'; break;
+                    default:
+                        escape[1] = 'u';
+                        escape[2] = '0';
+                        escape[3] = '0';
+                        escape[4] = hex[c >> 4];
+                        escape[5] = hex[c & 0xF];
+                        break;
+                }
+            } else if (c == 0xED && i + 2 < len && (static_cast<uint8_t>(str[i + 1]) & 0xE0) == 0xA0) {
+                // QuickJS 把单独的代理项编码成 3 字节的 UTF-8，按照 JSON.stringify 的规则转为 \uXXXX
+                uint32_t cp = ((c & 0x0F) << 12) | ((static_cast<uint8_t>(str[i + 1]) & 0x3F) << 6) |
+                              (static_cast<uint8_t>(str[i + 2]) & 0x3F);
+                escape[0] = '\\';
+                escape[1] = 'u';
+                escape[2] = hex[(cp >> 12) & 0xF];
+                escape[3] = hex[(cp >> 8) & 0xF];
+                escape[4] = hex[(cp >> 4) & 0xF];
+                escape[5] = hex[cp & 0xF];
+                skip = 2;
+            } else {
+                continue;
+            }
+
+            if (!write(str + start, i - start) || !write(escape)) {
+                return false;
+            }
+            i += skip;
+            start = i + 1;
+        }
+
+        return write(str + start, len - start) && write('"');
+    }
+
+    bool flush() {
+        if (pos == 0) {
+            return true;
+        }
+
+        env->SetByteArrayRegion(buffer, 0, static_cast<jsize>(pos), reinterpret_cast<const jbyte *>(data.data()));
+        env->CallVoidMethod(out, writeM, buffer, 0, static_cast<jint>(pos));
+        pos = 0;
+        return !env->ExceptionCheck();
+    }
+
+private:
+    JNIEnv *env;
+    jobject out;
+    jbyteArray buffer;
+    jmethodID writeM;
+    vector<char> data;
+    size_t capacity;
+    size_t pos = 0;
+};
+
+// stringify 遍历时的一层对象，obj 持有引用
+struct JsonFrame {
+    JSValue obj;
+    bool isArray;
+    JSPropertyEnum *tab;
+    uint32_t len;
+    uint32_t index;
+    bool empty;
+};
+
+// 按 JSON.stringify 的规则处理 toJSON 和包装类型，value 的引用会被转移到返回值
+JSValue QuickJSWrapper::toJSONValue(JSValue value, JSAtom key) const {
+    if (JS_IsObject(value) || JS_IsBigInt(context, value)) {
+        JSValue toJSON = JS_GetPropertyStr(context, value, "toJSON");
+        if (JS_IsException(toJSON)) {
+            JS_FreeValue(context, value);
+            return toJSON;
+        }
+
+        if (JS_IsFunction(context, toJSON)) {
+            JSValue keyValue = JS_AtomToString(context, key);
+            JSValue result = JS_Call(context, toJSON, value, 1, &keyValue);
+            JS_FreeValue(context, keyValue);
+            JS_FreeValue(context, value);
+            value = result;
+        }
+        JS_FreeValue(context, toJSON);
+    }
+
+    if (JS_IsObject(value)) {
+        JSClassID classId = JS_GetClassID(value);
+        JSValue result;
+        if (classId == numberClassId) {
+            double d;
+            result = JS_ToFloat64(context, &d, value) < 0 ? JS_EXCEPTION : JS_NewFloat64(context, d);
+        } else if (classId == stringClassId) {
+            result = JS_ToString(context, value);
+        } else if (classId == booleanClassId) {
+            JSValue valueOf = JS_GetPropertyStr(context, value, "valueOf");
+            result = JS_Call(context, valueOf, value, 0, nullptr);
+            JS_FreeValue(context, valueOf);
+        } else {
+            return value;
+        }
+
+        JS_FreeValue(context, value);
+        return result;
+    }
+
+    return value;
+}
+
+void QuickJSWrapper::stringify(JNIEnv *env, jlong value, jobject out, jbyteArray buffer) const {
+    JsonStreamWriter writer(env, out, buffer, outputStreamWriteM);
+    vector<JsonFrame> stack;
+    // 当前遍历路径上的对象，用于检测循环引用
+    std::unordered_set<void *> ancestors;
+    bool failed = false;
+
+    // 输出一个值，对象和数组会压栈，返回 false 表示出错；*skipped 表示该值在 JSON 里不可见（undefined、函数、Symbol）
+    auto writeValue = [&](JSValue v, bool *skipped) -> bool {
+        *skipped = false;
+        switch (JS_VALUE_GET_NORM_TAG(v)) {
+            case JS_TAG_NULL:
+                return writer.write("null");
+            case JS_TAG_BOOL:
+                return writer.write(JS_VALUE_GET_BOOL(v) ? "true" : "false");
+            case JS_TAG_INT: {
+                char num[16];
+                snprintf(num, sizeof(num), "%d", JS_VALUE_GET_INT(v));
+                return writer.write(num);
+            }
+            case JS_TAG_FLOAT64: {
+                double d = JS_VALUE_GET_FLOAT64(v);
+                if (!std::isfinite(d)) {
+                    return writer.write("null");
+                }
+                size_t len;
+                const char *str = JS_ToCStringLen(context, &len, v);
+                bool ret = writer.write(str, len);
+                JS_FreeCString(context, str);
+                return ret;
+            }
+            case JS_TAG_STRING: {
+                size_t len;
+                const char *str = JS_ToCStringLen(context, &len, v);
+                bool ret = writer.writeQuoted(str, len);
+                JS_FreeCString(context, str);
+                JS_FreeValue(context, v);
+                return ret;
+            }
+            case JS_TAG_BIG_INT:
+                JS_FreeValue(context, v);
+                JS_ThrowTypeError(context, "BigInt are forbidden in JSON.stringify");
+                throwJSException(env, context);
+                return false;
+            case JS_TAG_OBJECT: {
+                if (JS_IsFunction(context, v)) {
+                    JS_FreeValue(context, v);
+                    *skipped = true;
+                    return true;
+                }
+
+                void *ptr = JS_VALUE_GET_PTR(v);
+                if (ancestors.count(ptr)) {
+                    JS_FreeValue(context, v);
+                    JS_ThrowTypeError(context, "circular reference");
+                    throwJSException(env, context);
+                    return false;
+                }
+
+                int isArray = JS_IsArray(context, v);
+                JsonFrame frame = {v, isArray > 0, nullptr, 0, 0, true};
+                if (isArray > 0) {
+                    if (!getArrayLength(env, context, v, &frame.len)) {
+                        JS_FreeValue(context, v);
+                        return false;
+                    }
+                } else if (isArray < 0 || JS_GetOwnPropertyNames(context, &frame.tab, &frame.len, v,
+                                                                  JS_GPN_STRING_MASK | JS_GPN_ENUM_ONLY) < 0) {
+                    JS_FreeValue(context, v);
+                    throwJSException(env, context);
+                    return false;
+                }
+
+                ancestors.insert(ptr);
+                stack.push_back(frame);
+                return writer.write(frame.isArray ? '[' : '{');
+            }
+            default:
+                // undefined、Symbol 等
+                JS_FreeValue(context, v);
+                *skipped = true;
+                return true;
+        }
+    };
+
+    JSValue root = JS_DupValue(context, JS_MKPTR(JS_TAG_OBJECT, reinterpret_cast<void *>(value)));
+    // 顶层对象调用 toJSON 时 key 为空字符串
+    JSAtom emptyKey = JS_NewAtom(context, "");
+    root = toJSONValue(root, emptyKey);
+    JS_FreeAtom(context, emptyKey);
+    bool skipped;
+    if (JS_IsException(root)) {
+        throwJSException(env, context);
+        failed = true;
+    } else {
+        failed = !writeValue(root, &skipped);
+    }
+
+    while (!failed && !stack.empty()) {
+        JsonFrame &frame = stack.back();
+        if (frame.index >= frame.len) {
+            failed = !writer.write(frame.isArray ? ']' : '}');
+            ancestors.erase(JS_VALUE_GET_PTR(frame.obj));
+            if (frame.tab != nullptr) {
+                freePropertyAtoms(frame.tab, frame.len);
+            }
+            JS_FreeValue(context, frame.obj);
+            stack.pop_back();
+            continue;
+        }
+
+        uint32_t index = frame.index++;
+        JSAtom key = frame.isArray ? JS_NewAtomUInt32(context, index) : JS_DupAtom(context, frame.tab[index].atom);
+        JSValue child = JS_GetProperty(context, frame.obj, key);
+        if (!JS_IsException(child)) {
+            child = toJSONValue(child, key);
+        }
+        if (JS_IsException(child)) {
+            JS_FreeAtom(context, key);
+            throwJSException(env, context);
+            failed = true;
+            break;
+        }
+
+        bool isArray = frame.isArray;
+        if (isArray) {
+            JS_FreeAtom(context, key);
+            if ((index > 0 && !writer.write(',')) || !writeValue(child, &skipped) ||
+                (skipped && !writer.write("null"))) {
+                failed = true;
+            }
+            continue;
+        }
+
+        // 对象里的 undefined、函数和 Symbol 需要连同 key 一起省略
+        uint32_t tag = JS_VALUE_GET_NORM_TAG(child);
+        if (tag == JS_TAG_UNDEFINED || tag == JS_TAG_SYMBOL || JS_IsFunction(context, child)) {
+            JS_FreeValue(context, child);
+            JS_FreeAtom(context, key);
+            continue;
+        }
+
+        // key 里可能有 U+0000，需要带长度转换
+        JSValue keyValue = JS_AtomToString(context, key);
+        JS_FreeAtom(context, key);
+        size_t keyLength;
+        const char *keyStr = JS_IsException(keyValue) ? nullptr : JS_ToCStringLen(context, &keyLength, keyValue);
+        JS_FreeValue(context, keyValue);
+        if (keyStr == nullptr) {
+            JS_FreeValue(context, child);
+            throwJSException(env, context);
+            failed = true;
+            break;
+        }
+        bool ok = (frame.empty || writer.write(',')) && writer.writeQuoted(keyStr, keyLength) && writer.write(':');
+        JS_FreeCString(context, keyStr);
+        frame.empty = false;
+        if (!ok || !writeValue(child, &skipped)) {
+            failed = true;
+        }
+    }
+
+    for (auto &frame : stack) {
+        if (frame.tab != nullptr) {
+            freePropertyAtoms(frame.tab, frame.len);
+        }
+        JS_FreeValue(context, frame.obj);
+    }
+
+    if (!failed) {
+        writer.flush();
+    }
+}
+
+// JS_Eval 和 JS_ParseJSON 都要求源码以 '\0' 结尾。byte[] 总是拷贝到 storage；
+// DirectByteBuffer 如果在 offset + length 位置已经是 '\0'，直接使用原内存，否则同样拷贝一份。
+const char *QuickJSWrapper::terminatedSource(JNIEnv *env, jbyteArray array, jobject direct, jint offset, jint length,
+                                             vector<char> &storage) const {
+    if (direct != nullptr) {
+        auto address = reinterpret_cast<const char *>(env->GetDirectBufferAddress(direct));
+        jlong capacity = env->GetDirectBufferCapacity(direct);
+        if (offset + length < capacity && address[offset + length] == '\0') {
+            return address + offset;
+        }
+
+        storage.resize(length + 1);
+        memcpy(storage.data(), address + offset, length);
+    } else {
+        storage.resize(length + 1);
+        env->GetByteArrayRegion(array, offset, length, reinterpret_cast<jbyte *>(storage.data()));
+    }
+
+    storage[length] = '\0';
+    return storage.data();
+}
+
+// JS_ParseJSON 要求 buf[len] 为 '\0'
+jobject QuickJSWrapper::parseJSON(JNIEnv *env, jobject thiz, const char *buf, size_t len) const {
+    JSValue jsonObj = JS_ParseJSON(context, buf, len, "parseJSON.js");
+    if (JS_IsException(jsonObj)) {
+        throwJSException(env, context);
+        return nullptr;
+    }
+
+    return toJavaObject(env, thiz, JS_UNDEFINED, jsonObj);
+}
+
+jobject QuickJSWrapper::parseBytes(JNIEnv *env, jobject thiz, jbyteArray json, jint offset, jint length) const {
+    vector<char> storage;
+    const char *buf = terminatedSource(env, json, nullptr, offset, length, storage);
+    return parseJSON(env, thiz, buf, length);
+}
+
+jobject QuickJSWrapper::parseDirectBuffer(JNIEnv *env, jobject thiz, jobject buffer, jint position, jint limit) const {
+    vector<char> storage;
+    const char *buf = terminatedSource(env, nullptr, buffer, position, limit - position, storage);
+    return parseJSON(env, thiz, buf, limit - position);
+}
+
+jobject QuickJSWrapper::parseStream(JNIEnv *env, jobject thiz, jobject in, jbyteArray chunk) const {
+    jsize chunkSize = env->GetArrayLength(chunk);
+    vector<char> buf;
+    size_t len = 0;
+    while (true) {
+        buf.resize(len + chunkSize + 1);
+        jint n = env->CallIntMethod(in, inputStreamReadM, chunk, 0, chunkSize);
+        if (env->ExceptionCheck()) {
+            return nullptr;
+        }
+
+        if (n < 0) {
+            break;
+        }
+
+        // chunk 不为空时 read 至少读取一个字节，返回 0 说明 InputStream 的实现有问题，继续读取会一直循环
+        if (n == 0) {
+            throwJavaException(env, "java/io/IOException", "InputStream.read returned 0 for a non-empty buffer");
+            return nullptr;
+        }
+        env->GetByteArrayRegion(chunk, 0, n, reinterpret_cast<jbyte *>(buf.data() + len));
+        len += n;
+    }
+
+    buf[len] = '\0';
+    return parseJSON(env, thiz, buf.data(), len);
+}
+
+jobject QuickJSWrapper::evaluateBytes(JNIEnv *env, jobject thiz, jbyteArray array, jobject direct, jint offset,
+                                      jint length, jstring file_name, jboolean isModule) {
+    vector<char> storage;
+    const char *buf = terminatedSource(env, array, direct, offset, length, storage);
+    const char *c_file_name = env->GetStringUTFChars(file_name, JNI_FALSE);
+    jobject result = evalBuffer(env, thiz, buf, length, c_file_name, isModule);
+    env->ReleaseStringUTFChars(file_name, c_file_name);
+    return result;
+}
+
+jbyteArray QuickJSWrapper::compileBytes(JNIEnv *env, jbyteArray array, jobject direct, jint offset, jint length,
+                                        jstring file_name, jboolean isModule) const {
+    vector<char> storage;
+    const char *buf = terminatedSource(env, array, direct, offset, length, storage);
+    const char *c_file_name = env->GetStringUTFChars(file_name, JNI_FALSE);
+    jbyteArray result = compileBuffer(env, buf, length, c_file_name, isModule);
+    env->ReleaseStringUTFChars(file_name, c_file_name);
+    return result;
+}
+
+// 只读映射一个文件，映射区域末尾额外保留一个全为 0 的字节作为源码的结尾
+class MappedSource {
+public:
+    MappedSource(JNIEnv *env, jstring path) {
+        const char *c_path = env->GetStringUTFChars(path, JNI_FALSE);
+        int fd = open(c_path, O_RDONLY);
+        struct stat st {};
+        if (fd < 0 || fstat(fd, &st) < 0) {
+            throwJavaException(env, "java/io/IOException", "Failed to open %s: %s", c_path, strerror(errno));
+            if (fd >= 0) {
+                close(fd);
+            }
+            env->ReleaseStringUTFChars(path, c_path);
+            return;
+        }
+
+        length = static_cast<size_t>(st.st_size);
+        // 先保留 length + 1 大小的匿名内存（内容为 0），再把文件映射到它的开头，
+        // 这样即使文件大小刚好是页大小的整数倍，结尾处也一定有一个 '\0'
+        mappedSize = length + 1;
+        void *region = mmap(nullptr, mappedSize, PROT_READ, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0);
+        if (region != MAP_FAILED && length > 0 &&
+            mmap(region, length, PROT_READ, MAP_PRIVATE | MAP_FIXED, fd, 0) == MAP_FAILED) {
+            munmap(region, mappedSize);
+            region = MAP_FAILED;
+        }
+        close(fd);
+
+        if (region == MAP_FAILED) {
+            throwJavaException(env, "java/io/IOException", "Failed to map %s: %s", c_path, strerror(errno));
+        } else {
+            data = reinterpret_cast<const char *>(region);
+        }
+        env->ReleaseStringUTFChars(path, c_path);
+    }
+
+    ~MappedSource() {
+        if (data != nullptr) {
+            munmap(const_cast<char *>(data), mappedSize);
+        }
+    }
+
+    const char *data = nullptr;
+    size_t length = 0;
+
+private:
+    size_t mappedSize = 0;
+};
+
+jobject QuickJSWrapper::evaluateFile(JNIEnv *env, jobject thiz, jstring path, jstring file_name, jboolean isModule) {
+    MappedSource source(env, path);
+    if (source.data == nullptr) {
+        return nullptr;
+    }
+
+    const char *c_file_name = env->GetStringUTFChars(file_name, JNI_FALSE);
+    jobject result = evalBuffer(env, thiz, source.data, source.length, c_file_name, isModule);
+    env->ReleaseStringUTFChars(file_name, c_file_name);
+    return result;
+}
+
+jbyteArray QuickJSWrapper::compileFile(JNIEnv *env, jstring path, jstring file_name, jboolean isModule) const {
+    MappedSource source(env, path);
+    if (source.data == nullptr) {
+        return nullptr;
+    }
+
+    const char *c_file_name = env->GetStringUTFChars(file_name, JNI_FALSE);
+    jbyteArray result = compileBuffer(env, source.data, source.length, c_file_name, isModule);
+    env->ReleaseStringUTFChars(file_name, c_file_name);
+    return result;
+}
+
+jstring StringCache::getJava(JNIEnv *env, const string &key) {
+    auto it = index.find(key);
+    if (it == index.end()) {
+        javaMisses++;
+        return nullptr;
+    }
+
+    javaHits++;
+    Entry &entry = entries[it->second];
+    entry.referenced = true;
+    return static_cast<jstring>(env->NewLocalRef(entry.javaString));
+}
+
+bool StringCache::getJS(JSContext *ctx, const string &key, JSValue *out) {
+    auto it = index.find(key);
+    if (it == index.end()) {
+        jsMisses++;
+        return false;
+    }
+
+    jsHits++;
+    Entry &entry = entries[it->second];
+    entry.referenced = true;
+    *out = JS_DupValue(ctx, entry.jsString);
+    return true;
+}
+
+void StringCache::put(JNIEnv *env, JSContext *ctx, const string &key, jstring javaString, JSValueConst jsString) {
+    if (capacity == 0 || index.find(key) != index.end()) {
+        return;
+    }
+
+    size_t slot;
+    if (entries.size() < capacity) {
+        slot = entries.size();
+        entries.push_back(Entry());
+    } else {
+        // clock 淘汰：跳过最近访问过的条目并清除它们的访问标记，直到找到一个没有被访问过的
+        while (entries[hand].referenced) {
+            entries[hand].referenced = false;
+            hand = (hand + 1) % entries.size();
+        }
+        slot = hand;
+        hand = (hand + 1) % entries.size();
+
+        Entry &old = entries[slot];
+        index.erase(old.key);
+        env->DeleteGlobalRef(old.javaString);
+        JS_FreeValue(ctx, old.jsString);
+    }
+
+    Entry &entry = entries[slot];
+    entry.key = key;
+    entry.javaString = static_cast<jstring>(env->NewGlobalRef(javaString));
+    entry.jsString = JS_DupValue(ctx, jsString);
+    entry.referenced = false;
+    index[key] = slot;
+}
+
+void StringCache::resize(JNIEnv *env, JSContext *ctx, size_t newCapacity) {
+    clear(env, ctx);
+    capacity = newCapacity;
+}
+
+void StringCache::clear(JNIEnv *env, JSContext *ctx) {
+    for (auto &entry : entries) {
+        env->DeleteGlobalRef(entry.javaString);
+        JS_FreeValue(ctx, entry.jsString);
+    }
+    entries.clear();
+    index.clear();
+    hand = 0;
+}
+
+void QuickJSWrapper::setStringCacheSize(JNIEnv *env, jint capacity) const {
+    stringCache.resize(env, context, capacity > 0 ? static_cast<size_t>(capacity) : 0);
+}
+
+jlongArray QuickJSWrapper::getStringCacheStats(JNIEnv *env) const {
+    jlong stats[] = {
+            stringCache.javaHits,
+            stringCache.javaMisses,
+            stringCache.jsHits,
+            stringCache.jsMisses,
+            static_cast<jlong>(stringCache.size()),
+            static_cast<jlong>(stringCache.capacity),
+    };
+    jlongArray result = env->NewLongArray(6);
+    env->SetLongArrayRegion(result, 0, 6, stats);
+    return result;
+}
+
+jobject QuickJSWrapper::createFunction(JNIEnv *env, jobject thiz, jstring name, jint callback_id, jint kind) const {
+    JSValue func = newCallFunction(callback_id, kind);
+    if (JS_IsException(func)) {
+        throwJSException(env, context);
+        return nullptr;
+    }
+
+    const char *c_name = env->GetStringUTFChars(name, JNI_FALSE);
+    JSAtom atom = JS_NewAtom(context, c_name);
+    env->ReleaseStringUTFChars(name, c_name);
+    defineFunctionName(func, atom);
+    JS_FreeAtom(context, atom);
+    return toJavaObject(env, thiz, JS_UNDEFINED, func);
+}
+
+// 超出范围的参数按 undefined 处理
+static JSValueConst argumentAt(jlong args, jint index) {
+    auto view = reinterpret_cast<JSArgumentsView*>(args);
+    return index >= 0 && index < view->argc ? view->argv[index] : JS_UNDEFINED;
+}
+
+jint QuickJSWrapper::getArgumentInt(JNIEnv *env, jlong args, jint index) const {
+    int32_t result = 0;
+    if (JS_ToInt32(context, &result, argumentAt(args, index)) < 0) {
+        throwJSException(env, context);
+    }
+    return result;
+}
+
+jdouble QuickJSWrapper::getArgumentDouble(JNIEnv *env, jlong args, jint index) const {
+    double result = 0;
+    if (JS_ToFloat64(context, &result, argumentAt(args, index)) < 0) {
+        throwJSException(env, context);
+    }
+    return result;
+}
+
+jboolean QuickJSWrapper::getArgumentBoolean(JNIEnv *env, jlong args, jint index) const {
+    return JS_ToBool(context, argumentAt(args, index)) > 0;
+}
+
+jstring QuickJSWrapper::getArgumentString(JNIEnv *env, jlong args, jint index) const {
+    JSValueConst value = argumentAt(args, index);
+    if (JS_IsUndefined(value) || JS_IsNull(value)) {
+        return nullptr;
+    }
+
+    JSValue str = JS_ToString(context, value);
+    if (JS_IsException(str)) {
+        throwJSException(env, context);
+        return nullptr;
+    }
+    return toJavaString(env, str);
+}
+
+jobject QuickJSWrapper::getArgumentObject(JNIEnv *env, jobject thiz, jlong args, jint index) const {
+    auto view = reinterpret_cast<JSArgumentsView*>(args);
+    // toJavaObject 会接管传入的值，这里需要先计数加一
+    JSValue value = JS_DupValue(context, argumentAt(args, index));
+    return toJavaObject(env, thiz, view->thisVal, value);
+}
@@ -9,17 +9,112 @@
 #include <set>
 #include <vector>
 #include <queue>
+#include <string>
+#include <unordered_map>
 using namespace std;
 
 #include "../quickjs/quickjs.h"
 #include <jni.h>
 #include <map>
 
+// 回调函数的类型，作为 JS_NewCFunctionData 的 magic，需要和 CallbackTable.java 保持一致
+enum CallbackKind {
+    CALLBACK_KIND_CALL_FUNCTION = 0,
+    CALLBACK_KIND_DOUBLE_BINARY = 1,
+    CALLBACK_KIND_DOUBLE = 2,
+    CALLBACK_KIND_INT = 3,
+    CALLBACK_KIND_INT_CONSUMER = 4,
+    CALLBACK_KIND_STRING_TO_INT = 5,
+    CALLBACK_KIND_ARGUMENTS = 6,
+};
+
+// JSArgumentsFunction 回调期间的参数视图，地址作为 JSArguments 的指针传给 Java 层，回调返回后失效
+struct JSArgumentsView {
+    JSValueConst thisVal;
+    int argc;
+    JSValueConst *argv;
+};
+
+// TypedArray 的类型，和 quickjs_wrapper.cpp 里的 typedArrayNames 顺序一致
+enum TypedArrayType {
+    TYPED_ARRAY_INT8,
+    TYPED_ARRAY_UINT8,
+    TYPED_ARRAY_UINT8C,
+    TYPED_ARRAY_INT16,
+    TYPED_ARRAY_UINT16,
+    TYPED_ARRAY_INT32,
+    TYPED_ARRAY_UINT32,
+    TYPED_ARRAY_BIGINT64,
+    TYPED_ARRAY_BIGUINT64,
+    TYPED_ARRAY_FLOAT32,
+    TYPED_ARRAY_FLOAT64,
+    TYPED_ARRAY_COUNT
+};
+
+// 短字符串的双向缓存，key 为 UTF-8 字节，同时持有规范化的 Java String（全局引用）和 JS 字符串，
+// 容量满了以后按 clock 算法淘汰最近没有被访问过的条目。
+class StringCache {
+public:
+    // 超过这个长度（UTF-8 字节数）的字符串不会进入缓存
+    static const size_t MAX_LENGTH = 64;
+
+    size_t capacity = 0;
+    jlong javaHits = 0;
+    jlong javaMisses = 0;
+    jlong jsHits = 0;
+    jlong jsMisses = 0;
+
+    // 命中时返回 Java String 的局部引用，没有命中返回 nullptr
+    jstring getJava(JNIEnv *env, const string &key);
+    // 命中时通过 out 返回 JS 字符串（引用计数已加一）
+    bool getJS(JSContext *ctx, const string &key, JSValue *out);
+    void put(JNIEnv *env, JSContext *ctx, const string &key, jstring javaString, JSValueConst jsString);
+    void resize(JNIEnv *env, JSContext *ctx, size_t newCapacity);
+    void clear(JNIEnv *env, JSContext *ctx);
+    size_t size() const { return index.size(); }
+
+private:
+    struct Entry {
+        string key;
+        jstring javaString;
+        JSValue jsString;
+        bool referenced;
+    };
+
+    vector<Entry> entries;
+    unordered_map<string, size_t> index;
+    size_t hand = 0;
+};
+
 class QuickJSWrapper {
 private:
     jstring toJavaString(JNIEnv *env, JSValue value) const;
     jobject toJavaObject(JNIEnv *env, jobject thiz, JSValueConst this_obj, JSValueConst value) const;
     JSValue toJSValue(JNIEnv *env, jobject thiz, jobject value) const;
+    JSValue toJSString(JNIEnv *env, jstring value) const;
+    JSValue newCallFunction(int callback_id, int kind = CALLBACK_KIND_CALL_FUNCTION) const;
+    JSValue toJSArgument(JNIEnv *env, jobject thiz, jbyte type, jlong primitive,
+                         jobjectArray references, jsize index) const;
+    JSValue callFunction(JNIEnv *env, jobject thiz, jlong func, jlong this_obj, jint this_obj_tag,
+                         jbyteArray arg_types, jlongArray arg_primitives, jobjectArray arg_references);
+    JSValue getPropertyValue(JNIEnv *env, jlong value, jstring name) const;
+    int getTypedArrayType(JSValueConst value) const;
+    void setPropertyValue(JNIEnv *env, jobject thiz, jlong this_obj, JSAtom atom, jobject value) const;
+    void defineFunctionName(JSValueConst func, JSAtom atom) const;
+    bool getOwnPropertyAtoms(JNIEnv *env, jlong value, JSPropertyEnum **tab, uint32_t *len) const;
+    void freePropertyAtoms(JSPropertyEnum *tab, uint32_t len) const;
+    void freeJSValues(const vector<JSValue> &values, size_t from) const;
+    void releaseConverted(JNIEnv *env, jobjectArray array, jsize count) const;
+    void releaseArguments(JNIEnv *env, jobject thiz, const vector<jbyte> &types, const vector<jlong> &primitives,
+                          size_t from, const vector<JSValue> &converted) const;
+    jobject newJavaContainer(JNIEnv *env, JSValueConst value, bool isArray, jobject creator) const;
+    JSValue toJSONValue(JSValue value, JSAtom key) const;
+    const char *terminatedSource(JNIEnv *env, jbyteArray array, jobject direct, jint offset, jint length,
+                                 vector<char> &storage) const;
+    jobject evalBuffer(JNIEnv *env, jobject thiz, const char *buf, size_t len, const char *file_name, bool isModule);
+    jbyteArray compileBuffer(JNIEnv *env, const char *buf, size_t len, const char *file_name, bool isModule) const;
+    jobject toJavaTypedArray(JNIEnv *env, JSValueConst value, int type) const;
+    JSValue toJSTypedArray(JNIEnv *env, jobject array, int type, size_t elementSize) const;
 
 public:
     JNIEnv *jniEnv;
@@ -34,6 +129,8 @@ public:
     jclass integerClass;
     jclass longClass;
     jclass doubleClass;
+    jclass numberClass;
+    jclass characterClass;
     jclass stringClass;
     jclass jsObjectClass;
     jclass jsArrayClass;
@@ -43,7 +140,29 @@ public:
     jclass moduleLoaderClass;
     jclass creatorClass;
     jclass byteArrayClass;
+    jclass shortArrayClass;
+    jclass intArrayClass;
+    jclass longArrayClass;
+    jclass floatArrayClass;
+    jclass doubleArrayClass;
+    jclass byteBufferClass;
+    jclass arrayBufferReaderClass;
+    jclass jsEntriesClass;
+    jclass hashMapClass;
+    jclass arrayListClass;
+    jclass mapFilterClass;
+    jclass mapCreatorClass;
     JSValue ownPropertyNames;
+    // 最近一次由 Java 异常转换的 JS 错误和原始的 Java 异常，JS 错误最终抛到 Java 层时作为 QuickJSException 的 cause
+    JSValue javaError = JS_UNDEFINED;
+    jthrowable javaErrorCause = nullptr;
+    JSValue typedArrayConstructors[TYPED_ARRAY_COUNT];
+    JSClassID typedArrayClassIds[TYPED_ARRAY_COUNT];
+    JSClassID numberClassId;
+    JSClassID stringClassId;
+    JSClassID booleanClassId;
+
+    mutable StringCache stringCache;
 
     jmethodID booleanValueOf;
     jmethodID integerValueOf;
@@ -54,11 +173,39 @@ public:
     jmethodID integerGetValue;
     jmethodID longGetValue;
     jmethodID doubleGetValue;
+    jmethodID numberDoubleValue;
     jmethodID jsObjectGetValue;
+    jmethodID jsObjectReleaseM;
+    jmethodID objectToStringM;
+    jmethodID throwableInitCauseM;
+
+    jmethodID byteBufferPositionM;
+    jmethodID byteBufferLimitM;
+    jmethodID byteBufferIsReadOnlyM;
+    jmethodID byteBufferDuplicateM;
+    jmethodID byteBufferGetM;
+    jmethodID byteBufferAsReadOnlyM;
+    jmethodID arrayBufferReaderReadM;
+    jmethodID jsEntriesInitM;
+    jmethodID hashMapInitM;
+    jmethodID arrayListInitM;
+    jmethodID mapPutM;
+    jmethodID listAddM;
+    jmethodID listGetM;
+    jmethodID mapFilterShouldSkipKeyM;
+    jmethodID mapCreatorGetM;
+    jmethodID outputStreamWriteM;
+    jmethodID inputStreamReadM;
 
     jmethodID callFunctionBackM;
     jmethodID removeCallFunctionM;
-    jmethodID callFunctionHashCodeM;
+    jmethodID registerCallFunctionM;
+    jmethodID callDoubleBinaryBackM;
+    jmethodID callDoubleBackM;
+    jmethodID callIntBackM;
+    jmethodID callIntConsumerBackM;
+    jmethodID callStringToIntBackM;
+    jmethodID callArgumentsBackM;
     jmethodID creatorM;
     jmethodID newObjectM;
     jmethodID newArrayM;
@@ -71,14 +218,20 @@ public:
     jobject getGlobalObject(JNIEnv*, jobject thiz) const;
     jobject getProperty(JNIEnv*, jobject thiz, jlong value, jstring name);
     void setProperty(JNIEnv*, jobject thiz, jlong this_obj, jstring name, jobject value) const;
-    jobject call(JNIEnv *env, jobject thiz, jlong func, jlong this_obj, jint this_obj_tag, jobjectArray args);
+    jobject call(JNIEnv *env, jobject thiz, jlong func, jlong this_obj, jint this_obj_tag,
+                 jbyteArray arg_types, jlongArray arg_primitives, jobjectArray arg_references);
     jstring jsonStringify(JNIEnv *env, jlong value) const;
     jint length(JNIEnv *env, jlong value) const;
     jobject get(JNIEnv *env, jobject thiz, jlong value, jint index);
     void set(JNIEnv *env, jobject thiz, jlong this_obj, jobject value, jint index);
     JSValue jsFuncCall(int callback_id, JSValueConst this_val, int argc, JSValueConst *argv);
+    JSValue jsTypedFuncCall(int callback_id, int kind, int argc, JSValueConst *argv);
+    JSValue throwPendingJavaException();
+    void attachJavaCause(JNIEnv *env, JSValueConst error);
+    JSValue jsArgumentsFuncCall(int callback_id, JSValueConst this_val, int argc, JSValueConst *argv);
     void removeCallFunction(int callback_id) const;
     void freeValue(jlong) const;
+    void freeValues(JNIEnv *env, jlongArray values, jintArray counts, jint size) const;
     void dupValue(jlong) const;
     void freeDupValue(jlong) const;
     jobject parseJSON(JNIEnv*, jobject, jstring);
@@ -91,6 +244,88 @@ public:
     jobject evaluateModule(JNIEnv *env, jobject thiz, jstring script, jstring file_name);
 
     jobject getOwnPropertyNames(JNIEnv *env, jobject thiz, jlong obj);
+
+    // primitive specialized, returns the value without boxing.
+    jint getInt(JNIEnv *env, jlong value, jstring name, jint default_value) const;
+    jlong getLong(JNIEnv *env, jlong value, jstring name, jlong default_value) const;
+    jdouble getDouble(JNIEnv *env, jlong value, jstring name, jdouble default_value) const;
+    jboolean getBoolean(JNIEnv *env, jlong value, jstring name, jboolean default_value) const;
+    jint callInt(JNIEnv *env, jobject thiz, jlong func, jlong this_obj, jint this_obj_tag,
+                 jbyteArray arg_types, jlongArray arg_primitives, jobjectArray arg_references);
+    jdouble callDouble(JNIEnv *env, jobject thiz, jlong func, jlong this_obj, jint this_obj_tag,
+                       jbyteArray arg_types, jlongArray arg_primitives, jobjectArray arg_references);
+    jboolean callBoolean(JNIEnv *env, jobject thiz, jlong func, jlong this_obj, jint this_obj_tag,
+                         jbyteArray arg_types, jlongArray arg_primitives, jobjectArray arg_references);
+
+    // bulk array extraction in one JNI call.
+    jintArray toIntArray(JNIEnv *env, jlong value) const;
+    jlongArray toLongArray(JNIEnv *env, jlong value) const;
+    jdoubleArray toDoubleArray(JNIEnv *env, jlong value) const;
+    jobjectArray toStringArray(JNIEnv *env, jlong value) const;
+    void copyInto(JNIEnv *env, jlong value, jdoubleArray dst, jint offset, jint from, jint len) const;
+
+    // bulk array creation in one JNI call.
+    jobject newIntArray(JNIEnv *env, jobject thiz, jintArray values) const;
+    jobject newDoubleArray(JNIEnv *env, jobject thiz, jdoubleArray values) const;
+    jobject newStringArray(JNIEnv *env, jobject thiz, jobjectArray values) const;
+    jobject newObjectArray(JNIEnv *env, jobject thiz, jbyteArray arg_types, jlongArray arg_primitives,
+                           jobjectArray arg_references) const;
+
+    JSValue toJSArrayBuffer(JNIEnv *env, jobject buffer) const;
+    jobject readArrayBuffer(JNIEnv *env, jlong obj, jstring name, jobject reader) const;
+
+    // property keys
+    jint newAtom(JNIEnv *env, jstring name) const;
+    void freeAtoms(JNIEnv *env, jintArray atoms) const;
+    jobject getPropertyByAtom(JNIEnv *env, jobject thiz, jlong value, jint atom) const;
+    void setPropertyByAtom(JNIEnv *env, jobject thiz, jlong this_obj, jint atom, jobject value) const;
+
+    // multi-property access in one JNI call.
+    jobjectArray getProperties(JNIEnv *env, jobject thiz, jlong value, jobjectArray names) const;
+    void setProperties(JNIEnv *env, jobject thiz, jlong this_obj, jobjectArray names, jbyteArray arg_types,
+                       jlongArray arg_primitives, jobjectArray arg_references) const;
+    jobjectArray keys(JNIEnv *env, jlong value) const;
+    jobject entries(JNIEnv *env, jobject thiz, jlong value) const;
+
+    // toMap/toArray
+    jobject toJavaCollection(JNIEnv *env, jobject thiz, jlong value, jobject filter, jobject extra, jobject creator) const;
+    jobject toJS(JNIEnv *env, jobject thiz, jbyteArray node_types, jlongArray node_primitives,
+                 jobjectArray references, jobjectArray keys, jint size) const;
+
+    // binary interchange
+    jbyteArray encode(JNIEnv *env, jlong value) const;
+    jobject decode(JNIEnv *env, jobject thiz, jobject direct_buffer, jbyteArray array, jint offset, jint length) const;
+    JSValue decodeBinary(JNIEnv *env, const uint8_t *data, size_t length) const;
+
+    // streaming JSON
+    void stringify(JNIEnv *env, jlong value, jobject out, jbyteArray buffer) const;
+
+    // parse JSON from UTF-8 bytes
+    jobject parseJSON(JNIEnv *env, jobject thiz, const char *buf, size_t len) const;
+    jobject parseBytes(JNIEnv *env, jobject thiz, jbyteArray json, jint offset, jint length) const;
+    jobject parseDirectBuffer(JNIEnv *env, jobject thiz, jobject buffer, jint position, jint limit) const;
+    jobject parseStream(JNIEnv *env, jobject thiz, jobject in, jbyteArray chunk) const;
+
+    // evaluate/compile UTF-8 source from bytes and memory-mapped files
+    jobject evaluateBytes(JNIEnv *env, jobject thiz, jbyteArray array, jobject direct, jint offset, jint length,
+                          jstring file_name, jboolean isModule);
+    jbyteArray compileBytes(JNIEnv *env, jbyteArray array, jobject direct, jint offset, jint length,
+                            jstring file_name, jboolean isModule) const;
+    jobject evaluateFile(JNIEnv *env, jobject thiz, jstring path, jstring file_name, jboolean isModule);
+    jbyteArray compileFile(JNIEnv *env, jstring path, jstring file_name, jboolean isModule) const;
+
+    // string cache
+    void setStringCacheSize(JNIEnv *env, jint capacity) const;
+    jlongArray getStringCacheStats(JNIEnv *env) const;
+
+    jobject createFunction(JNIEnv *env, jobject thiz, jstring name, jint callback_id, jint kind) const;
+
+    // JSArguments 按需转换参数
+    jint getArgumentInt(JNIEnv *env, jlong args, jint index) const;
+    jdouble getArgumentDouble(JNIEnv *env, jlong args, jint index) const;
+    jboolean getArgumentBoolean(JNIEnv *env, jlong args, jint index) const;
+    jstring getArgumentString(JNIEnv *env, jlong args, jint index) const;
+    jobject getArgumentObject(JNIEnv *env, jobject thiz, jlong args, jint index) const;
 };
 
 #endif //QUICKJS_TEST_CONTEXT_WRAPPER_H
@@ -16,12 +16,20 @@ import androidx.test.platform.app.InstrumentationRegistry;
 import com.whl.quickjs.android.QuickJSLoader;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -1365,4 +1373,1312 @@ public class QuickJSTest {
         }
     }
 
+    @Test
+    public void testCallWithTaggedArguments() {
+        try (QuickJSContext context = createContext()) {
+            JSFunction func = (JSFunction) context.evaluate("function test(...args) {\n" +
+                    "\treturn args.map((arg) => {\n" +
+                    "\t\tif (typeof arg === 'function') return arg('a');\n" +
+                    "\t\tif (arg instanceof ArrayBuffer) return 'buffer' + arg.byteLength;\n" +
+                    "\t\tif (arg !== null && typeof arg === 'object') return 'object' + arg.name;\n" +
+                    "\t\treturn typeof arg + ':' + arg;\n" +
+                    "\t}).join(',');\n" +
+                    "}\n" +
+                    "test;");
+            JSObject obj = context.createNewJSObject();
+            obj.setProperty("name", "Jack");
+            String ret = (String) func.call(null, true, 1, 2L, Long.MAX_VALUE, 1.5, "str", obj,
+                    (JSCallFunction) args -> args[0] + "b", new byte[]{1, 2});
+            assertEquals("object:null,boolean:true,number:1,number:2,bigint:9223372036854775807," +
+                    "number:1.5,string:str,objectJack,ab,buffer2", ret);
+            obj.release();
+            func.release();
+        }
+    }
+
+    @Test
+    public void testPrimitivePropertyAndCall() {
+        try (QuickJSContext context = createContext()) {
+            JSObject obj = (JSObject) context.evaluate("var scoreObj = { i: 12, d: 1.5, l: 1686026400093, b: true, s: 'str' }; scoreObj;");
+            assertEquals(12, obj.getInt("i", -1));
+            assertEquals(1, obj.getInt("d", -1));
+            assertEquals(-1, obj.getInt("s", -1));
+            assertEquals(-1, obj.getInt("missing", -1));
+            assertEquals(1.5, obj.getDouble("d", 0), 0);
+            assertEquals(12.0, obj.getDouble("i", 0), 0);
+            assertEquals(1686026400093L, obj.getLong("l", 0));
+            assertTrue(obj.getBoolean("b", false));
+            assertFalse(obj.getBoolean("s", false));
+            obj.release();
+
+            JSFunction add = (JSFunction) context.evaluate("(a, b) => a + b;");
+            assertEquals(3, add.callInt(1, 2));
+            assertEquals(3.5, add.callDouble(1.5, 2), 0);
+            assertTrue(add.callBoolean(1, 2));
+            assertFalse(add.callBoolean(0, 0));
+            assertTrue(Double.isNaN(add.callDouble("a", null)));
+            add.release();
+        }
+    }
+
+    @Test
+    public void testJSArrayToPrimitiveArrays() {
+        try (QuickJSContext context = createContext()) {
+            JSArray numbers = (JSArray) context.evaluate("[1, 2.5, -3, 2147483648, '7']");
+            assertArrayEquals(new int[]{1, 2, -3, -2147483648, 7}, numbers.toIntArray());
+            assertArrayEquals(new long[]{1, 2, -3, 2147483648L, 7}, numbers.toLongArray());
+            assertArrayEquals(new double[]{1, 2.5, -3, 2147483648.0, 7}, numbers.toDoubleArray(), 0);
+
+            double[] dst = new double[4];
+            numbers.copyInto(dst, 1, 1, 3);
+            assertArrayEquals(new double[]{0, 2.5, -3, 2147483648.0}, dst, 0);
+            numbers.release();
+
+            JSArray strings = (JSArray) context.evaluate("['a', null, 1, undefined, '测试']");
+            assertArrayEquals(new String[]{"a", null, "1", null, "测试"}, strings.toStringArray());
+            strings.release();
+
+            JSArray empty = context.createNewJSArray();
+            assertEquals(0, empty.toIntArray().length);
+            empty.release();
+
+            // 超出 Java 数组上限的稀疏数组直接抛异常，不会按 length 分配内存
+            JSArray sparse = (JSArray) context.evaluate("var sparse = []; sparse.length = 4e9; sparse");
+            try {
+                sparse.toIntArray();
+                fail();
+            } catch (QuickJSException e) {
+                assertTrue(e.getMessage().contains("exceeds the maximum Java array size"));
+            }
+            sparse.release();
+        }
+    }
+
+    @Test
+    public void testNewArrayFromJava() {
+        try (QuickJSContext context = createContext()) {
+            JSArray ints = context.newArray(new int[]{1, 2, 3});
+            assertEquals(3, ints.length());
+            assertArrayEquals(new int[]{1, 2, 3}, ints.toIntArray());
+            ints.release();
+
+            JSArray doubles = context.newArray(new double[]{1.5, -2.5});
+            assertArrayEquals(new double[]{1.5, -2.5}, doubles.toDoubleArray(), 0);
+            doubles.release();
+
+            JSArray strings = context.newArray(new String[]{"a", null, "测试"});
+            assertArrayEquals(new String[]{"a", null, "测试"}, strings.toStringArray());
+            strings.release();
+
+            JSObject obj = context.parseJSON("{\"name\": \"Jack\"}");
+            List<Object> values = new ArrayList<>();
+            values.add(1);
+            values.add("b");
+            values.add(true);
+            values.add(null);
+            values.add(obj);
+            values.add((JSCallFunction) args -> "called");
+            JSArray mixed = context.newArray(values);
+            obj.release();
+
+            JSObject global = context.getGlobalObject();
+            global.setProperty("mixed", mixed);
+            assertEquals("1,b,true,,Jack,called", context.evaluate("mixed.map((v) => typeof v === 'function' ? v() : (v && v.name) || v).join(',')"));
+            assertEquals(true, context.evaluate("Array.isArray(mixed)"));
+            mixed.release();
+            global.release();
+        }
+    }
+
+    @Test
+    public void testDirectByteBufferArrayBuffer() {
+        try (QuickJSContext context = createContext()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+            buffer.put(0, (byte) 1);
+            buffer.position(0);
+
+            JSObject global = context.getGlobalObject();
+            global.setProperty("shared", buffer);
+            // 共享内存，JS 层的修改 Java 层可以直接看到
+            context.evaluate("new Uint8Array(shared)[1] = 2;");
+            assertEquals(8, context.evaluate("shared.byteLength"));
+            assertEquals(1, buffer.get(0));
+            assertEquals(2, buffer.get(1));
+
+            // 堆内存的 ByteBuffer 会拷贝 position 到 limit 之间的数据
+            ByteBuffer heap = ByteBuffer.wrap(new byte[]{5, 6, 7});
+            heap.position(1);
+            global.setProperty("copied", heap);
+            assertEquals("6,7", context.evaluate("Array.from(new Uint8Array(copied)).join(',')"));
+
+            int sum = global.readArrayBuffer("shared", view -> {
+                assertTrue(view.isReadOnly());
+                int total = 0;
+                while (view.hasRemaining()) {
+                    total += view.get();
+                }
+                return total;
+            });
+            assertEquals(3, sum);
+
+            try {
+                global.readArrayBuffer("Math", view -> null);
+                fail();
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("Math"));
+            }
+            global.release();
+        }
+    }
+
+    @Test
+    public void testTypedArrayConversion() {
+        try (QuickJSContext context = createContext()) {
+            JSObject global = context.getGlobalObject();
+            global.setProperty("ints", new int[]{1, -2, 3});
+            global.setProperty("floats", new float[]{1.5f, 2.5f});
+            global.setProperty("doubles", new double[]{0.1, 0.2});
+            global.setProperty("shorts", new short[]{-1, 2});
+            global.setProperty("longs", new long[]{Long.MAX_VALUE});
+            assertEquals("Int32Array,Float32Array,Float64Array,Int16Array,BigInt64Array",
+                    context.evaluate("[ints, floats, doubles, shorts, longs].map(a => a.constructor.name).join(',')"));
+            assertEquals(2, context.evaluate("ints.reduce((a, b) => a + b)"));
+
+            assertArrayEquals(new int[]{1, -2, 3}, (int[]) global.getProperty("ints"));
+            assertArrayEquals(new float[]{1.5f, 2.5f}, (float[]) global.getProperty("floats"), 0);
+            assertArrayEquals(new double[]{0.1, 0.2}, (double[]) global.getProperty("doubles"), 0);
+            assertArrayEquals(new short[]{-1, 2}, (short[]) global.getProperty("shorts"));
+            assertArrayEquals(new long[]{Long.MAX_VALUE}, (long[]) global.getProperty("longs"));
+
+            // 视图只拷贝自身覆盖的区间，无符号类型按位转换
+            assertArrayEquals(new byte[]{2, (byte) 255}, (byte[]) context.evaluate("new Uint8Array([1, 2, 255, 4]).subarray(1, 3)"));
+            assertArrayEquals(new int[]{-1}, (int[]) context.evaluate("new Uint32Array([0xFFFFFFFF])"));
+
+            JSFunction sum = (JSFunction) context.evaluate("(a) => a.reduce((x, y) => x + y, 0)");
+            assertEquals(6.5, sum.callDouble((Object) new double[]{1, 2, 3.5}), 0);
+            sum.release();
+            global.release();
+        }
+    }
+
+    @Test
+    public void testPropertyKey() {
+        try (QuickJSContext context = createContext()) {
+            JSPropertyKey name = context.key("name");
+            assertSame(name, context.key("name"));
+            assertEquals("name", name.getName());
+
+            JSArray people = (JSArray) context.evaluate("[{name: 'a', age: 1}, {name: 'b', age: 2}]");
+            JSPropertyKey age = context.key("age");
+            StringBuilder names = new StringBuilder();
+            for (int i = 0; i < people.length(); i++) {
+                JSObject person = (JSObject) people.get(i);
+                names.append(person.getProperty(name));
+                person.setProperty(age, (Integer) person.getProperty(age) + 10);
+                person.release();
+            }
+            assertEquals("ab", names.toString());
+            people.release();
+
+            JSObject global = context.getGlobalObject();
+            global.setProperty(context.key("hello"), (JSCallFunction) args -> "hi " + args[0]);
+            assertEquals("hi quickjs", context.evaluate("hello('quickjs')"));
+            assertEquals("hello", context.evaluate("hello.name"));
+            assertNull(global.getProperty(context.key("notExist")));
+
+            try (QuickJSContext other = createContext()) {
+                try {
+                    global.getProperty(other.key("name"));
+                    fail();
+                } catch (QuickJSException e) {
+                    assertTrue(e.getMessage().contains("another QuickJSContext"));
+                }
+            }
+            global.release();
+        }
+    }
+
+    @Test
+    public void testMultiPropertyAccess() {
+        try (QuickJSContext context = createContext()) {
+            JSObject obj = (JSObject) context.evaluate("({name: 'Jack', age: 18, nested: {a: 1}})");
+            Object[] values = obj.getProperties("name", "age", "notExist", "nested");
+            assertEquals("Jack", values[0]);
+            assertEquals(18, values[1]);
+            assertNull(values[2]);
+            assertEquals(1, ((JSObject) values[3]).getProperty("a"));
+            ((JSObject) values[3]).release();
+
+            Map<String, Object> props = new LinkedHashMap<>();
+            props.put("score", 99.5);
+            props.put("tag", "vip");
+            props.put("empty", null);
+            props.put("greet", (JSCallFunction) args -> "hello");
+            obj.setProperties(props);
+
+            assertArrayEquals(new String[]{"name", "age", "nested", "score", "tag", "empty", "greet"}, obj.keys());
+            assertEquals("hello", obj.getJSFunction("greet").call());
+
+            JSEntries entries = obj.entries();
+            assertEquals(7, entries.size());
+            assertEquals("score", entries.getKey(3));
+            assertEquals(99.5, entries.getValue(3));
+            assertNull(entries.getValue(5));
+            for (Object value : entries.getValues()) {
+                if (value instanceof JSObject) {
+                    ((JSObject) value).release();
+                }
+            }
+            obj.release();
+        }
+    }
+
+    @Test
+    public void testNativeToMapConversion() {
+        try (QuickJSContext context = createContext()) {
+            JSObject obj = (JSObject) context.evaluate("var shared = {v: 1}; var o = {a: shared, b: shared, list: [1, 'x', null, () => 1, {c: true}], skip: 1, fn() {}}; o.self = o; o");
+            JSObject nested = (JSObject) context.evaluate("shared");
+            long sharedPointer = nested.getPointer();
+            nested.release();
+
+            List<Long> owners = new ArrayList<>();
+            Map<String, Object> map = obj.toMap((key, pointer, extra) -> {
+                if (key.equals("v")) {
+                    owners.add(pointer);
+                }
+                return key.equals(extra);
+            }, "skip", LinkedHashMap::new);
+
+            assertTrue(map instanceof LinkedHashMap);
+            assertEquals("[a, b, list, self]", map.keySet().toString());
+            // 重复引用和循环引用都指向同一个 Java 容器
+            assertSame(map.get("a"), map.get("b"));
+            assertSame(map, map.get("self"));
+            assertEquals(1, ((Map<?, ?>) map.get("a")).get("v"));
+            // filter 收到的是 key 所属对象的指针
+            assertEquals(1, owners.size());
+            assertEquals(sharedPointer, (long) owners.get(0));
+
+            List<?> list = (List<?>) map.get("list");
+            assertEquals(4, list.size());
+            assertEquals("x", list.get(1));
+            assertNull(list.get(2));
+            assertEquals(true, ((Map<?, ?>) list.get(3)).get("c"));
+            obj.release();
+
+            // 深层嵌套不会受 Java 调用栈深度的限制
+            JSArray deep = (JSArray) context.evaluate("let d = [0]; for (let i = 0; i < 10000; i++) d = [d]; d");
+            ArrayList<Object> result = deep.toArray();
+            int depth = 0;
+            Object current = result;
+            while (current instanceof List) {
+                current = ((List<?>) current).get(0);
+                depth++;
+            }
+            assertEquals(10001, depth);
+            deep.release();
+        }
+    }
+
+    @Test
+    public void testToJSFromJavaObjects() {
+        try (QuickJSContext context = createContext()) {
+            Map<String, Object> shared = new HashMap<>();
+            shared.put("v", 1);
+
+            Map<String, Object> root = new LinkedHashMap<>();
+            root.put("name", "Jack");
+            root.put("age", 18L);
+            root.put("score", 99.5);
+            root.put("ok", true);
+            root.put("none", null);
+            root.put("bytes", new byte[]{1, 2});
+            root.put("list", Arrays.asList(1, "two", new Object[]{3}));
+            root.put("a", shared);
+            root.put("b", shared);
+            root.put("fn", (JSCallFunction) args -> "called");
+            root.put("self", root);
+
+            JSObject obj = (JSObject) context.toJS(root);
+            JSObject global = context.getGlobalObject();
+            global.setProperty("obj", obj);
+            assertEquals("name,age,score,ok,none,bytes,list,a,b,fn,self", context.evaluate("Object.keys(obj).join(',')"));
+            assertEquals("Jack|18|99.5|true|null", context.evaluate("[obj.name, obj.age, obj.score, obj.ok, String(obj.none)].join('|')"));
+            assertEquals(true, context.evaluate("obj.bytes instanceof ArrayBuffer && obj.bytes.byteLength === 2"));
+            assertEquals("[1,\"two\",[3]]", context.evaluate("JSON.stringify(obj.list)"));
+            assertEquals(true, context.evaluate("obj.a === obj.b && obj.self === obj"));
+            assertEquals("called", context.evaluate("obj.fn()"));
+            assertEquals("fn", context.evaluate("obj.fn.name"));
+
+            // Float、Short、Byte 转为 number，Character 转为 string，key 按 UTF-16 转换
+            Map<String, Object> boxed = new LinkedHashMap<>();
+            boxed.put("f", 1.5f);
+            boxed.put("s", (short) 7);
+            boxed.put("b", (byte) -2);
+            boxed.put("c", 'c');
+            boxed.put("\uD83D\uDE00k\u0000", 1);
+            boxed.put("r", (JSCallFunction) args -> 2.5f);
+            JSObject boxedObj = (JSObject) context.toJS(boxed);
+            global.setProperty("boxed", boxedObj);
+            assertEquals("1.5|7|-2|c|1|2.5", context.evaluate("[boxed.f, boxed.s, boxed.b, boxed.c, boxed['\\ud83d\\ude00k\\u0000'], boxed.r()].join('|')"));
+            boxedObj.release();
+
+            JSFunction types = (JSFunction) context.evaluate("(a, b, c, d) => [typeof a, a, b, c, typeof d, d].join('|')");
+            assertEquals("number|1.5|7|-2|string|c", types.call(1.5f, (short) 7, (byte) -2, 'c'));
+            types.release();
+
+            // 顶层不是容器时，转换结果和 JS 值转换回 Java 的规则一致
+            assertEquals("text", context.toJS("text"));
+            JSArray array = (JSArray) context.toJS(new ArrayList<>());
+            assertEquals(0, array.length());
+            array.release();
+
+            obj.release();
+            global.release();
+        }
+    }
+
+    @Test
+    public void testEncodeAndDecode() {
+        try (QuickJSContext context = createContext()) {
+            JSObject obj = (JSObject) context.evaluate("var s = {v: 1}; var o = {name: '测试', list: [1, 2.5, true, null], a: s, b: s, big: 2 ** 70}; o.self = o; o");
+            ByteBuffer encoded = context.encode(obj);
+            assertTrue(encoded.remaining() > 0);
+            obj.release();
+
+            // 堆内存和 DirectByteBuffer 都可以解码
+            ByteBuffer direct = ByteBuffer.allocateDirect(encoded.remaining() + 2);
+            direct.position(2);
+            direct.put(encoded.duplicate());
+            direct.position(2);
+
+            for (ByteBuffer buffer : new ByteBuffer[]{encoded, direct}) {
+                JSObject decoded = context.decode(buffer);
+                JSObject global = context.getGlobalObject();
+                global.setProperty("decoded", decoded);
+                assertEquals("测试|1,2.5,true,|true|true|1.1805916207174113e+21",
+                        context.evaluate("[decoded.name, decoded.list, decoded.a === decoded.b, decoded.self === decoded, decoded.big].join('|')"));
+                decoded.release();
+                global.release();
+            }
+
+            JSObject withFunction = (JSObject) context.evaluate("({fn() {}})");
+            try {
+                context.encode(withFunction);
+                fail();
+            } catch (QuickJSException e) {
+                assertTrue(e.getMessage().contains("not supported"));
+            }
+            withFunction.release();
+
+            // 不是 encode 生成的数据、被截断或者格式版本不一致的数据都会被拒绝
+            byte[] bytes = new byte[encoded.remaining()];
+            encoded.duplicate().get(bytes);
+            byte[][] invalids = {
+                    new byte[]{1, 2, 3},
+                    Arrays.copyOf(bytes, bytes.length - 1),
+                    versionChanged(bytes)
+            };
+            for (byte[] invalid : invalids) {
+                try {
+                    context.decode(ByteBuffer.wrap(invalid));
+                    fail();
+                } catch (QuickJSException e) {
+                    assertTrue(e.getMessage().contains("Failed to decode"));
+                }
+            }
+        }
+    }
+
+    private static byte[] versionChanged(byte[] encoded) {
+        byte[] copy = encoded.clone();
+        // magic 之后是格式版本
+        copy[4]++;
+        return copy;
+    }
+
+    @Test
+    public void testStreamingStringify() throws IOException {
+        try (QuickJSContext context = createContext()) {
+            JSObject obj = (JSObject) context.evaluate("({s: 'a\"b\\\\c\\n\\u0001测试😀\\ud800', n: [1, -0, 2.5, NaN, Infinity, 1e21], b: true, z: null, u: undefined, f() {}, " +
+                    "arr: [undefined, () => 1, Symbol('x')], d: new Date(0), boxed: [new Number(3), new String('s'), new Boolean(false)], " +
+                    "custom: {toJSON(key) { return 'key:' + key; }}, nested: {deep: {deeper: []}}, empty: {}, 'k\\u0000ey': 1, '\\ud800k': 2})");
+            JSObject global = context.getGlobalObject();
+            global.setProperty("target", obj);
+            String expected = (String) context.evaluate("JSON.stringify(target)");
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            obj.stringify(out);
+            assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+            assertEquals(obj.stringify(), expected);
+
+            // 多字节字符跨越缓冲区边界
+            JSObject large = (JSObject) context.evaluate("({text: '测😀'.repeat(10000), list: Array.from({length: 1000}, (_, i) => ({i}))})");
+            StringWriter writer = new StringWriter();
+            large.stringify(writer);
+            assertEquals(large.stringify(), writer.toString());
+            large.release();
+
+            JSObject circular = (JSObject) context.evaluate("var c = {a: [1]}; c.a.push(c); c");
+            try {
+                circular.stringify(new ByteArrayOutputStream());
+                fail();
+            } catch (QuickJSException e) {
+                assertTrue(e.getMessage().contains("circular"));
+            }
+            circular.release();
+            obj.release();
+            global.release();
+        }
+    }
+
+    @Test
+    public void testParseFromBytes() throws IOException {
+        try (QuickJSContext context = createContext()) {
+            byte[] json = "{\"name\": \"测试😀\", \"list\": [1, 2]}".getBytes(StandardCharsets.UTF_8);
+
+            JSObject fromBytes = (JSObject) context.parse(json);
+            assertEquals("测试😀", fromBytes.getString("name"));
+            fromBytes.release();
+
+            // limit 之后是 0，直接在原内存上解析
+            ByteBuffer direct = ByteBuffer.allocateDirect(json.length + 1);
+            direct.put(json);
+            direct.flip();
+            JSObject fromDirect = (JSObject) context.parse(direct);
+            assertEquals(2, fromDirect.getJSArray("list").length());
+            assertEquals(0, direct.position());
+            fromDirect.release();
+
+            // 没有结尾的 0，会拷贝一份
+            ByteBuffer heap = ByteBuffer.wrap(("xx" + "[true]").getBytes(StandardCharsets.UTF_8));
+            heap.position(2);
+            JSArray fromHeap = (JSArray) context.parse(heap);
+            assertEquals(true, fromHeap.get(0));
+            fromHeap.release();
+
+            StringBuilder large = new StringBuilder("[");
+            for (int i = 0; i < 10000; i++) {
+                large.append(i).append(',');
+            }
+            large.append("\"end\"]");
+            JSArray fromStream = (JSArray) context.parse(new ByteArrayInputStream(large.toString().getBytes(StandardCharsets.UTF_8)));
+            assertEquals(10001, fromStream.length());
+            assertEquals("end", fromStream.get(10000));
+            fromStream.release();
+
+            try {
+                context.parse("{bad".getBytes(StandardCharsets.UTF_8));
+                fail();
+            } catch (QuickJSException e) {
+                assertTrue(e.getMessage().contains("SyntaxError"));
+            }
+
+            // read 一直返回 0 的 InputStream 不会导致死循环
+            InputStream stalled = new InputStream() {
+                @Override
+                public int read() {
+                    return 0;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return 0;
+                }
+            };
+            try {
+                context.parse(stalled);
+                fail();
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("returned 0"));
+            }
+        }
+    }
+
+    @Test
+    public void testEvaluateFromBytesAndFile() throws IOException {
+        try (QuickJSContext context = createContext()) {
+            byte[] script = "var a = '测试😀'; a.length + 1;".getBytes(StandardCharsets.UTF_8);
+            assertEquals(5, context.evaluate(script));
+            assertEquals("测试😀", context.getGlobalObject().getString("a"));
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(script.length);
+            direct.put(script);
+            direct.flip();
+            assertEquals(5, context.evaluate(direct, "direct.js"));
+            assertEquals(0, direct.position());
+
+            byte[] bytecode = context.compile("1 + 2".getBytes(StandardCharsets.UTF_8), "compile.js");
+            assertEquals(3, context.execute(bytecode));
+
+            Context androidContext = ApplicationProvider.getApplicationContext();
+            File file = new File(androidContext.getCacheDir(), "evaluate_file.js");
+            FileOutputStream out = new FileOutputStream(file);
+            out.write("var fromFile = [1, 2, 3]; fromFile.length;".getBytes(StandardCharsets.UTF_8));
+            out.close();
+            assertEquals(3, context.evaluate(file));
+            assertEquals(3, context.execute(context.compile(file)));
+
+            File empty = new File(androidContext.getCacheDir(), "evaluate_empty.js");
+            new FileOutputStream(empty).close();
+            assertNull(context.evaluate(empty));
+
+            try {
+                context.evaluate(new File(androidContext.getCacheDir(), "not_exists.js"));
+                fail();
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("not_exists.js"));
+            }
+        }
+    }
+
+    @Test
+    public void testStringCache() {
+        try (QuickJSContext context = createContext()) {
+            context.setStringCacheSize(2);
+
+            Object first = context.evaluate("'ok'");
+            Object second = context.evaluate("'ok'");
+            assertEquals("ok", first);
+            assertSame(first, second);
+            assertEquals(1, context.getStringCacheStats().getJavaHits());
+
+            JSFunction echo = (JSFunction) context.evaluate("(function(s) { return s === 'key'; })");
+            assertEquals(true, echo.call("key"));
+            assertEquals(true, echo.call("key"));
+            assertTrue(context.getStringCacheStats().getJsHits() >= 1);
+            echo.release();
+
+            // 超过容量后会淘汰，长字符串不会进入缓存
+            context.evaluate("'a'");
+            context.evaluate("'b'");
+            context.evaluate("'测试😀'");
+            context.evaluate("'" + new String(new char[100]).replace('\0', 'x') + "'");
+            StringCacheStats stats = context.getStringCacheStats();
+            assertEquals(2, stats.getCapacity());
+            assertEquals(2, stats.getSize());
+
+            context.setStringCacheSize(0);
+            assertEquals(0, context.getStringCacheStats().getSize());
+            assertEquals("ok", context.evaluate("'ok'"));
+        }
+    }
+
+    @Test
+    public void testUtf16StringTransfer() {
+        try (QuickJSContext context = createContext()) {
+            JSFunction echo = (JSFunction) context.evaluate("(function(s) { return [s, s.length]; })");
+            String[] values = {"", "ascii", "é中文", "😀👍", "a\u0000b", "lone\uD800surrogate", "\uDC00"};
+            for (String value : values) {
+                JSArray result = (JSArray) echo.call(value);
+                assertEquals(value, result.get(0));
+                assertEquals(value.length(), result.get(1));
+                result.release();
+            }
+            echo.release();
+
+            assertEquals("😀", context.evaluate("String.fromCodePoint(0x1F600)"));
+        }
+    }
+
+    @Test
+    public void testObjectRecordsRelease() {
+        try (QuickJSContext context = createContext()) {
+            int base = context.getObjectRecords().size();
+            JSArray array = (JSArray) context.evaluate("Array.from({length: 10000}, (_, i) => ({i}))");
+            List<JSObject> objects = new ArrayList<>();
+            for (int i = 0; i < array.length(); i++) {
+                objects.add((JSObject) array.get(i));
+            }
+            assertEquals(base + 10001, context.getObjectRecords().size());
+
+            for (int i = 0; i < objects.size(); i += 2) {
+                objects.get(i).release();
+            }
+            assertEquals(base + 5001, context.getObjectRecords().size());
+
+            // 释放后的槽位会被复用
+            JSObject reused = (JSObject) array.get(0);
+            assertEquals(base + 5002, context.getObjectRecords().size());
+            reused.release();
+
+            for (int i = 1; i < objects.size(); i += 2) {
+                objects.get(i).release();
+            }
+            array.release();
+            assertEquals(base, context.getObjectRecords().size());
+        }
+    }
+
+    @Test
+    public void testAutoRelease() throws InterruptedException {
+        try (QuickJSContext context = createContext()) {
+            context.setAutoRelease(true);
+            int base = context.getObjectRecords().size();
+
+            JSObject kept = (JSObject) context.evaluate("({name: 'kept'})");
+            JSFunction create = (JSFunction) context.evaluate("(function(i) { return {i}; })");
+            for (int i = 0; i < 1000; i++) {
+                // 不调用 release
+                create.call(i);
+            }
+
+            for (int i = 0; i < 20 && context.getAutoReleasedCount() < 1000; i++) {
+                System.gc();
+                Thread.sleep(50);
+                context.drain();
+            }
+
+            assertEquals(1000, context.getAutoReleasedCount());
+            assertEquals(base + 2, context.getObjectRecords().size());
+            assertEquals("kept", kept.getString("name"));
+
+            kept.release();
+            create.release();
+            assertEquals(0, context.drain());
+        }
+    }
+
+    @Test
+    public void testScope() {
+        try (QuickJSContext context = createContext()) {
+            context.getGlobalObject();
+            int base = context.getObjectRecords().size();
+
+            JSObject escaped;
+            try (JSScope outer = context.openScope()) {
+                JSArray array = (JSArray) context.evaluate("[{a: 1}, {a: 2}, {a: 3}]");
+                try (JSScope inner = context.openScope()) {
+                    for (int i = 0; i < array.length(); i++) {
+                        JSObject item = (JSObject) array.get(i);
+                        assertEquals(i + 1, item.getInt("a", 0));
+                    }
+                    JSObject kept = inner.escape((JSObject) array.get(0));
+                    JSObject released = (JSObject) array.get(1);
+                    released.release();
+                    assertEquals(4, inner.size());
+                    assertNotNull(kept);
+                }
+                assertEquals(base + 2, context.getObjectRecords().size());
+                escaped = outer.escape((JSObject) context.evaluate("({b: 'escaped'})"));
+            }
+
+            assertEquals(base + 1, context.getObjectRecords().size());
+            assertEquals("escaped", escaped.getString("b"));
+            escaped.release();
+
+            JSScope first = context.openScope();
+            JSScope second = context.openScope();
+            try {
+                first.close();
+                fail();
+            } catch (QuickJSException e) {
+                second.close();
+                first.close();
+            }
+        }
+    }
+
+    @Test
+    public void testDestroyWithManyUnreleasedObjects() {
+        QuickJSContext context = createContext();
+        JSFunction create = (JSFunction) context.evaluate("(function(i) { return {i}; })");
+        for (int i = 0; i < 50000; i++) {
+            JSObject o = (JSObject) create.call(i);
+            if (i % 10 == 0) {
+                o.hold();
+            }
+        }
+        context.releaseObjectRecords();
+        assertEquals(1, context.getObjectRecords().size());
+        context.destroy();
+
+        int[] leaks = new int[1];
+        QuickJSContext detected = createContext();
+        detected.setLeakDetectionListener((leak, stringValue) -> leaks[0]++);
+        for (int i = 0; i < 100; i++) {
+            detected.createNewJSObject();
+        }
+        detected.destroy();
+        assertEquals(100, leaks[0]);
+    }
+
+    @Test
+    public void testAllocationTracking() {
+        try (QuickJSContext context = createContext()) {
+            context.setAllocationTracking(10, 4);
+            List<AllocationReport> reports = new ArrayList<>();
+            context.setAllocationReportListener(reports::add, 0);
+
+            JSFunction create = (JSFunction) context.evaluate("(function(i) { return {i}; })");
+            List<JSObject> objects = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                objects.add((JSObject) create.call(i));
+            }
+            for (int i = 0; i < 500; i++) {
+                objects.get(i).release();
+            }
+
+            AllocationReport report = context.getAllocationReport();
+            assertEquals(1001, report.getAllocations());
+            assertEquals(100, report.getSampledAllocations());
+
+            AllocationReport.Site top = report.getSites().get(0);
+            assertEquals("testAllocationTracking", top.getFrames()[0].getMethodName());
+            assertEquals(50, top.getLiveCount());
+            assertEquals(50, top.getAgeHistogram()[0]);
+
+            // 报告在下一个安全点回调
+            create.call(0);
+            assertFalse(reports.isEmpty());
+
+            for (int i = 500; i < 1000; i++) {
+                objects.get(i).release();
+            }
+            create.release();
+        }
+    }
+
+    @Test
+    public void testObjectIdentityCache() {
+        try (QuickJSContext context = createContext()) {
+            context.setObjectIdentityCache(true);
+            JSObject root = (JSObject) context.evaluate("({config: {debug: true}, list: [1, 2]})");
+            int base = context.getObjectRecords().size();
+
+            JSObject first = root.getJSObject("config");
+            JSObject second = root.getJSObject("config");
+            assertSame(first, second);
+            assertEquals(2, first.getRefCount());
+            assertEquals(base + 1, context.getObjectRecords().size());
+
+            JSArray list = root.getJSArray("list");
+            assertSame(list, root.getJSArray("list"));
+            list.release();
+            list.release();
+
+            first.release();
+            assertTrue(second.getBoolean("debug", false));
+            second.release();
+            assertEquals(base, context.getObjectRecords().size());
+
+            // 释放之后再获取会创建新的对象
+            JSObject third = root.getJSObject("config");
+            assertNotSame(first, third);
+            assertEquals(1, third.getRefCount());
+            third.release();
+
+            // 函数不复用
+            JSFunction f1 = root.getJSFunction("toString");
+            JSFunction f2 = root.getJSFunction("toString");
+            assertNotSame(f1, f2);
+            f1.release();
+            f2.release();
+            root.release();
+        }
+    }
+
+    @Test
+    public void testCallbackTable() {
+        try (QuickJSContext context = createContext()) {
+            int base = context.getCallFunctionMapSize();
+
+            // hashCode 相同的回调不会互相覆盖
+            JSCallFunction first = new JSCallFunction() {
+                @Override
+                public Object call(Object... args) {
+                    return "first";
+                }
+
+                @Override
+                public int hashCode() {
+                    return 1;
+                }
+            };
+            JSCallFunction second = new JSCallFunction() {
+                @Override
+                public Object call(Object... args) {
+                    return "second";
+                }
+
+                @Override
+                public int hashCode() {
+                    return 1;
+                }
+            };
+            JSObject global = context.getGlobalObject();
+            global.setProperty("first", first);
+            global.setProperty("second", second);
+            assertEquals("first,second", context.evaluate("[first(), second()].join()"));
+            assertEquals(base + 2, context.getCallFunctionMapSize());
+
+            // 同一个 Native 函数绑定到多个对象上
+            JSFunction shared = context.createFunction("shared", args -> "shared:" + args[0]);
+            JSObject a = context.createNewJSObject();
+            JSObject b = context.createNewJSObject();
+            a.setProperty("fn", shared);
+            b.setProperty("fn", shared);
+            global.setProperty("a", a);
+            global.setProperty("b", b);
+            assertEquals(true, context.evaluate("a.fn === b.fn && a.fn.name === 'shared'"));
+            assertEquals("shared:1", context.evaluate("b.fn(1)"));
+            assertEquals(base + 3, context.getCallFunctionMapSize());
+
+            shared.release();
+            a.release();
+            b.release();
+            context.evaluate("delete globalThis.a; delete globalThis.b; delete globalThis.first;");
+            context.runGC();
+            assertEquals(base + 1, context.getCallFunctionMapSize());
+        }
+    }
+
+    @Test
+    public void testTypedFunction() {
+        try (QuickJSContext context = createContext()) {
+            JSObject global = context.getGlobalObject();
+
+            JSDoubleBinaryFunction add = (a, b) -> a + b;
+            JSFunction addFn = context.createDoubleBinaryFunction("add", add);
+            global.setProperty("add", addFn);
+            addFn.release();
+            assertEquals(2, context.evaluate("add.length"));
+            assertEquals(3.5, context.evaluate("add(1, 2.5)"));
+            assertEquals(true, context.evaluate("Number.isNaN(add(1))"));
+
+            JSIntFunction twice = a -> a * 2;
+            JSFunction twiceFn = context.createIntFunction("twice", twice);
+            global.setProperty("twice", twiceFn);
+            twiceFn.release();
+            assertEquals(6, context.evaluate("twice('3')"));
+
+            int[] sum = new int[1];
+            JSIntConsumer accumulate = a -> sum[0] += a;
+            JSFunction accumulateFn = context.createIntConsumer("accumulate", accumulate);
+            global.setProperty("accumulate", accumulateFn);
+            accumulateFn.release();
+            assertEquals(true, context.evaluate("for (let i = 0; i < 10; i++) accumulate(i); accumulate(1) === undefined"));
+            assertEquals(46, sum[0]);
+
+            JSStringToIntFunction length = String::length;
+            JSFunction lengthFn = context.createStringToIntFunction("len", length);
+            global.setProperty("len", lengthFn);
+            lengthFn.release();
+            assertEquals(4, context.evaluate("len('你好ab')"));
+            assertEquals(4, context.evaluate("len(1234)"));
+
+            JSDoubleFunction thrower = a -> {
+                throw new IllegalStateException("typed callback failed");
+            };
+            JSFunction failFn = context.createDoubleFunction("fail", thrower);
+            global.setProperty("fail", failFn);
+            failFn.release();
+            try {
+                context.evaluate("fail(1)");
+                fail();
+            } catch (QuickJSException e) {
+                assertTrue(e.getMessage().contains("typed callback failed"));
+                // 原始的异常作为 cause
+                assertTrue(e.getCause() instanceof IllegalStateException);
+                assertEquals("typed callback failed", e.getCause().getMessage());
+            }
+
+            // Java 层的异常在 JS 里可以被捕获
+            assertEquals("InternalError: java.lang.IllegalStateException: typed callback failed",
+                    context.evaluate("try { fail(1); 'not thrown' } catch (e) { String(e) }"));
+            assertEquals(6, context.evaluate("twice(3)"));
+
+            // 之前的 JSCallFunction 抛出的异常不会被转为 JS 错误吞掉
+            JSFunction legacy = context.createFunction("legacy", args -> {
+                throw new UnsupportedOperationException("legacy callback failed");
+            });
+            global.setProperty("legacy", legacy);
+            legacy.release();
+            try {
+                context.evaluate("try { legacy(); twice(1); } catch (e) {}");
+                fail();
+            } catch (UnsupportedOperationException e) {
+                assertEquals("legacy callback failed", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testArgumentsFunction() {
+        try (QuickJSContext context = createContext()) {
+            JSObject global = context.getGlobalObject();
+            JSArguments[] escaped = new JSArguments[1];
+            JSFunction fn = context.createArgumentsFunction("lazy", args -> {
+                escaped[0] = args;
+                switch (args.getString(0)) {
+                    case "length":
+                        return args.length();
+                    case "sum":
+                        return args.getInt(1) + args.getDouble(2);
+                    case "flag":
+                        return args.getBoolean(1);
+                    case "missing":
+                        return args.getString(5) == null && args.getInt(5) == 0;
+                    case "object":
+                        JSObject obj = (JSObject) args.getObject(1);
+                        String name = obj.getString("name");
+                        obj.release();
+                        return name;
+                    case "throw":
+                        throw new IllegalStateException("arguments callback failed");
+                    case "unsupported":
+                        return new Object();
+                    default:
+                        return null;
+                }
+            });
+            global.setProperty("lazy", fn);
+            fn.release();
+
+            int before = context.getObjectRecords().size();
+            // 只读取长度时不会为对象参数创建 JSObject
+            assertEquals(4, context.evaluate("lazy('length', {}, [], {})"));
+            assertEquals(before, context.getObjectRecords().size());
+
+            assertEquals(3.5, context.evaluate("lazy('sum', '1', 2.5)"));
+            assertEquals(true, context.evaluate("lazy('flag', 1)"));
+            assertEquals(true, context.evaluate("lazy('missing')"));
+            assertEquals("quickjs", context.evaluate("lazy('object', {name: 'quickjs'})"));
+            assertEquals(before, context.getObjectRecords().size());
+
+            // Java 层的异常和不支持的返回值在 JS 里可以被捕获
+            assertEquals("InternalError: java.lang.IllegalStateException: arguments callback failed",
+                    context.evaluate("try { lazy('throw'); 'not thrown' } catch (e) { String(e) }"));
+            assertEquals(true, context.evaluate(
+                    "try { lazy('unsupported'); false } catch (e) { e instanceof InternalError && e.message.includes('Unsupported Java type') }"));
+            try {
+                context.evaluate("lazy('throw')");
+                fail();
+            } catch (QuickJSException e) {
+                assertTrue(e.getMessage().contains("arguments callback failed"));
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+
+            // 之前的 JSCallFunction 抛出的异常不会被转为 JS 错误吞掉
+            JSFunction legacy = context.createFunction("legacy", a -> {
+                throw new UnsupportedOperationException("legacy callback failed");
+            });
+            global.setProperty("legacy", legacy);
+            legacy.release();
+            try {
+                context.evaluate("try { legacy(); lazy('length'); } catch (e) {}");
+                fail();
+            } catch (UnsupportedOperationException e) {
+                assertEquals("legacy callback failed", e.getMessage());
+            }
+
+            // 回调返回后参数视图失效
+            try {
+                escaped[0].getInt(0);
+                fail();
+            } catch (QuickJSException e) {
+                assertTrue(e.getMessage().contains("only valid during the callback"));
+            }
+        }
+    }
+
+    @Test
+    public void testDirectByteBufferInArray() {
+        QuickJSContext context = createContext();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4);
+        buffer.put(0, (byte) 9);
+
+        JSArray array = context.createNewJSArray();
+        array.set(buffer, 0);
+        array.set("text", 1);
+        JSObject global = context.getGlobalObject();
+        global.setProperty("array", array);
+        assertEquals(9, context.evaluate("new Uint8Array(array[0])[0]"));
+        array.release();
+
+        // getter 抛出的 JS 异常不会被覆盖
+        context.evaluate("Object.defineProperty(globalThis, 'broken', { get() { throw new Error('broken getter'); } })");
+        try {
+            global.readArrayBuffer("broken", view -> null);
+            fail();
+        } catch (QuickJSException e) {
+            assertTrue(e.getMessage().contains("broken getter"));
+        }
+        global.release();
+
+        // ArrayBuffer 的计数平衡后才能正常销毁，不会触发 JS_FreeRuntime 的断言
+        context.destroy();
+    }
+
+    @Test
+    public void testGetPropertiesFailureReleasesValues() {
+        try (QuickJSContext context = createContext()) {
+            JSObject obj = (JSObject) context.evaluate("({ a: {}, b: [], get c() { throw new Error('c failed'); } })");
+            int before = context.getObjectRecords().size();
+
+            try {
+                obj.getProperties("a", "b", "c");
+                fail();
+            } catch (QuickJSException e) {
+                assertTrue(e.getMessage().contains("c failed"));
+            }
+
+            try {
+                obj.entries();
+                fail();
+            } catch (QuickJSException e) {
+                assertTrue(e.getMessage().contains("c failed"));
+            }
+
+            // 失败时不会留下已经读取的属性值
+            assertEquals(before, context.getObjectRecords().size());
+            obj.release();
+        }
+    }
+
+    @Test
+    public void testToMapWithThrowingCreatorAndDeepGraph() {
+        try (QuickJSContext context = createContext()) {
+            JSObject obj = (JSObject) context.evaluate("({ a: 1, b: { c: 2 } })");
+            try {
+                obj.toMap(null, null, Collections::emptyMap);
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // Map.put 抛出的异常会中止转换
+            }
+            obj.release();
+
+            // 嵌套很深、容器很多的对象图不会占用全局引用
+            JSObject deep = (JSObject) context.evaluate(
+                    "var root = {}; var node = root; for (var i = 0; i < 2000; i++) { node.next = { items: [i, {}] }; node = node.next; } root");
+            Map<String, Object> map = deep.toMap();
+            for (int i = 0; i < 2000; i++) {
+                Map<String, Object> next = (Map<String, Object>) map.get("next");
+                assertEquals(i, ((List<Object>) next.get("items")).get(0));
+                map = next;
+            }
+            deep.release();
+        }
+    }
+
+    @Test
+    public void testDestroyWithCollectedObjectsNotDrained() throws InterruptedException {
+        QuickJSContext context = createContext();
+        context.setAutoRelease(true);
+        JSFunction create = (JSFunction) context.evaluate("(function(i) { return {i}; })");
+        for (int i = 0; i < 1000; i++) {
+            // 不调用 release，也不调用 drain
+            create.call(i);
+        }
+        create.release();
+
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        // 被回收的对象不管有没有进入引用队列都会在销毁时释放，JS_FreeRuntime 不会因为泄漏触发断言
+        context.destroy();
+    }
+
+    @Test
+    public void testObjectIdentityCacheInScope() {
+        try (QuickJSContext context = createContext()) {
+            context.setObjectIdentityCache(true);
+            JSObject root = (JSObject) context.evaluate("({config: {debug: true}, list: [1, 2]})");
+            JSObject config = root.getJSObject("config");
+            JSArray list = root.getJSArray("list");
+            int base = context.getObjectRecords().size();
+
+            // 作用域内命中缓存的对象在作用域关闭时只释放作用域内增加的计数
+            try (JSScope scope = context.openScope()) {
+                for (int i = 0; i < 3; i++) {
+                    assertSame(config, root.getJSObject("config"));
+                    assertSame(list, root.getJSArray("list"));
+                }
+                assertEquals(4, config.getRefCount());
+                assertEquals(4, list.getRefCount());
+                assertEquals(6, scope.size());
+            }
+            assertEquals(1, config.getRefCount());
+            assertEquals(1, list.getRefCount());
+            assertEquals(base, context.getObjectRecords().size());
+            assertTrue(config.getBoolean("debug", false));
+            assertEquals(2, list.length());
+
+            // 转移到外层作用域的命中同样只释放一次计数
+            try (JSScope outer = context.openScope()) {
+                try (JSScope inner = context.openScope()) {
+                    inner.escape(root.getJSObject("config"));
+                    assertEquals(0, inner.size());
+                }
+                assertEquals(2, config.getRefCount());
+            }
+            assertEquals(1, config.getRefCount());
+
+            config.release();
+            list.release();
+            root.release();
+        }
+    }
+
+    @Test
+    public void testCallbackReleasedOnFailure() {
+        try (QuickJSContext context = createContext()) {
+            int base = context.getCallFunctionMapSize();
+            JSCallFunction callback = args -> null;
+            JSFunction func = (JSFunction) context.evaluate("(function() {})");
+
+            // 转换参数失败时，已经转换和还没有转换的回调都需要注销
+            try {
+                func.call(callback, new Object(), callback);
+                fail();
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("Unsupported Java type"));
+            }
+            assertEquals(base, context.getCallFunctionMapSize());
+
+            try {
+                context.newArray(Arrays.asList(callback, new Object(), callback));
+                fail();
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("Unsupported Java type"));
+            }
+            assertEquals(base, context.getCallFunctionMapSize());
+
+            // 展开对象图时失败
+            Map<Object, Object> map = new LinkedHashMap<>();
+            map.put("first", callback);
+            map.put(new Object() {
+                @Override
+                public String toString() {
+                    throw new IllegalStateException("bad key");
+                }
+            }, callback);
+            try {
+                context.toJS(map);
+                fail();
+            } catch (IllegalStateException e) {
+                assertEquals("bad key", e.getMessage());
+            }
+            assertEquals(base, context.getCallFunctionMapSize());
+
+            func.release();
+        }
+    }
+
+    @Test
+    public void testFunctionKeepsReceiverAfterOwnerCollected() throws InterruptedException {
+        try (QuickJSContext context = createContext()) {
+            context.setAutoRelease(true);
+            // 对象只被 Java 层持有，JSObject 被回收之后 JS 对象也会被释放
+            JSObject owner = (JSObject) context.evaluate("({n: 7, get() { return this.n; }})");
+            JSFunction get = owner.getJSFunction("get");
+            owner = null;
+
+            for (int i = 0; i < 20 && context.getAutoReleasedCount() < 1; i++) {
+                System.gc();
+                Thread.sleep(50);
+                context.drain();
+            }
+            assertEquals(1, context.getAutoReleasedCount());
+
+            // 函数持有 this，调用时 this 仍然有效
+            assertEquals(7, get.call());
+            get.release();
+        }
+    }
+
+    @Test
+    public void testStackTraceSideTable() {
+        try (QuickJSContext context = createContext()) {
+            JSObject plain = (JSObject) context.evaluate("({})");
+            assertNull(plain.getStackTrace());
+
+            context.setEnableStackTrace(true);
+            JSObject traced = (JSObject) context.evaluate("({})");
+            assertNotNull(traced.getStackTrace());
+            assertNull(plain.getStackTrace());
+
+            // 释放之后槽位会被复用，创建栈一起清除
+            traced.release();
+            assertNull(traced.getStackTrace());
+            context.setEnableStackTrace(false);
+            JSObject reused = (JSObject) context.evaluate("({})");
+            assertNull(reused.getStackTrace());
+
+            plain.release();
+            reused.release();
+        }
+    }
+
+    @Test
+    public void testBinaryCodecInterop() {
+        try (QuickJSContext context = createContext()) {
+            // Java 编码，JS 解码：重复的 key、共享对象、循环引用、U+0000 和不成对的代理项
+            Map<String, Object> shared = new HashMap<>();
+            shared.put("v", 1);
+            List<Object> list = new ArrayList<>();
+            list.add(shared);
+            list.add(shared);
+            list.add(Long.MAX_VALUE);
+            list.add(new byte[]{1, 2, 3});
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("s", "a\u0000b\uD800");
+            map.put("list", list);
+            map.put("self", map);
+
+            JSObject decoded = context.decode(JSBinaryCodec.encode(map));
+            JSObject global = context.getGlobalObject();
+            global.setProperty("decoded", decoded);
+            assertEquals("4|true|true|true|bigint|3", context.evaluate("[decoded.s.length, decoded.s === 'a\\u0000b\\ud800', " +
+                    "decoded.list[0] === decoded.list[1], decoded.self === decoded, typeof decoded.list[2], decoded.list[3].byteLength].join('|')"));
+            decoded.release();
+
+            // JS 编码，Java 解码
+            JSObject obj = (JSObject) context.evaluate("var s = {v: 1}; var o = {k: 'a\\u0000\\udc00', n: [1, -0, 2.5, 2 ** 50], a: s, b: s}; o.self = o; o");
+            Map<?, ?> result = (Map<?, ?>) JSBinaryCodec.decode(context.encode(obj));
+            obj.release();
+            assertEquals("a\u0000\uDC00", result.get("k"));
+            assertEquals(Arrays.asList(1, -0.0, 2.5, 1125899906842624L), result.get("n"));
+            assertSame(result.get("a"), result.get("b"));
+            assertSame(result, result.get("self"));
+
+            // 被截断或者被改动过的数据抛出异常，不会越界读取
+            byte[] bytes = new byte[JSBinaryCodec.encode(map).remaining()];
+            JSBinaryCodec.encode(map).get(bytes);
+            for (int i = 0; i < bytes.length; i++) {
+                try {
+                    JSBinaryCodec.decode(ByteBuffer.wrap(bytes, 0, i));
+                    fail();
+                } catch (QuickJSException e) {
+                    assertTrue(e.getMessage().contains("Failed to decode"));
+                }
+                try {
+                    context.decode(ByteBuffer.wrap(bytes, 0, i));
+                    fail();
+                } catch (QuickJSException e) {
+                    assertTrue(e.getMessage().contains("Failed to decode"));
+                }
+            }
+            global.release();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedConvertToMap() {
+        try (QuickJSContext context = createContext()) {
+            QuickJSObject obj = (QuickJSObject) context.evaluate("({a: 1, list: [1, 2], nested: {b: 'x'}})");
+            Map<String, Object> map = new HashMap<>();
+            HashMap<Long, Object> circulars = new HashMap<>();
+            obj.convertToMap(obj, map, circulars, null, null, null);
+            assertEquals(1, map.get("a"));
+            assertEquals(Arrays.asList(1, 2), map.get("list"));
+            assertEquals("x", ((Map<?, ?>) map.get("nested")).get("b"));
+            assertSame(map, circulars.get(obj.getPointer()));
+            obj.release();
+        }
+    }
+
 }
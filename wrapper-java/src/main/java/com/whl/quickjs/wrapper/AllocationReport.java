@@ -0,0 +1,121 @@
+package com.whl.quickjs.wrapper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 按分配点汇总的采样结果，见 {@link QuickJSContext#setAllocationTracking(int, int)}。
+ * 数量都是采样到的数量，乘以 sampleRate 是估算的实际数量。
+ */
+public final class AllocationReport {
+
+    /**
+     * 存活时长分布的分桶边界（毫秒）：[0, 1s)、[1s, 10s)、[10s, 1min)、[1min, 10min)、[10min, ∞)。
+     */
+    public static final long[] AGE_BUCKETS_MILLIS = {1000, 10 * 1000, 60 * 1000, 10 * 60 * 1000};
+
+    public static final class Site {
+        private final StackTraceElement[] frames;
+        private final long sampledCount;
+        private final int liveCount;
+        private final int[] ageHistogram;
+
+        Site(StackTraceElement[] frames, long sampledCount, int liveCount, int[] ageHistogram) {
+            this.frames = frames;
+            this.sampledCount = sampledCount;
+            this.liveCount = liveCount;
+            this.ageHistogram = ageHistogram;
+        }
+
+        public StackTraceElement[] getFrames() {
+            return frames;
+        }
+
+        /**
+         * 这个分配点累计采样到的对象数量。
+         */
+        public long getSampledCount() {
+            return sampledCount;
+        }
+
+        /**
+         * 采样到的对象中还没有释放的数量。
+         */
+        public int getLiveCount() {
+            return liveCount;
+        }
+
+        /**
+         * 存活对象按 {@link #AGE_BUCKETS_MILLIS} 分桶的数量。
+         */
+        public int[] getAgeHistogram() {
+            return ageHistogram;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("live=").append(liveCount)
+                    .append(", sampled=").append(sampledCount)
+                    .append(", ages=").append(Arrays.toString(ageHistogram));
+            for (StackTraceElement frame : frames) {
+                sb.append("\n\tat ").append(frame);
+            }
+            return sb.toString();
+        }
+    }
+
+    private final int sampleRate;
+    private final long allocations;
+    private final long sampledAllocations;
+    private final List<Site> sites;
+
+    AllocationReport(int sampleRate, long allocations, long sampledAllocations, List<Site> sites) {
+        this.sampleRate = sampleRate;
+        this.allocations = allocations;
+        this.sampledAllocations = sampledAllocations;
+        // 存活数量多的分配点排在前面
+        Collections.sort(sites, new Comparator<Site>() {
+            @Override
+            public int compare(Site o1, Site o2) {
+                return Integer.compare(o2.liveCount, o1.liveCount);
+            }
+        });
+        this.sites = Collections.unmodifiableList(sites);
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * 开启追踪后创建的对象总数（包括没有被采样的）。
+     */
+    public long getAllocations() {
+        return allocations;
+    }
+
+    public long getSampledAllocations() {
+        return sampledAllocations;
+    }
+
+    public List<Site> getSites() {
+        return sites;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("AllocationReport{sampleRate=").append(sampleRate)
+                .append(", allocations=").append(allocations)
+                .append(", sampled=").append(sampledAllocations)
+                .append('}');
+        for (Site site : sites) {
+            sb.append('\n').append(site);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.whl.quickjs.wrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 按采样率记录 JSObject 的创建位置，用于线上的泄漏排查。
+ * 每 sampleRate 次创建采样一次，只截取调用方的前 maxFrames 个栈帧，相同的栈帧去重为同一个分配点。
+ * 采样到的对象按 {@link ObjectRecords} 的槽位记录分配点和创建时间，对象释放时清除，
+ * 生成报告时按分配点汇总存活数量和存活时长的分布。
+ */
+final class AllocationTracker {
+
+    // 这些类的栈帧属于 wrapper 内部的调用，截取调用栈时跳过
+    private static final String[] INTERNAL_CLASSES = {
+            QuickJSContext.class.getName(),
+            QuickJSObject.class.getName(),
+            QuickJSArray.class.getName(),
+            QuickJSFunction.class.getName(),
+            ObjectRecords.class.getName(),
+            AllocationTracker.class.getName(),
+    };
+
+    private static final int NO_SITE = -1;
+
+    private static final class SiteKey {
+        final StackTraceElement[] frames;
+        final int hash;
+
+        SiteKey(StackTraceElement[] frames) {
+            this.frames = frames;
+            this.hash = Arrays.hashCode(frames);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SiteKey && Arrays.equals(frames, ((SiteKey) o).frames);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final int sampleRate;
+    private final int maxFrames;
+    private int countdown;
+    private long allocations;
+    private long sampledAllocations;
+
+    private final HashMap<SiteKey, Integer> siteIds = new HashMap<>();
+    private final List<StackTraceElement[]> siteFrames = new ArrayList<>();
+    private long[] siteTotals = new long[16];
+
+    // 按 ObjectRecords 的槽位记录采样对象的分配点和创建时间
+    private int[] slotSites = new int[64];
+    private long[] slotTimes = new long[64];
+
+    private QuickJSContext.AllocationReportListener listener;
+    private long reportIntervalNanos;
+    private long nextReportTime;
+    private boolean reportDue;
+
+    AllocationTracker(int sampleRate, int maxFrames) {
+        this.sampleRate = sampleRate;
+        this.maxFrames = maxFrames;
+        this.countdown = sampleRate;
+        Arrays.fill(slotSites, NO_SITE);
+    }
+
+    void setReportListener(QuickJSContext.AllocationReportListener listener, long intervalMillis) {
+        this.listener = listener;
+        this.reportIntervalNanos = intervalMillis * 1000000L;
+        this.nextReportTime = System.nanoTime() + reportIntervalNanos;
+    }
+
+    void onAdd(int slot) {
+        allocations++;
+        if (--countdown > 0) {
+            return;
+        }
+        countdown = sampleRate;
+        sampledAllocations++;
+
+        int site = siteOf(new Throwable().getStackTrace());
+        if (slot >= slotSites.length) {
+            int capacity = Math.max(slotSites.length * 2, slot + 1);
+            int oldLength = slotSites.length;
+            slotSites = Arrays.copyOf(slotSites, capacity);
+            slotTimes = Arrays.copyOf(slotTimes, capacity);
+            Arrays.fill(slotSites, oldLength, capacity, NO_SITE);
+        }
+
+        long now = System.nanoTime();
+        slotSites[slot] = site;
+        slotTimes[slot] = now;
+        siteTotals[site]++;
+
+        // 只在采样时检查是否需要输出报告，避免每次创建对象都读取时间。
+        // 这里可能处于 Native 层的回调中，报告推迟到下一个安全点再输出
+        if (listener != null && now >= nextReportTime) {
+            reportDue = true;
+        }
+    }
+
+    void reportIfDue() {
+        if (!reportDue) {
+            return;
+        }
+
+        reportDue = false;
+        nextReportTime = System.nanoTime() + reportIntervalNanos;
+        listener.onReport(report());
+    }
+
+    void onRelease(int slot) {
+        if (slot < slotSites.length) {
+            slotSites[slot] = NO_SITE;
+        }
+    }
+
+    void onClear() {
+        Arrays.fill(slotSites, NO_SITE);
+    }
+
+    private int siteOf(StackTraceElement[] stackTrace) {
+        int start = 0;
+        while (start < stackTrace.length && isInternal(stackTrace[start].getClassName())) {
+            start++;
+        }
+        int end = Math.min(stackTrace.length, start + maxFrames);
+
+        SiteKey key = new SiteKey(Arrays.copyOfRange(stackTrace, start, end));
+        Integer id = siteIds.get(key);
+        if (id != null) {
+            return id;
+        }
+
+        id = siteFrames.size();
+        siteIds.put(key, id);
+        siteFrames.add(key.frames);
+        if (id == siteTotals.length) {
+            siteTotals = Arrays.copyOf(siteTotals, id * 2);
+        }
+        return id;
+    }
+
+    private static boolean isInternal(String className) {
+        if (className.startsWith("java.") || className.startsWith("dalvik.")) {
+            return true;
+        }
+        for (String internal : INTERNAL_CLASSES) {
+            // 包括内部类，比如 QuickJSContext 里代理的 creator
+            if (className.startsWith(internal)
+                    && (className.length() == internal.length() || className.charAt(internal.length()) == '$')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    AllocationReport report() {
+        int siteCount = siteFrames.size();
+        int[] live = new int[siteCount];
+        int[][] histograms = new int[siteCount][AllocationReport.AGE_BUCKETS_MILLIS.length + 1];
+
+        long now = System.nanoTime();
+        for (int slot = 0; slot < slotSites.length; slot++) {
+            int site = slotSites[slot];
+            if (site == NO_SITE) {
+                continue;
+            }
+
+            live[site]++;
+            long ageMillis = (now - slotTimes[slot]) / 1000000L;
+            int bucket = 0;
+            while (bucket < AllocationReport.AGE_BUCKETS_MILLIS.length && ageMillis >= AllocationReport.AGE_BUCKETS_MILLIS[bucket]) {
+                bucket++;
+            }
+            histograms[site][bucket]++;
+        }
+
+        List<AllocationReport.Site> sites = new ArrayList<>();
+        for (int i = 0; i < siteCount; i++) {
+            sites.add(new AllocationReport.Site(siteFrames.get(i), siteTotals[i], live[i], histograms[i]));
+        }
+        return new AllocationReport(sampleRate, allocations, sampledAllocations, sites);
+    }
+
+}
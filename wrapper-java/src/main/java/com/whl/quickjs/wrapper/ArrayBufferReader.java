@@ -0,0 +1,11 @@
+package com.whl.quickjs.wrapper;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 读取 JS ArrayBuffer 的回调，buffer 是直接指向 ArrayBuffer 存储空间的只读视图，
+ * 只在 {@link #read(ByteBuffer)} 执行期间有效，不能在回调之外持有或使用。
+ */
+public interface ArrayBufferReader<T> {
+    T read(ByteBuffer buffer);
+}
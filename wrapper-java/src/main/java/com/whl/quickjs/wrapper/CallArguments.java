@@ -0,0 +1,111 @@
+package com.whl.quickjs.wrapper;
+
+/**
+ * 预先分类好的函数调用参数：每个参数对应一个类型标记、一个基础类型槽位和一个引用槽位，
+ * Native 层只需要对类型标记做一次 switch，不再需要 IsInstanceOf 判断和拆箱回调。
+ * 类型标记的取值需要和 quickjs_wrapper.cpp 里的 ArgumentType 保持一致。
+ */
+final class CallArguments {
+
+    static final byte TYPE_NULL = 0;
+    static final byte TYPE_BOOLEAN = 1;
+    static final byte TYPE_INTEGER = 2;
+    static final byte TYPE_LONG = 3;
+    static final byte TYPE_DOUBLE = 4;
+    static final byte TYPE_STRING = 5;
+    static final byte TYPE_JS_OBJECT = 6;
+    static final byte TYPE_CALL_FUNCTION = 7;
+    // 其他类型（例如 byte[]）交给 Native 层的 toJSValue 转换
+    static final byte TYPE_OTHER = 8;
+    // 以下类型只在 ObjectGraph 里使用
+    static final byte TYPE_MAP = 9;
+    static final byte TYPE_LIST = 10;
+    // 引用 ObjectGraph 里已经出现过的容器，primitives 里保存该容器的下标
+    static final byte TYPE_REFERENCE = 11;
+
+    private static final byte[] EMPTY_TYPES = new byte[0];
+    private static final long[] EMPTY_PRIMITIVES = new long[0];
+
+    final byte[] types;
+    final long[] primitives;
+    Object[] references;
+
+    CallArguments(Object[] args) {
+        int length = args == null ? 0 : args.length;
+        if (length == 0) {
+            types = EMPTY_TYPES;
+            primitives = EMPTY_PRIMITIVES;
+            return;
+        }
+
+        types = new byte[length];
+        primitives = new long[length];
+        for (int i = 0; i < length; i++) {
+            Object arg = args[i];
+            byte type = typeOf(arg);
+            types[i] = type;
+            if (isReference(type)) {
+                putReference(i, referenceOf(arg), length);
+            } else {
+                primitives[i] = primitiveOf(type, arg);
+            }
+        }
+    }
+
+    static byte typeOf(Object arg) {
+        if (arg == null) {
+            return TYPE_NULL;
+        } else if (arg instanceof String || arg instanceof Character) {
+            return TYPE_STRING;
+        } else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            return TYPE_INTEGER;
+        } else if (arg instanceof Double || arg instanceof Float) {
+            return TYPE_DOUBLE;
+        } else if (arg instanceof Long) {
+            return TYPE_LONG;
+        } else if (arg instanceof Boolean) {
+            return TYPE_BOOLEAN;
+        } else if (arg instanceof JSObject) {
+            return TYPE_JS_OBJECT;
+        } else if (arg instanceof JSCallFunction) {
+            return TYPE_CALL_FUNCTION;
+        }
+        return TYPE_OTHER;
+    }
+
+    static boolean isReference(byte type) {
+        return type == TYPE_STRING || type == TYPE_OTHER;
+    }
+
+    // Character 按单个字符的字符串传给 Native 层
+    static Object referenceOf(Object arg) {
+        return arg instanceof Character ? arg.toString() : arg;
+    }
+
+    static long primitiveOf(byte type, Object arg) {
+        switch (type) {
+            case TYPE_INTEGER:
+                // Short、Byte 和 Integer 一样作为 int 传递，Float 转换为 double
+                return ((Number) arg).intValue();
+            case TYPE_DOUBLE:
+                return Double.doubleToRawLongBits(((Number) arg).doubleValue());
+            case TYPE_LONG:
+                return (Long) arg;
+            case TYPE_BOOLEAN:
+                return (Boolean) arg ? 1 : 0;
+            case TYPE_JS_OBJECT:
+                return ((JSObject) arg).getPointer();
+            default:
+                // TYPE_CALL_FUNCTION 的 id 由 QuickJSContext 注册时分配
+                return 0;
+        }
+    }
+
+    private void putReference(int index, Object value, int length) {
+        if (references == null) {
+            references = new Object[length];
+        }
+        references[index] = value;
+    }
+
+}
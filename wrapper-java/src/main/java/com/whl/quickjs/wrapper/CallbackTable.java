@@ -0,0 +1,108 @@
+package com.whl.quickjs.wrapper;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * 注册到 JS 层的回调表，除了 JSCallFunction 还有 JSDoubleBinaryFunction 等固定签名的回调。id 的低 20 位是槽位下标，高位是槽位的代数，
+ * 槽位被释放后代数加一，已经失效的 id 不会访问到复用了同一个槽位的其他回调。
+ * 同一个回调对象只占一个槽位，每创建一个对应的 JS 函数计数加一，JS 函数被回收时计数减一，减到 0 释放槽位。
+ */
+final class CallbackTable {
+
+    // 回调的类型，作为 Native 层 JS 函数的 magic，需要和 quickjs_wrapper.h 的 CallbackKind 保持一致
+    static final int KIND_CALL_FUNCTION = 0;
+    static final int KIND_DOUBLE_BINARY = 1;
+    static final int KIND_DOUBLE = 2;
+    static final int KIND_INT = 3;
+    static final int KIND_INT_CONSUMER = 4;
+    static final int KIND_STRING_TO_INT = 5;
+    static final int KIND_ARGUMENTS = 6;
+
+    private static final int SLOT_BITS = 20;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    // 保证 id 是正数
+    private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1;
+    private static final int NO_SLOT = -1;
+
+    private Object[] callbacks = new Object[16];
+    private int[] generations = new int[16];
+    private int[] refCounts = new int[16];
+    private int[] nextFree = new int[16];
+    private int freeHead = NO_SLOT;
+    private int top;
+    private final IdentityHashMap<Object, Integer> ids = new IdentityHashMap<>();
+
+    int acquire(Object callback) {
+        Integer existing = ids.get(callback);
+        if (existing != null) {
+            refCounts[existing & SLOT_MASK]++;
+            return existing;
+        }
+
+        int slot;
+        if (freeHead != NO_SLOT) {
+            slot = freeHead;
+            freeHead = nextFree[slot];
+        } else {
+            if (top > SLOT_MASK) {
+                throw new QuickJSException("Too many callbacks registered: " + top);
+            }
+            if (top == callbacks.length) {
+                int capacity = top * 2;
+                callbacks = Arrays.copyOf(callbacks, capacity);
+                generations = Arrays.copyOf(generations, capacity);
+                refCounts = Arrays.copyOf(refCounts, capacity);
+                nextFree = Arrays.copyOf(nextFree, capacity);
+            }
+            slot = top++;
+        }
+
+        callbacks[slot] = callback;
+        refCounts[slot] = 1;
+        int id = (generations[slot] << SLOT_BITS) | slot;
+        ids.put(callback, id);
+        return id;
+    }
+
+    /**
+     * id 已经失效时返回 null。
+     */
+    Object get(int id) {
+        int slot = id & SLOT_MASK;
+        if (slot >= top || generations[slot] != id >>> SLOT_BITS) {
+            return null;
+        }
+        return callbacks[slot];
+    }
+
+    void release(int id) {
+        int slot = id & SLOT_MASK;
+        if (get(id) == null || --refCounts[slot] > 0) {
+            return;
+        }
+
+        ids.remove(callbacks[slot]);
+        callbacks[slot] = null;
+        generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+        nextFree[slot] = freeHead;
+        freeHead = slot;
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    void clear() {
+        for (int i = 0; i < top; i++) {
+            if (callbacks[i] != null) {
+                callbacks[i] = null;
+                generations[i] = (generations[i] + 1) & GENERATION_MASK;
+                nextFree[i] = freeHead;
+                freeHead = i;
+            }
+        }
+        ids.clear();
+    }
+
+}
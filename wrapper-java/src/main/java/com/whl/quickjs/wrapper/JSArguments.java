@@ -0,0 +1,60 @@
+package com.whl.quickjs.wrapper;
+
+/**
+ * {@link JSArgumentsFunction} 的参数视图，读取时才在 Native 层转换对应的参数，只在回调期间有效。
+ * 超出范围的参数按 undefined 处理，数值类型按 JS 的类型转换规则取值。
+ */
+public final class JSArguments {
+
+    private final QuickJSContext context;
+    private final int length;
+    private long pointer;
+
+    JSArguments(QuickJSContext context, long pointer, int length) {
+        this.context = context;
+        this.pointer = pointer;
+        this.length = length;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int getInt(int index) {
+        return context.getArgumentInt(checkValid(), index);
+    }
+
+    public double getDouble(int index) {
+        return context.getArgumentDouble(checkValid(), index);
+    }
+
+    public boolean getBoolean(int index) {
+        return context.getArgumentBoolean(checkValid(), index);
+    }
+
+    /**
+     * 参数是 undefined 或者 null 时返回 null，其他类型按 JS 的 ToString 规则转换。
+     */
+    public String getString(int index) {
+        return context.getArgumentString(checkValid(), index);
+    }
+
+    /**
+     * 和 {@link JSCallFunction} 的参数转换一致，对象类型的参数这时才会创建 JSObject，需要调用方 release。
+     */
+    public Object getObject(int index) {
+        return context.getArgumentObject(checkValid(), index);
+    }
+
+    void invalidate() {
+        pointer = 0;
+    }
+
+    private long checkValid() {
+        if (pointer == 0) {
+            throw new QuickJSException("The JSArguments is only valid during the callback.");
+        }
+        return pointer;
+    }
+
+}
@@ -0,0 +1,10 @@
+package com.whl.quickjs.wrapper;
+
+/**
+ * 参数按需转换的回调，通过 {@link QuickJSContext#createArgumentsFunction(String, JSArgumentsFunction)} 创建。
+ * 和 {@link JSCallFunction} 不同，调用时不会创建参数数组，也不会把每个参数都转换为 Java 对象，
+ * 只有通过 {@link JSArguments} 读取的参数才会转换。返回值和 {@link JSCallFunction} 一致。
+ */
+public interface JSArgumentsFunction {
+    Object call(JSArguments args);
+}
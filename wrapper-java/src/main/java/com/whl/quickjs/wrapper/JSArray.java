@@ -4,4 +4,18 @@ public interface JSArray extends JSObject {
     int length();
     Object get(int index);
     void set(Object value, int index);
+
+    /**
+     * 以下方法在一次 JNI 调用里把整个数组转换成 Java 数组，元素按 JS 的 ToInt32/ToNumber 等规则转换，
+     * toStringArray 中 null 和 undefined 元素对应 null。
+     */
+    int[] toIntArray();
+    long[] toLongArray();
+    double[] toDoubleArray();
+    String[] toStringArray();
+
+    /**
+     * 将数组中 [from, from + len) 区间的元素按 number 类型拷贝到 dst 的 offset 位置。
+     */
+    void copyInto(double[] dst, int offset, int from, int len);
 }
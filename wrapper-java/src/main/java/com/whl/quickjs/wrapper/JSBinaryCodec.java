@@ -0,0 +1,468 @@
+package com.whl.quickjs.wrapper;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link QuickJSContext#encode(JSObject)} 和 {@link QuickJSContext#decode(ByteBuffer)} 使用的二进制格式的 Java 实现，
+ * 不依赖 QuickJS，可以在没有 JS 环境的进程里读写同样的数据。
+ * <p>
+ * 格式：头部 'Q' 'J' 'S' 'B' + 格式版本，之后是一个值。每个值以 1 字节的 tag 开头，
+ * 长度、数量和下标使用 varint，整数使用 zigzag varint，字符串使用 UTF-8，
+ * 重复的字符串和重复出现的 Map/List（共享对象、循环引用）只写入下标。
+ * <p>
+ * 编码支持 null、Boolean、整数类型、Float/Double、String/Character、byte[]、Map、List/Collection 和 Object[]，
+ * Map 的 key 通过 {@link String#valueOf(Object)} 转换。解码得到 LinkedHashMap、ArrayList、Integer/Long、Double、
+ * String、Boolean、byte[] 和 null（JS 里的 undefined 也解码为 null）。数据不合法时抛出 QuickJSException。
+ */
+public final class JSBinaryCodec {
+
+    static final int NULL = 0;
+    static final int UNDEFINED = 1;
+    static final int FALSE = 2;
+    static final int TRUE = 3;
+    static final int INT = 4;
+    static final int DOUBLE = 5;
+    static final int STRING = 6;
+    static final int STRING_DEF = 7;
+    static final int STRING_REF = 8;
+    static final int OBJECT = 9;
+    static final int ARRAY = 10;
+    static final int REF = 11;
+    static final int BYTES = 12;
+
+    private static final byte[] MAGIC = {'Q', 'J', 'S', 'B'};
+    private static final int VERSION = 1;
+    // 和 Native 层一致，超过这个 UTF-8 长度的字符串值不进入字符串表
+    private static final int INTERN_LIMIT = 64;
+
+    private JSBinaryCodec() {
+    }
+
+    public static ByteBuffer encode(Object value) {
+        Encoder encoder = new Encoder();
+        encoder.writeBytes(MAGIC, 0, MAGIC.length);
+        encoder.writeByte(VERSION);
+        encoder.encode(value);
+        return ByteBuffer.wrap(Arrays.copyOf(encoder.data, encoder.size));
+    }
+
+    /**
+     * 解码 buffer 里 position 到 limit 之间的数据，buffer 的 position 不会改变。
+     */
+    public static Object decode(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new NullPointerException("Buffer cannot be null");
+        }
+
+        return new Decoder(buffer.duplicate()).decode();
+    }
+
+    private static final class Encoder {
+
+        byte[] data = new byte[256];
+        int size;
+
+        private final HashMap<String, Integer> strings = new HashMap<>();
+        private final IdentityHashMap<Object, Integer> objects = new IdentityHashMap<>();
+        private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+
+        private static final class Frame {
+            final Iterator<?> iterator;
+            final boolean isMap;
+
+            Frame(Iterator<?> iterator, boolean isMap) {
+                this.iterator = iterator;
+                this.isMap = isMap;
+            }
+        }
+
+        void encode(Object root) {
+            writeValue(root);
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peek();
+                if (!frame.iterator.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+
+                // writeValue 可能压栈，先取出当前元素
+                Object next = frame.iterator.next();
+                if (frame.isMap) {
+                    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) next;
+                    writeString(String.valueOf(entry.getKey()), true);
+                    writeValue(entry.getValue());
+                } else {
+                    writeValue(next);
+                }
+            }
+        }
+
+        private void writeValue(Object value) {
+            if (value == null) {
+                writeByte(NULL);
+            } else if (value instanceof Boolean) {
+                writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                writeInt(((Number) value).longValue());
+            } else if (value instanceof Double || value instanceof Float) {
+                double d = ((Number) value).doubleValue();
+                // 和 Native 层一致，安全范围内的整数（-0 除外）按 INT 写入
+                if (d == Math.rint(d) && Math.abs(d) <= 9007199254740991d && !(d == 0 && 1 / d < 0)) {
+                    writeInt((long) d);
+                } else {
+                    writeByte(DOUBLE);
+                    long bits = Double.doubleToRawLongBits(d);
+                    for (int i = 0; i < 8; i++) {
+                        writeByte((int) (bits >>> (i * 8)));
+                    }
+                }
+            } else if (value instanceof String || value instanceof Character) {
+                writeString(value.toString(), false);
+            } else if (value instanceof byte[]) {
+                byte[] bytes = (byte[]) value;
+                writeByte(BYTES);
+                writeVarint(bytes.length);
+                writeBytes(bytes, 0, bytes.length);
+            } else if (value instanceof Map || value instanceof Collection || value instanceof Object[]) {
+                Integer index = objects.get(value);
+                if (index != null) {
+                    writeByte(REF);
+                    writeVarint(index);
+                    return;
+                }
+
+                objects.put(value, objects.size());
+                if (value instanceof Map) {
+                    Map<?, ?> map = (Map<?, ?>) value;
+                    writeByte(OBJECT);
+                    writeVarint(map.size());
+                    stack.push(new Frame(map.entrySet().iterator(), true));
+                } else {
+                    Collection<?> collection = value instanceof Object[] ? Arrays.asList((Object[]) value) : (Collection<?>) value;
+                    writeByte(ARRAY);
+                    writeVarint(collection.size());
+                    stack.push(new Frame(collection.iterator(), false));
+                }
+            } else {
+                throw new QuickJSException("Failed to encode, unsupported Java type: " + value.getClass().getName());
+            }
+        }
+
+        private void writeInt(long value) {
+            writeByte(INT);
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        private void writeString(String str, boolean intern) {
+            Integer index = strings.get(str);
+            if (index != null) {
+                writeByte(STRING_REF);
+                writeVarint(index);
+                return;
+            }
+
+            int length = utf8Length(str);
+            if (intern || length <= INTERN_LIMIT) {
+                strings.put(str, strings.size());
+                writeByte(STRING_DEF);
+            } else {
+                writeByte(STRING);
+            }
+            writeVarint(length);
+            ensureCapacity(length);
+            // 和 JS_ToCStringLen 一致，不成对的代理项按 3 字节写入
+            for (int i = 0; i < str.length(); i++) {
+                char c = str.charAt(i);
+                if (c < 0x80) {
+                    data[size++] = (byte) c;
+                } else if (c < 0x800) {
+                    data[size++] = (byte) (0xC0 | (c >> 6));
+                    data[size++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, str.charAt(++i));
+                    data[size++] = (byte) (0xF0 | (cp >> 18));
+                    data[size++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    data[size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    data[size++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    data[size++] = (byte) (0xE0 | (c >> 12));
+                    data[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    data[size++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        private static int utf8Length(String str) {
+            int length = 0;
+            for (int i = 0; i < str.length(); i++) {
+                char c = str.charAt(i);
+                if (c < 0x80) {
+                    length += 1;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            data[size++] = (byte) b;
+        }
+
+        private void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) (value | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, data, size, length);
+            size += length;
+        }
+
+        private void ensureCapacity(int length) {
+            if (length > Integer.MAX_VALUE - 8 - size) {
+                throw new QuickJSException("Failed to encode, the data is too large.");
+            }
+            if (size + length > data.length) {
+                data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8, Math.max((long) data.length * 2, size + length)));
+            }
+        }
+    }
+
+    private static final class Decoder {
+
+        private final ByteBuffer buffer;
+        private final List<String> strings = new ArrayList<>();
+        private final List<Object> objects = new ArrayList<>();
+        private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+
+        private static final class Frame {
+            final Map<String, Object> map;
+            final List<Object> list;
+            final int length;
+            int index;
+
+            Frame(Map<String, Object> map, List<Object> list, int length) {
+                this.map = map;
+                this.list = list;
+                this.length = length;
+            }
+        }
+
+        Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        Object decode() {
+            if (buffer.remaining() < MAGIC.length + 1) {
+                throw error("the data was not produced by encode");
+            }
+            for (byte b : MAGIC) {
+                if (buffer.get() != b) {
+                    throw error("the data was not produced by encode");
+                }
+            }
+            if ((buffer.get() & 0xFF) != VERSION) {
+                throw error("unsupported format version");
+            }
+
+            Object root = readValue();
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peek();
+                if (frame.index >= frame.length) {
+                    stack.pop();
+                    continue;
+                }
+
+                frame.index++;
+                if (frame.map != null) {
+                    int tag = readByte();
+                    if (tag != STRING && tag != STRING_DEF && tag != STRING_REF) {
+                        throw error("invalid key");
+                    }
+                    String key = readString(tag);
+                    frame.map.put(key, readValue());
+                } else {
+                    frame.list.add(readValue());
+                }
+            }
+
+            if (buffer.hasRemaining()) {
+                throw error("unexpected trailing data");
+            }
+            return root;
+        }
+
+        private Object readValue() {
+            int tag = readByte();
+            switch (tag) {
+                case NULL:
+                case UNDEFINED:
+                    return null;
+                case FALSE:
+                    return Boolean.FALSE;
+                case TRUE:
+                    return Boolean.TRUE;
+                case INT: {
+                    long n = readVarint();
+                    long value = (n >>> 1) ^ -(n & 1);
+                    if (value == (int) value) {
+                        return (int) value;
+                    }
+                    return value;
+                }
+                case DOUBLE: {
+                    if (buffer.remaining() < 8) {
+                        throw error("unexpected end of data");
+                    }
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits |= (long) (buffer.get() & 0xFF) << (i * 8);
+                    }
+                    return Double.longBitsToDouble(bits);
+                }
+                case STRING:
+                case STRING_DEF:
+                case STRING_REF:
+                    return readString(tag);
+                case BYTES: {
+                    byte[] bytes = new byte[readLength(1)];
+                    buffer.get(bytes);
+                    return bytes;
+                }
+                case REF: {
+                    long index = readVarint();
+                    if (index < 0 || index >= objects.size()) {
+                        throw error("invalid object reference");
+                    }
+                    return objects.get((int) index);
+                }
+                case OBJECT: {
+                    // 每个属性至少占 2 个字节（key 和 value）
+                    int length = readLength(2);
+                    Map<String, Object> map = new LinkedHashMap<>();
+                    objects.add(map);
+                    stack.push(new Frame(map, null, length));
+                    return map;
+                }
+                case ARRAY: {
+                    int length = readLength(1);
+                    List<Object> list = new ArrayList<>(length);
+                    objects.add(list);
+                    stack.push(new Frame(null, list, length));
+                    return list;
+                }
+                default:
+                    throw error("unknown tag " + tag);
+            }
+        }
+
+        private String readString(int tag) {
+            if (tag == STRING_REF) {
+                long index = readVarint();
+                if (index < 0 || index >= strings.size()) {
+                    throw error("invalid string reference");
+                }
+                return strings.get((int) index);
+            }
+
+            int length = readLength(1);
+            int end = buffer.position() + length;
+            StringBuilder sb = new StringBuilder(length);
+            // 按 WTF-8 解码，保留 encode 写入的不成对代理项，不合法的字节替换为 U+FFFD
+            while (buffer.position() < end) {
+                int b = buffer.get() & 0xFF;
+                int extra = b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : b >= 0xC0 ? 1 : 0;
+                if (b < 0x80) {
+                    sb.append((char) b);
+                    continue;
+                }
+                if (b < 0xC0 || b > 0xF4 || end - buffer.position() < extra) {
+                    sb.append('\uFFFD');
+                    continue;
+                }
+
+                int cp = b & (0x3F >> extra);
+                boolean valid = true;
+                for (int i = 0; i < extra; i++) {
+                    int c = buffer.get(buffer.position()) & 0xFF;
+                    if ((c & 0xC0) != 0x80) {
+                        valid = false;
+                        break;
+                    }
+                    buffer.get();
+                    cp = (cp << 6) | (c & 0x3F);
+                }
+                int min = extra == 1 ? 0x80 : extra == 2 ? 0x800 : 0x10000;
+                if (!valid || cp < min || cp > Character.MAX_CODE_POINT) {
+                    sb.append('\uFFFD');
+                } else {
+                    sb.appendCodePoint(cp);
+                }
+            }
+
+            String str = sb.toString();
+            if (tag == STRING_DEF) {
+                strings.add(str);
+            }
+            return str;
+        }
+
+        // 读取一个长度，长度不能超过剩余的字节数（每个元素至少占 minSize 字节）
+        private int readLength(int minSize) {
+            long length = readVarint();
+            if (length < 0 || length > buffer.remaining() / minSize) {
+                throw error("invalid length");
+            }
+            return (int) length;
+        }
+
+        private long readVarint() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                if (shift == 63 && b > 1) {
+                    throw error("invalid varint");
+                }
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw error("invalid varint");
+        }
+
+        private int readByte() {
+            if (!buffer.hasRemaining()) {
+                throw error("unexpected end of data");
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        private static QuickJSException error(String message) {
+            return new QuickJSException("Failed to decode, " + message + ".");
+        }
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.whl.quickjs.wrapper;
+
+/**
+ * 固定签名 (number, number) => number 的回调，参数和返回值直接以 double 传递，不会创建参数数组和装箱。
+ * 通过 {@link QuickJSContext#createDoubleBinaryFunction(String, JSDoubleBinaryFunction)} 创建对应的 JS 函数。
+ */
+public interface JSDoubleBinaryFunction {
+    double call(double a, double b);
+}
@@ -0,0 +1,8 @@
+package com.whl.quickjs.wrapper;
+
+/**
+ * 固定签名 (number) => number 的回调，参数和返回值直接以 double 传递。
+ */
+public interface JSDoubleFunction {
+    double call(double a);
+}
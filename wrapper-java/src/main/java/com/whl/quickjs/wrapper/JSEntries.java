@@ -0,0 +1,37 @@
+package com.whl.quickjs.wrapper;
+
+/**
+ * {@link JSObject#entries()} 的结果，keys 和 values 按下标一一对应。
+ * values 里的 JSObject 类型需要调用方自行 release。
+ */
+public final class JSEntries {
+
+    private final String[] keys;
+    private final Object[] values;
+
+    JSEntries(String[] keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public String[] getKeys() {
+        return keys;
+    }
+
+    public Object[] getValues() {
+        return values;
+    }
+
+    public String getKey(int index) {
+        return keys[index];
+    }
+
+    public Object getValue(int index) {
+        return values[index];
+    }
+
+}
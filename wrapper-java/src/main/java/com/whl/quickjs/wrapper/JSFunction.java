@@ -3,4 +3,11 @@ package com.whl.quickjs.wrapper;
 public interface JSFunction extends JSObject {
     Object call(Object... args);
     void callVoid(Object... args);
+
+    /**
+     * 返回值按 JS 的 ToInt32/ToNumber/ToBoolean 规则转换成基础类型，不会经过装箱。
+     */
+    int callInt(Object... args);
+    double callDouble(Object... args);
+    boolean callBoolean(Object... args);
 }
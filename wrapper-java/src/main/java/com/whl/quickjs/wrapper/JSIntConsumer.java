@@ -0,0 +1,8 @@
+package com.whl.quickjs.wrapper;
+
+/**
+ * 固定签名 (number) => undefined 的回调，参数按 JS 的 ToInt32 规则转换为 int。
+ */
+public interface JSIntConsumer {
+    void accept(int a);
+}
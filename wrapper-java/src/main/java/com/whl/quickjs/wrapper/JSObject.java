@@ -1,5 +1,9 @@
 package com.whl.quickjs.wrapper;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -16,11 +20,29 @@ public interface JSObject {
     void setProperty(String name, boolean value);
     void setProperty(String name, double value);
     void setProperty(String name, byte[] value);
+    /**
+     * 基础类型数组会整块拷贝为对应的 TypedArray：int[] -> Int32Array，long[] -> BigInt64Array，
+     * float[] -> Float32Array，double[] -> Float64Array，short[] -> Int16Array。
+     * 反过来 TypedArray 类型的值也会转换为对应宽度的 Java 基础类型数组（无符号类型按位转换）。
+     */
+    void setProperty(String name, int[] value);
+    void setProperty(String name, long[] value);
+    void setProperty(String name, float[] value);
+    void setProperty(String name, double[] value);
+    void setProperty(String name, short[] value);
+    /**
+     * DirectByteBuffer 会直接作为 ArrayBuffer 的存储空间（position 到 limit 之间），不做拷贝，
+     * JS 层的修改对 Java 层可见，ArrayBuffer 被回收前 buffer 会一直被持有。
+     * 堆内存或只读的 ByteBuffer 会拷贝一份。
+     */
+    void setProperty(String name, ByteBuffer value);
     void setProperty(String name, JSCallFunction value);
     void setProperty(String name, Class<?> clazz);
+    void setProperty(JSPropertyKey key, Object value);
     long getPointer();
     QuickJSContext getContext();
     Object getProperty(String name);
+    Object getProperty(JSPropertyKey key);
     @Deprecated
     String getStringProperty(String name);
     String getString(String name);
@@ -34,7 +56,20 @@ public interface JSObject {
     Double getDoubleProperty(String name);
     Double getDouble(String name);
     Long getLong(String name);
+
+    /**
+     * 以下基础类型的取值方法不会经过装箱，属性值不是对应类型时返回 defaultValue。
+     * getInt/getLong/getDouble 接受任意 number 类型的属性值，按 JS 的数值转换规则取值。
+     */
+    int getInt(String name, int defaultValue);
+    long getLong(String name, long defaultValue);
+    double getDouble(String name, double defaultValue);
+    boolean getBoolean(String name, boolean defaultValue);
     byte[] getBytes(String name);
+    /**
+     * 以只读 ByteBuffer 的方式访问 ArrayBuffer 类型的属性，不做拷贝，buffer 只在 reader 回调期间有效。
+     */
+    <T> T readArrayBuffer(String name, ArrayBufferReader<T> reader);
     @Deprecated
     JSObject getJSObjectProperty(String name);
     JSObject getJSObject(String name);
@@ -47,7 +82,18 @@ public interface JSObject {
     @Deprecated
     JSArray getOwnPropertyNames();
     JSArray getNames();
+    /**
+     * 以下方法都只有一次 JNI 调用：
+     * getProperties 按 names 的顺序返回属性值；setProperties 的属性值类型和 {@link JSFunction#call(Object...)} 的参数一致；
+     * keys 和 entries 的属性范围和 {@link #getNames()} 一致（自身的字符串属性，包含不可枚举的属性）。
+     */
+    Object[] getProperties(String... names);
+    void setProperties(Map<String, ?> values);
+    String[] keys();
+    JSEntries entries();
     String stringify();
+    void stringify(OutputStream out) throws IOException;
+    void stringify(Writer writer) throws IOException;
     boolean isAlive();
     void release();
     void hold();
@@ -62,6 +108,10 @@ public interface JSObject {
 
     ArrayList<Object> toArray();
 
+    /**
+     * 在 Native 层一次遍历完成转换：数组转为 ArrayList，对象转为 mapCreator 创建的 Map（为空时使用 HashMap），
+     * 函数类型的值会被忽略，循环引用和重复引用的对象会指向同一个 Java 容器。
+     */
     HashMap<String, Object> toMap(MapFilter filter);
     ArrayList<Object> toArray(MapFilter filter);
     Map<String, Object> toMap(MapFilter filter, Object extra, MapCreator mapCreator);
@@ -0,0 +1,33 @@
+package com.whl.quickjs.wrapper;
+
+/**
+ * 预先创建好的属性名（对应 QuickJS 里的 JSAtom），通过 {@link QuickJSContext#key(String)} 获取。
+ * 同一个 Context 下相同名称的 key 只会创建一次，访问属性时直接传 atom，省去每次的字符串转换和 atom 查找。
+ * key 只能在创建它的 Context 里使用，Context 销毁时一起释放。
+ */
+public final class JSPropertyKey {
+
+    private final QuickJSContext context;
+    private final String name;
+    final int atom;
+
+    JSPropertyKey(QuickJSContext context, String name, int atom) {
+        this.context = context;
+        this.name = name;
+        this.atom = atom;
+    }
+
+    public QuickJSContext getContext() {
+        return context;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
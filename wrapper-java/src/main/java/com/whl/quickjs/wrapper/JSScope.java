@@ -0,0 +1,117 @@
+package com.whl.quickjs.wrapper;
+
+import java.util.Arrays;
+
+/**
+ * 作用域内创建的 JSObject/JSArray/JSFunction 会记录在作用域里，{@link #close()} 时通过一次 JNI 调用全部释放，
+ * 不需要逐个调用 release。作用域可以嵌套，必须按照后进先出的顺序关闭，需要在作用域之外继续使用的对象通过
+ * {@link #escape(JSObject)} 转移到外层作用域（没有外层作用域时交由调用方自行 release）。
+ * <pre>
+ * try (JSScope scope = context.openScope()) {
+ *     JSObject result = (JSObject) context.evaluate("...");
+ *     return scope.escape(result);
+ * }
+ * </pre>
+ */
+public final class JSScope implements AutoCloseable {
+
+    private final QuickJSContext context;
+    private final JSScope parent;
+    private JSObject[] objects = new JSObject[16];
+    // 对应位置的对象是否是复用的缓存对象（开启对象缓存时命中），复用的对象关闭时只释放一次计数
+    private boolean[] reused = new boolean[16];
+    private int size;
+    private boolean closed;
+
+    JSScope(QuickJSContext context, JSScope parent) {
+        this.context = context;
+        this.parent = parent;
+    }
+
+    JSScope getParent() {
+        return parent;
+    }
+
+    void add(JSObject object) {
+        add(object, false);
+    }
+
+    void addReused(JSObject object) {
+        add(object, true);
+    }
+
+    private void add(JSObject object, boolean isReused) {
+        if (size == objects.length) {
+            objects = Arrays.copyOf(objects, size * 2);
+            reused = Arrays.copyOf(reused, size * 2);
+        }
+        reused[size] = isReused;
+        objects[size++] = object;
+    }
+
+    /**
+     * 从作用域里移除对象的所有记录，返回对象是否在作用域里。
+     */
+    boolean remove(JSObject object) {
+        return move(object, null);
+    }
+
+    /**
+     * 把对象转移到外层作用域，当前作用域关闭时不会释放它。
+     */
+    public <T extends JSObject> T escape(T object) {
+        checkClosed();
+        move(object, parent);
+        return object;
+    }
+
+    private boolean move(JSObject object, JSScope target) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (objects[i] == object) {
+                if (target != null) {
+                    target.add(object, reused[i]);
+                }
+                continue;
+            }
+            objects[count] = objects[i];
+            reused[count] = reused[i];
+            count++;
+        }
+
+        boolean removed = count != size;
+        Arrays.fill(objects, count, size, null);
+        size = count;
+        return removed;
+    }
+
+    /**
+     * 作用域内还没有释放的对象数量。
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        context.closeScope(this, objects, reused, size);
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+        closed = true;
+    }
+
+    private void checkClosed() {
+        if (closed) {
+            throw new QuickJSException("The scope has already been closed.");
+        }
+    }
+
+}
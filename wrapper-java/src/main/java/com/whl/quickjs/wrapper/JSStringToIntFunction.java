@@ -0,0 +1,8 @@
+package com.whl.quickjs.wrapper;
+
+/**
+ * 固定签名 (string) => number 的回调，参数按 JS 的 ToString 规则转换为 String。
+ */
+public interface JSStringToIntFunction {
+    int call(String s);
+}
@@ -0,0 +1,146 @@
+package com.whl.quickjs.wrapper;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 把 Java 的 Map/Collection/Object[] 对象图按深度优先的顺序展开成扁平的数组，Native 层顺序读取一遍即可还原出 JS 对象，
+ * 整个转换只需要一次 JNI 调用。
+ * 每个节点占一个槽位，类型标记和 {@link CallArguments} 一致，容器节点的 primitives 是子节点的数量，
+ * 子节点紧跟在容器之后，Map 的子节点在 keys 里记录对应的 key。
+ * 同一个容器对象（包括循环引用）只展开一次，再次出现时记为 {@link CallArguments#TYPE_REFERENCE}。
+ */
+final class ObjectGraph {
+
+    private static final class Frame {
+        final Iterator<?> iterator;
+        final boolean isMap;
+        final int slot;
+        int count;
+
+        Frame(Iterator<?> iterator, boolean isMap, int slot) {
+            this.iterator = iterator;
+            this.isMap = isMap;
+            this.slot = slot;
+        }
+    }
+
+    byte[] types = new byte[16];
+    long[] primitives = new long[16];
+    Object[] references;
+    String[] keys;
+    int size;
+
+    private final IdentityHashMap<Object, Integer> containers = new IdentityHashMap<>();
+    private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+    private final QuickJSContext context;
+
+    ObjectGraph(QuickJSContext context, Object root) {
+        this.context = context;
+        boolean completed = false;
+        try {
+            build(root);
+            completed = true;
+        } finally {
+            // 展开中途失败（比如遍历时集合被修改）时注销已经注册的回调，Native 层不会再为它们创建函数
+            if (!completed) {
+                context.removeCallFunctions(types, primitives, size);
+            }
+        }
+    }
+
+    private void build(Object root) {
+        add(root, null);
+
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (!frame.iterator.hasNext()) {
+                primitives[frame.slot] = frame.count;
+                stack.pop();
+                continue;
+            }
+
+            frame.count++;
+            Object next = frame.iterator.next();
+            if (frame.isMap) {
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) next;
+                add(entry.getValue(), String.valueOf(entry.getKey()));
+            } else {
+                add(next, null);
+            }
+        }
+    }
+
+    private void add(Object value, String key) {
+        int slot = size++;
+        if (slot == types.length) {
+            int capacity = slot * 2;
+            types = Arrays.copyOf(types, capacity);
+            primitives = Arrays.copyOf(primitives, capacity);
+            if (references != null) {
+                references = Arrays.copyOf(references, capacity);
+            }
+            if (keys != null) {
+                keys = Arrays.copyOf(keys, capacity);
+            }
+        }
+
+        if (key != null) {
+            if (keys == null) {
+                keys = new String[types.length];
+            }
+            keys[slot] = key;
+        }
+
+        Iterator<?> iterator = null;
+        byte type;
+        if (value instanceof Map) {
+            type = CallArguments.TYPE_MAP;
+            iterator = ((Map<?, ?>) value).entrySet().iterator();
+        } else if (value instanceof Collection) {
+            type = CallArguments.TYPE_LIST;
+            iterator = ((Collection<?>) value).iterator();
+        } else if (value instanceof Object[]) {
+            type = CallArguments.TYPE_LIST;
+            iterator = Arrays.asList((Object[]) value).iterator();
+        } else {
+            type = CallArguments.typeOf(value);
+        }
+
+        if (iterator != null) {
+            Integer index = containers.get(value);
+            if (index != null) {
+                types[slot] = CallArguments.TYPE_REFERENCE;
+                primitives[slot] = index;
+                return;
+            }
+
+            containers.put(value, slot);
+            stack.push(new Frame(iterator, type == CallArguments.TYPE_MAP, slot));
+            types[slot] = type;
+            return;
+        }
+
+        if (type == CallArguments.TYPE_CALL_FUNCTION) {
+            // 注册成功之后再记录类型，注册失败时这个槽位不会被当作已经注册的回调
+            primitives[slot] = context.registerCallFunction((JSCallFunction) value);
+            types[slot] = type;
+            return;
+        }
+
+        types[slot] = type;
+        if (CallArguments.isReference(type)) {
+            if (references == null) {
+                references = new Object[types.length];
+            }
+            references[slot] = CallArguments.referenceOf(value);
+        } else {
+            primitives[slot] = CallArguments.primitiveOf(type, value);
+        }
+    }
+
+}
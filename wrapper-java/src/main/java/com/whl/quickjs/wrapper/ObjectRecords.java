@@ -0,0 +1,364 @@
+package com.whl.quickjs.wrapper;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 记录 QuickJSContext 创建的所有 JSObject，用于泄漏检测和销毁时的兜底释放。
+ * 对象按槽位存放，槽位下标记录在 {@link QuickJSObject} 里，释放后的槽位通过空闲链表复用，
+ * 添加和移除都是 O(1)。自定义的 JSObject 实现没有下标字段，通过一个 IdentityHashMap 记录下标。
+ * 开启自动释放后，新记录的对象通过弱引用持有，对象被 Java GC 回收后进入引用队列，
+ * 由 {@link #pollCollected()} 在 JS 线程上取出，再批量释放对应的 JS 对象。
+ */
+final class ObjectRecords implements Iterable<JSObject> {
+
+    private static final int NO_SLOT = -1;
+
+    /**
+     * 自动释放模式下的记录，JSObject 被回收后仍然需要知道指针和引用计数才能释放 JS 对象。
+     */
+    private static final class ManagedReference extends WeakReference<JSObject> {
+        final long pointer;
+        // JSFunction 持有的 this 对象，函数被回收时一起释放
+        final long receiver;
+        final int slot;
+        int refCount;
+
+        ManagedReference(JSObject object, ReferenceQueue<JSObject> queue, int slot) {
+            super(object, queue);
+            this.pointer = object.getPointer();
+            this.receiver = object instanceof QuickJSFunction ? ((QuickJSFunction) object).getReceiver() : 0;
+            this.slot = slot;
+            this.refCount = object.getRefCount();
+        }
+    }
+
+    // JSObject 或者 ManagedReference
+    private Object[] slots = new Object[64];
+    // 空闲槽位的链表，nextFree[i] 是 i 之后的下一个空闲槽位
+    private int[] nextFree = new int[64];
+    private int freeHead = NO_SLOT;
+    // 使用过的最大槽位数，之后的槽位还没有分配过
+    private int top;
+    private int size;
+    private IdentityHashMap<JSObject, Integer> externalSlots;
+    // 开启 enableStackTrace 后对象的创建栈，按槽位存放，第一次设置时才创建，不需要在每个 JSObject 上占一个字段
+    private Throwable[] stackTraces;
+
+    private boolean autoRelease;
+    private AllocationTracker tracker;
+    // 开启对象复用后，JS 对象指针到槽位的映射
+    private LongIntMap pointerSlots;
+    private final ReferenceQueue<JSObject> queue = new ReferenceQueue<>();
+    // pollCollected 的结果，只在 JS 线程上使用
+    long[] collectedPointers = new long[16];
+    int[] collectedCounts = new int[16];
+
+    void setAutoRelease(boolean autoRelease) {
+        this.autoRelease = autoRelease;
+    }
+
+    boolean isAutoRelease() {
+        return autoRelease;
+    }
+
+    void setTracker(AllocationTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    void setIdentityCache(boolean enabled) {
+        if (!enabled) {
+            pointerSlots = null;
+        } else if (pointerSlots == null) {
+            pointerSlots = new LongIntMap();
+        }
+    }
+
+    boolean isIdentityCache() {
+        return pointerSlots != null;
+    }
+
+    /**
+     * 查找指针对应的、还没有被释放的对象，没有时返回 null。
+     */
+    JSObject findByPointer(long pointer) {
+        int slot = pointerSlots.get(pointer);
+        if (slot == LongIntMap.MISSING) {
+            return null;
+        }
+
+        JSObject object = objectAt(slot);
+        return object == null || object.isRefCountZero() ? null : object;
+    }
+
+    void add(JSObject object) {
+        int slot;
+        if (freeHead != NO_SLOT) {
+            slot = freeHead;
+            freeHead = nextFree[slot];
+        } else {
+            if (top == slots.length) {
+                slots = Arrays.copyOf(slots, top * 2);
+                nextFree = Arrays.copyOf(nextFree, top * 2);
+            }
+            slot = top++;
+        }
+
+        // 自定义的 JSObject 实现需要放在 IdentityHashMap 里，会被强引用，不参与自动释放
+        boolean managed = autoRelease && object instanceof QuickJSObject;
+        slots[slot] = managed ? new ManagedReference(object, queue, slot) : object;
+        size++;
+        if (object instanceof QuickJSObject) {
+            ((QuickJSObject) object).recordSlot = slot;
+        } else {
+            if (externalSlots == null) {
+                externalSlots = new IdentityHashMap<>();
+            }
+            externalSlots.put(object, slot);
+        }
+
+        // JSFunction 带有调用时的 this，不同的获取方式 this 不同，不参与复用
+        if (pointerSlots != null && object instanceof QuickJSObject && !(object instanceof JSFunction)) {
+            pointerSlots.put(object.getPointer(), slot);
+        }
+
+        if (tracker != null) {
+            tracker.onAdd(slot);
+        }
+    }
+
+    /**
+     * 对象不在记录中时忽略。
+     */
+    void remove(JSObject object) {
+        int slot;
+        if (object instanceof QuickJSObject) {
+            QuickJSObject quickJSObject = (QuickJSObject) object;
+            slot = quickJSObject.recordSlot;
+            quickJSObject.recordSlot = NO_SLOT;
+        } else {
+            Integer index = externalSlots == null ? null : externalSlots.remove(object);
+            slot = index == null ? NO_SLOT : index;
+        }
+
+        if (slot == NO_SLOT || objectAt(slot) != object) {
+            return;
+        }
+
+        release(slot);
+    }
+
+    /**
+     * 对象的引用计数变化后调用，自动释放模式下需要同步记录的引用计数。
+     */
+    void updateRefCount(JSObject object) {
+        if (!(object instanceof QuickJSObject)) {
+            return;
+        }
+
+        int slot = ((QuickJSObject) object).recordSlot;
+        if (slot != NO_SLOT && slots[slot] instanceof ManagedReference) {
+            ((ManagedReference) slots[slot]).refCount = object.getRefCount();
+        }
+    }
+
+    /**
+     * 取出已经被 Java GC 回收的对象，指针和需要释放的次数写入 collectedPointers 和 collectedCounts，返回数量。
+     */
+    int pollCollected() {
+        int count = 0;
+        ManagedReference reference;
+        while ((reference = (ManagedReference) queue.poll()) != null) {
+            // 槽位可能已经被释放并复用了，只处理还是自己的槽位
+            if (slots[reference.slot] != reference) {
+                continue;
+            }
+
+            count = collect(reference, count);
+            release(reference.slot);
+        }
+        return count;
+    }
+
+    /**
+     * 直接遍历槽位，取出所有 JSObject 已经被回收的记录（不管是否已经进入引用队列），结果和 {@link #pollCollected()} 一样。
+     * 迭代器和 toList 会跳过这些记录，销毁时需要通过这个方法兜底释放。
+     */
+    int collectCleared() {
+        int count = 0;
+        for (int i = 0; i < top; i++) {
+            if (!(slots[i] instanceof ManagedReference)) {
+                continue;
+            }
+
+            ManagedReference reference = (ManagedReference) slots[i];
+            if (reference.get() != null) {
+                continue;
+            }
+
+            if (reference.refCount > 0) {
+                count = collect(reference, count);
+            }
+            release(i);
+        }
+        return count;
+    }
+
+    private int collect(ManagedReference reference, int count) {
+        count = collect(reference.pointer, reference.refCount, count);
+        if (reference.receiver != 0) {
+            count = collect(reference.receiver, 1, count);
+        }
+        return count;
+    }
+
+    private int collect(long pointer, int refCount, int count) {
+        if (count == collectedPointers.length) {
+            collectedPointers = Arrays.copyOf(collectedPointers, count * 2);
+            collectedCounts = Arrays.copyOf(collectedCounts, count * 2);
+        }
+        collectedPointers[count] = pointer;
+        collectedCounts[count] = refCount;
+        return count + 1;
+    }
+
+    void setStackTrace(int slot, Throwable stackTrace) {
+        if (stackTraces == null || stackTraces.length < slots.length) {
+            stackTraces = stackTraces == null ? new Throwable[slots.length] : Arrays.copyOf(stackTraces, slots.length);
+        }
+        stackTraces[slot] = stackTrace;
+    }
+
+    Throwable getStackTrace(int slot) {
+        return stackTraces != null && slot < stackTraces.length ? stackTraces[slot] : null;
+    }
+
+    private JSObject objectAt(int slot) {
+        Object value = slots[slot];
+        if (value instanceof ManagedReference) {
+            return ((ManagedReference) value).get();
+        }
+        return (JSObject) value;
+    }
+
+    private void release(int slot) {
+        if (pointerSlots != null) {
+            Object value = slots[slot];
+            long pointer = value instanceof ManagedReference ? ((ManagedReference) value).pointer : ((JSObject) value).getPointer();
+            if (pointerSlots.get(pointer) == slot) {
+                pointerSlots.remove(pointer);
+            }
+        }
+
+        if (slots[slot] instanceof ManagedReference) {
+            // clear 之后不会再进入引用队列
+            ((ManagedReference) slots[slot]).clear();
+        }
+        slots[slot] = null;
+        if (stackTraces != null && slot < stackTraces.length) {
+            stackTraces[slot] = null;
+        }
+        if (tracker != null) {
+            tracker.onRelease(slot);
+        }
+        nextFree[slot] = freeHead;
+        freeHead = slot;
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        for (int i = 0; i < top; i++) {
+            JSObject object = slots[i] == null ? null : objectAt(i);
+            if (object instanceof QuickJSObject) {
+                ((QuickJSObject) object).recordSlot = NO_SLOT;
+            }
+            if (slots[i] instanceof ManagedReference) {
+                ((ManagedReference) slots[i]).clear();
+            }
+            slots[i] = null;
+        }
+        externalSlots = null;
+        stackTraces = null;
+        if (pointerSlots != null) {
+            pointerSlots.clear();
+        }
+        if (tracker != null) {
+            tracker.onClear();
+        }
+        freeHead = NO_SLOT;
+        top = 0;
+        size = 0;
+    }
+
+    List<JSObject> toList() {
+        List<JSObject> list = new ArrayList<>(size);
+        for (int i = 0; i < top; i++) {
+            JSObject object = slots[i] == null ? null : objectAt(i);
+            if (object != null) {
+                list.add(object);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 按槽位顺序遍历，支持遍历过程中通过 Iterator.remove 移除当前对象。
+     * 自动释放模式下已经被回收、还没有 poll 的对象会被跳过。
+     */
+    @Override
+    public Iterator<JSObject> iterator() {
+        return new Iterator<JSObject>() {
+            private int nextSlot = -1;
+            // 持有下一个对象的强引用，避免 hasNext 之后被回收
+            private JSObject nextObject = advance(0);
+            private JSObject current;
+
+            private JSObject advance(int from) {
+                for (int i = from; i < top; i++) {
+                    JSObject object = slots[i] == null ? null : objectAt(i);
+                    if (object != null) {
+                        nextSlot = i;
+                        return object;
+                    }
+                }
+                nextSlot = top;
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return nextObject != null;
+            }
+
+            @Override
+            public JSObject next() {
+                if (nextObject == null) {
+                    throw new NoSuchElementException();
+                }
+                current = nextObject;
+                nextObject = advance(nextSlot + 1);
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                if (current == null) {
+                    throw new IllegalStateException();
+                }
+                ObjectRecords.this.remove(current);
+                current = null;
+            }
+        };
+    }
+
+}
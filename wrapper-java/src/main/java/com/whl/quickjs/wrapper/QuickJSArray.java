@@ -32,6 +32,36 @@ public class QuickJSArray extends QuickJSObject implements JSArray {
         getContext().set(this, value, index);
     }
 
+    @Override
+    public int[] toIntArray() {
+        checkRefCountIsZero();
+        return getContext().toIntArray(this);
+    }
+
+    @Override
+    public long[] toLongArray() {
+        checkRefCountIsZero();
+        return getContext().toLongArray(this);
+    }
+
+    @Override
+    public double[] toDoubleArray() {
+        checkRefCountIsZero();
+        return getContext().toDoubleArray(this);
+    }
+
+    @Override
+    public String[] toStringArray() {
+        checkRefCountIsZero();
+        return getContext().toStringArray(this);
+    }
+
+    @Override
+    public void copyInto(double[] dst, int offset, int from, int len) {
+        checkRefCountIsZero();
+        getContext().copyInto(this, dst, offset, from, len);
+    }
+
     @Override
     public HashMap<String, Object> toMap() {
         return toMap(null);
@@ -49,16 +79,13 @@ public class QuickJSArray extends QuickJSObject implements JSArray {
 
     @Override
     public ArrayList<Object> toArray(MapFilter filter) {
-        return toArray(filter, null, HashMap::new);
+        return toArray(filter, null, null);
     }
 
     @Override
     public ArrayList<Object> toArray(MapFilter filter, Object extra, MapCreator creator) {
-        ArrayList<Object> arrayList = new ArrayList<>(length());
-        HashMap<Long, Object> circulars = new HashMap<>();
-        convertToMap(this, arrayList, circulars, filter, extra, creator);
-        circulars.clear();
-        return arrayList;
+        checkRefCountIsZero();
+        return (ArrayList<Object>) getContext().toJavaCollection(this, filter, extra, creator);
     }
 
     @Override
@@ -2,10 +2,16 @@ package com.whl.quickjs.wrapper;
 
 import java.io.Closeable;
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 public class QuickJSContext implements Closeable {
 
@@ -25,6 +31,10 @@ public class QuickJSContext implements Closeable {
         void notifyLeakDetected(JSObject leak, String stringValue);
     }
 
+    public interface AllocationReportListener {
+        void onReport(AllocationReport report);
+    }
+
     public static abstract class DefaultModuleLoader extends ModuleLoader {
 
         @Override
@@ -51,6 +61,7 @@ public class QuickJSContext implements Closeable {
     }
 
     private static final String UNKNOWN_FILE = "unknown.js";
+    private static final int TRANSFER_BUFFER_SIZE = 8 * 1024;
 
     public static QuickJSContext create() {
         return new QuickJSContext(new JSObjectCreator() {
@@ -133,6 +144,23 @@ public class QuickJSContext implements Closeable {
         return getMemoryUsedSize(runtime);
     }
 
+    /**
+     * 开启短字符串（UTF-8 不超过 64 字节）的双向缓存，capacity 为缓存的条目数，0 表示关闭。
+     * 开启后从 JS 返回的相同字符串会复用同一个 Java String 实例，Java 传入的字符串也会复用同一个 JS 字符串，
+     * 适合大量重复的状态码、枚举名和 key 的场景。容量满了按 clock 算法淘汰，修改容量会清空已有的缓存。
+     */
+    public void setStringCacheSize(int capacity) {
+        checkSameThread();
+        checkDestroyed();
+        setStringCacheSize(context, capacity);
+    }
+
+    public StringCacheStats getStringCacheStats() {
+        checkSameThread();
+        checkDestroyed();
+        return new StringCacheStats(getStringCacheStats(context));
+    }
+
     public void dumpMemoryUsage(File target) {
         checkSameThread();
         checkDestroyed();
@@ -173,14 +201,19 @@ public class QuickJSContext implements Closeable {
     private final long context;
     private final long currentThreadId;
     private boolean destroyed = false;
-    private final HashMap<Integer, JSCallFunction> callFunctionMap = new HashMap<>();
+    private final CallbackTable callbackTable = new CallbackTable();
+    private final HashMap<String, JSPropertyKey> propertyKeys = new HashMap<>();
+    private byte[] transferBuffer;
 
     private ModuleLoader moduleLoader;
     private JSObject globalObject;
     private final JSObjectCreator creator;
-    private final List<JSObject> objectRecords = new ArrayList<>();
+    private final ObjectRecords objectRecords = new ObjectRecords();
     private LeakDetectionListener leakDetectionListener;
     private boolean enableStackTrace = false;
+    private long autoReleasedCount;
+    private JSScope currentScope;
+    private AllocationTracker allocationTracker;
 
     private QuickJSContext(JSObjectCreator creator) {
         try {
@@ -188,31 +221,37 @@ public class QuickJSContext implements Closeable {
             this.creator = new JSObjectCreator() {
                 @Override
                 public JSObject newObject(QuickJSContext c, long pointer) {
-                    JSObject o = creator.newObject(c, pointer);
-                    if (enableStackTrace) {
-                        o.setStackTrace(new Throwable());
+                    JSObject cached = findCachedObject(pointer);
+                    if (cached != null) {
+                        return reuse(cached);
                     }
-                    objectRecords.add(o);
+
+                    JSObject o = creator.newObject(c, pointer);
+                    record(o);
                     return o;
                 }
 
                 @Override
                 public JSArray newArray(QuickJSContext c, long pointer) {
-                    JSArray o = creator.newArray(c, pointer);
-                    if (enableStackTrace) {
-                        o.setStackTrace(new Throwable());
+                    // 先判断类型再计数加一，类型不匹配时创建新的对象
+                    JSObject cached = findCachedObject(pointer);
+                    if (cached instanceof JSArray) {
+                        return (JSArray) reuse(cached);
                     }
-                    objectRecords.add(o);
+
+                    JSArray o = creator.newArray(c, pointer);
+                    record(o);
                     return o;
                 }
 
                 @Override
                 public JSFunction newFunction(QuickJSContext c, long pointer, long thisPointer, int thisPointerTag) {
                     JSFunction o = creator.newFunction(c, pointer, thisPointer, thisPointerTag);
-                    if (enableStackTrace) {
-                        o.setStackTrace(new Throwable());
+                    if (!(o instanceof QuickJSFunction) && thisPointerTag == QuickJSFunction.JS_TAG_OBJECT) {
+                        // Native 层已经对 this 计数加一，自定义的 JSFunction 实现不会释放，这里直接释放
+                        freeValue(context, thisPointer);
                     }
-                    objectRecords.add(o);
+                    record(o);
                     return o;
                 }
             };
@@ -224,10 +263,195 @@ public class QuickJSContext implements Closeable {
         currentThreadId = Thread.currentThread().getId();
     }
 
+    private void record(JSObject o) {
+        objectRecords.add(o);
+        if (enableStackTrace) {
+            o.setStackTrace(new Throwable());
+        }
+        if (currentScope != null) {
+            currentScope.add(o);
+        }
+    }
+
     public void setEnableStackTrace(boolean enableStackTrace) {
         this.enableStackTrace = enableStackTrace;
     }
 
+    /**
+     * QuickJSObject 的创建栈放在 ObjectRecords 里，只对还在记录中的对象生效。
+     */
+    void setStackTrace(QuickJSObject jsObj, Throwable stackTrace) {
+        if (jsObj.recordSlot != -1) {
+            objectRecords.setStackTrace(jsObj.recordSlot, stackTrace);
+        }
+    }
+
+    Throwable getStackTrace(QuickJSObject jsObj) {
+        return jsObj.recordSlot != -1 ? objectRecords.getStackTrace(jsObj.recordSlot) : null;
+    }
+
+    /**
+     * 开启后同一个 JS 对象（函数除外）多次返回到 Java 层时，会复用同一个还没有释放的 JSObject，
+     * 每次返回引用计数加一，仍然需要和 release 一一对应。
+     * 用于循环读取同一个对象属性的场景，避免每次都创建新的 Java 对象。只对开启之后创建的对象生效。
+     */
+    public void setObjectIdentityCache(boolean enabled) {
+        checkSameThread();
+        objectRecords.setIdentityCache(enabled);
+    }
+
+    private JSObject findCachedObject(long pointer) {
+        if (!objectRecords.isIdentityCache()) {
+            return null;
+        }
+
+        JSObject cached = objectRecords.findByPointer(pointer);
+        // 全局对象会一直缓存，不参与计数，每次返回新的 JSObject
+        return cached == globalObject ? null : cached;
+    }
+
+    private JSObject reuse(JSObject cached) {
+        // Native 层返回的对象已经持有了一次引用，这里和新建对象一样计数加一
+        ((QuickJSObject) cached).incrementRefCount();
+        objectRecords.updateRefCount(cached);
+        // 和 record 一样记录到当前作用域，作用域关闭时释放这次增加的计数
+        if (currentScope != null) {
+            currentScope.addReused(cached);
+        }
+        return cached;
+    }
+
+    /**
+     * 开启采样的分配点追踪，相比 {@link #setEnableStackTrace(boolean)} 开销很小，可以在线上长期开启。
+     * 每 sampleRate 个新创建的对象采样一次，记录调用方的前 maxFrames 个栈帧，通过 {@link #getAllocationReport()}
+     * 获取按分配点汇总的存活数量和存活时长分布。sampleRate 小于等于 0 时关闭，重新开启会清空之前的统计。
+     */
+    public void setAllocationTracking(int sampleRate, int maxFrames) {
+        checkSameThread();
+        allocationTracker = sampleRate > 0 ? new AllocationTracker(sampleRate, Math.max(1, maxFrames)) : null;
+        objectRecords.setTracker(allocationTracker);
+    }
+
+    /**
+     * 没有开启分配点追踪时返回 null。
+     */
+    public AllocationReport getAllocationReport() {
+        checkSameThread();
+        return allocationTracker != null ? allocationTracker.report() : null;
+    }
+
+    /**
+     * 每隔 intervalMillis 在 JS 线程上回调一次报告，需要先开启分配点追踪。
+     * 只在采样到新对象时检查间隔，到期后在下一个安全点（evaluate、execute、函数调用之前或者 {@link #drain()}）回调。
+     */
+    public void setAllocationReportListener(AllocationReportListener listener, long intervalMillis) {
+        checkSameThread();
+        if (allocationTracker == null) {
+            throw new QuickJSException("Allocation tracking is not enabled, call setAllocationTracking first.");
+        }
+        allocationTracker.setReportListener(listener, intervalMillis);
+    }
+
+    /**
+     * 开启后新创建的 JSObject 不再需要手动 release：对象被 Java GC 回收后，
+     * 会在 JS 线程的安全点（evaluate、execute、函数调用之前）或者调用 {@link #drain()} 时批量释放对应的 JS 对象。
+     * 只对开启之后创建的对象生效，手动调用 release 仍然可以提前释放。
+     */
+    public void setAutoRelease(boolean autoRelease) {
+        checkSameThread();
+        objectRecords.setAutoRelease(autoRelease);
+    }
+
+    /**
+     * 立即释放已经被 Java GC 回收的 JSObject 对应的 JS 对象，返回本次释放的数量。
+     */
+    public int drain() {
+        checkSameThread();
+        checkDestroyed();
+        return releaseCollectedObjects();
+    }
+
+    /**
+     * 自动释放模式下累计释放的 JSObject 数量。
+     */
+    public long getAutoReleasedCount() {
+        return autoReleasedCount;
+    }
+
+    /**
+     * 打开一个新的作用域，之后创建的对象都记录在这个作用域里，直到它被关闭。
+     */
+    public JSScope openScope() {
+        checkSameThread();
+        checkDestroyed();
+
+        currentScope = new JSScope(this, currentScope);
+        return currentScope;
+    }
+
+    void closeScope(JSScope scope, JSObject[] objects, boolean[] reused, int size) {
+        checkSameThread();
+        if (destroyed) {
+            // context 销毁时已经释放过所有对象了
+            return;
+        }
+
+        if (scope != currentScope) {
+            throw new QuickJSException("Scopes must be closed in the reverse order of opening.");
+        }
+        currentScope = scope.getParent();
+
+        // JSFunction 的 this 对象额外占一个位置
+        long[] pointers = new long[size * 2];
+        int[] counts = new int[size * 2];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            JSObject object = objects[i];
+            int refCount = object.getRefCount();
+            if (refCount == 0) {
+                // 已经手动 release 过了
+                continue;
+            }
+
+            // 作用域内创建的对象释放所有计数；复用的对象可能在作用域之外创建，只释放作用域内增加的一次计数
+            int releaseCount = reused[i] ? 1 : refCount;
+            pointers[count] = object.getPointer();
+            counts[count] = releaseCount;
+            count++;
+            for (int j = 0; j < releaseCount; j++) {
+                object.decrementRefCount();
+            }
+            if (object.getRefCount() == 0) {
+                objectRecords.remove(object);
+                long receiver = object instanceof QuickJSFunction ? ((QuickJSFunction) object).takeReceiver() : 0;
+                if (receiver != 0) {
+                    pointers[count] = receiver;
+                    counts[count] = 1;
+                    count++;
+                }
+            } else {
+                objectRecords.updateRefCount(object);
+            }
+        }
+
+        if (count > 0) {
+            freeValues(context, pointers, counts, count);
+        }
+    }
+
+    private int releaseCollectedObjects() {
+        if (allocationTracker != null) {
+            allocationTracker.reportIfDue();
+        }
+
+        int count = objectRecords.pollCollected();
+        if (count > 0) {
+            freeValues(context, objectRecords.collectedPointers, objectRecords.collectedCounts, count);
+            autoReleasedCount += count;
+        }
+        return count;
+    }
+
     private void checkSameThread() {
         boolean isSameThread = currentThreadId == Thread.currentThread().getId();
         if (!isSameThread) {
@@ -271,15 +495,53 @@ public class QuickJSContext implements Closeable {
 
         checkSameThread();
         checkDestroyed();
+        releaseCollectedObjects();
         return evaluate(context, script, fileName);
     }
 
+    /**
+     * 直接执行 UTF-8 编码的脚本，不需要先转换为 String。
+     */
+    public Object evaluate(byte[] script) {
+        return evaluate(script, UNKNOWN_FILE);
+    }
+
+    public Object evaluate(byte[] script, String fileName) {
+        if (script == null) {
+            throw new NullPointerException("Script cannot be null with " + fileName);
+        }
+
+        checkSameThread();
+        checkDestroyed();
+        releaseCollectedObjects();
+        return evaluateBytes(context, script, null, 0, script.length, fileName, false);
+    }
+
+    /**
+     * 执行 position 到 limit 之间的 UTF-8 脚本，buffer 的 position 不会改变。
+     * 如果 DirectByteBuffer 在 limit 位置的字节是 0，会直接使用原内存，否则会拷贝一份。
+     */
+    public Object evaluate(ByteBuffer script, String fileName) {
+        return evaluateBuffer(script, fileName, false);
+    }
+
+    /**
+     * 通过 mmap 只读映射脚本文件后直接执行，文件内容不会经过 Java 堆，fileName 为文件的路径。
+     */
+    public Object evaluate(File file) throws IOException {
+        return evaluateFile(file, false);
+    }
+
     public JSObject getGlobalObject() {
         checkSameThread();
         checkDestroyed();
 
         if (globalObject == null) {
             globalObject = getGlobalObject(context);
+            // 全局对象会一直缓存，不能随作用域释放
+            if (currentScope != null) {
+                currentScope.remove(globalObject);
+            }
         }
 
         return globalObject;
@@ -293,19 +555,50 @@ public class QuickJSContext implements Closeable {
         checkSameThread();
         checkDestroyed();
 
-        callFunctionMap.clear();
+        callbackTable.clear();
+        releaseCollectedObjects();
         releaseObjectRecords();
+        // 已经被 GC 回收、还没有进入引用队列的对象在迭代时会被跳过，clear 之前按记录的指针和计数释放
+        int cleared = objectRecords.collectCleared();
+        if (cleared > 0) {
+            freeValues(context, objectRecords.collectedPointers, objectRecords.collectedCounts, cleared);
+        }
         objectRecords.clear();
+        releasePropertyKeys();
         destroyContext(context);
         destroyed = true;
     }
 
+    private void releasePropertyKeys() {
+        if (propertyKeys.isEmpty()) {
+            return;
+        }
+
+        int[] atoms = new int[propertyKeys.size()];
+        int i = 0;
+        for (JSPropertyKey key : propertyKeys.values()) {
+            atoms[i++] = key.atom;
+        }
+        propertyKeys.clear();
+        freeAtoms(context, atoms);
+    }
+
     public void releaseObjectRecords() {
         releaseObjectRecords(true);
     }
 
     public void releaseObjectRecords(boolean needRelease) {
-        JSFunction format = getGlobalObject().getJSFunction("format");
+        JSObject global = getGlobalObject();
+        // 没有设置泄漏监听时不需要格式化泄漏的对象，也就不需要查找 format 函数
+        JSFunction format = leakDetectionListener != null ? global.getJSFunction("format") : null;
+
+        long[] pointers = null;
+        int[] counts = null;
+        int count = 0;
+        if (needRelease) {
+            pointers = new long[objectRecords.size()];
+            counts = new int[objectRecords.size()];
+        }
 
         // 检测是否有未被释放引用的对象，如果有的话，根据计数释放一下
         Iterator<JSObject> objectIterator = objectRecords.iterator();
@@ -315,32 +608,56 @@ public class QuickJSContext implements Closeable {
             // 这里需要过滤掉 getGlobalObject 和 format
             // 1. getGlobalObject 全局对象不会主动释放，引擎销毁会回收
             // 2. format 用来格式化内容，会在迭代完释放掉，这里过滤掉
-            if (!object.isRefCountZero() && object != getGlobalObject() && object != format) {
+            if (!object.isRefCountZero() && object != global && object != format) {
                 int refCount = object.getRefCount();
-                if (leakDetectionListener != null) {
+                if (format != null) {
                     String value = (String) format.call(object);
                     leakDetectionListener.notifyLeakDetected(object, value);
                 }
 
                 if (needRelease) {
+                    if (count == pointers.length) {
+                        pointers = Arrays.copyOf(pointers, count * 2 + 1);
+                        counts = Arrays.copyOf(counts, count * 2 + 1);
+                    }
+                    pointers[count] = object.getPointer();
+                    counts[count] = refCount;
+                    count++;
+
+                    // 这里不能直接调用 object.release 方法，每次 release 都会有一次 JNI 调用，最后统一批量释放
                     for (int j = 0; j < refCount; j++) {
-                        // 这里不能直接调用 object.release 方法，因为 release 里会调用 list.remove 导致并发修改异常
                         object.decrementRefCount();
-                        freeValue(context, object.getPointer());
                     }
-
-                    if (object.getRefCount() == 0) {
-                        objectIterator.remove();
+                    objectIterator.remove();
+
+                    long receiver = object instanceof QuickJSFunction ? ((QuickJSFunction) object).takeReceiver() : 0;
+                    if (receiver != 0) {
+                        if (count == pointers.length) {
+                            pointers = Arrays.copyOf(pointers, count * 2 + 1);
+                            counts = Arrays.copyOf(counts, count * 2 + 1);
+                        }
+                        pointers[count] = receiver;
+                        counts[count] = 1;
+                        count++;
                     }
                 }
             }
         }
 
-        format.release();
+        if (format != null) {
+            format.release();
+        }
+
+        if (count > 0) {
+            freeValues(context, pointers, counts, count);
+        }
     }
 
+    /**
+     * 返回当前还在记录中的对象的快照，修改返回的 List 不会影响记录。
+     */
     public List<JSObject> getObjectRecords() {
-        return objectRecords;
+        return objectRecords.toList();
     }
 
     public String stringify(JSObject jsObj) {
@@ -349,27 +666,183 @@ public class QuickJSContext implements Closeable {
         return stringify(context, jsObj.getPointer());
     }
 
+    /**
+     * 以 UTF-8 流式输出 JSON，规则和 JSON.stringify 一致（不支持 replacer 和缩进），
+     * 通过固定大小的缓冲区分块写入 out，内存占用和 JSON 的大小无关。
+     * 出错时（例如循环引用）会抛出异常，此时 out 里可能已经写入了部分内容。
+     */
+    public void stringify(JSObject jsObj, OutputStream out) throws IOException {
+        checkSameThread();
+        checkDestroyed();
+
+        if (out == null) {
+            throw new NullPointerException("OutputStream cannot be null");
+        }
+
+        byte[] buffer = acquireTransferBuffer();
+        try {
+            stringifyTo(context, jsObj.getPointer(), out, buffer);
+        } finally {
+            transferBuffer = buffer;
+        }
+    }
+
+    /**
+     * 流式读写使用的缓冲区，用完之后赋值回 transferBuffer 复用，使用中的缓冲区不能共用。
+     */
+    private byte[] acquireTransferBuffer() {
+        byte[] buffer = transferBuffer != null ? transferBuffer : new byte[TRANSFER_BUFFER_SIZE];
+        transferBuffer = null;
+        return buffer;
+    }
+
+    public void stringify(JSObject jsObj, Writer writer) throws IOException {
+        if (writer == null) {
+            throw new NullPointerException("Writer cannot be null");
+        }
+
+        stringify(jsObj, new Utf8WriterOutputStream(writer));
+    }
+
     public Object getProperty(JSObject jsObj, String name) {
         checkSameThread();
         checkDestroyed();
         return getProperty(context, jsObj.getPointer(), name);
     }
 
-    public void setProperty(JSObject jsObj, String name, Object value) {
+    public Object[] getProperties(JSObject jsObj, String... names) {
+        checkSameThread();
+        checkDestroyed();
+        return getProperties(context, jsObj.getPointer(), names);
+    }
+
+    public void setProperties(JSObject jsObj, Map<String, ?> values) {
+        if (values == null) {
+            throw new NullPointerException("Property values cannot be null");
+        }
+
+        String[] names = new String[values.size()];
+        Object[] args = new Object[names.length];
+        int i = 0;
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            if (entry.getKey() == null) {
+                throw new NullPointerException("Property Name cannot be null");
+            }
+            names[i] = entry.getKey();
+            args[i] = entry.getValue();
+            i++;
+        }
+
+        CallArguments arguments = prepareCall(args);
+        setProperties(context, jsObj.getPointer(), names, arguments.types, arguments.primitives, arguments.references);
+    }
+
+    Object toJavaCollection(JSObject jsObj, MapFilter filter, Object extra, MapCreator creator) {
+        checkSameThread();
+        checkDestroyed();
+        return toJavaCollection(context, jsObj.getPointer(), filter, extra, creator);
+    }
+
+    public String[] keys(JSObject jsObj) {
+        checkSameThread();
+        checkDestroyed();
+        return keys(context, jsObj.getPointer());
+    }
+
+    public JSEntries entries(JSObject jsObj) {
+        checkSameThread();
+        checkDestroyed();
+        return entries(context, jsObj.getPointer());
+    }
+
+    /**
+     * 获取属性名对应的 key，同名的 key 在当前 Context 里只会创建一次。
+     */
+    public JSPropertyKey key(String name) {
         checkSameThread();
         checkDestroyed();
 
-        if (value instanceof JSCallFunction) {
-            // Todo 优化：可以只传 callFunctionId 给到 JNI.
-            putCallFunction((JSCallFunction) value);
+        if (name == null) {
+            throw new NullPointerException("Property Name cannot be null");
         }
 
+        JSPropertyKey key = propertyKeys.get(name);
+        if (key == null) {
+            key = new JSPropertyKey(this, name, newAtom(context, name));
+            propertyKeys.put(name, key);
+        }
+        return key;
+    }
+
+    public Object getProperty(JSObject jsObj, JSPropertyKey key) {
+        checkSameThread();
+        checkDestroyed();
+        checkPropertyKey(key);
+        return getPropertyByAtom(context, jsObj.getPointer(), key.atom);
+    }
+
+    public void setProperty(JSObject jsObj, JSPropertyKey key, Object value) {
+        checkSameThread();
+        checkDestroyed();
+        checkPropertyKey(key);
+
+        setPropertyByAtom(context, jsObj.getPointer(), key.atom, value);
+    }
+
+    private void checkPropertyKey(JSPropertyKey key) {
+        if (key == null) {
+            throw new NullPointerException("Property key cannot be null");
+        }
+
+        if (key.getContext() != this) {
+            throw new QuickJSException("The property key " + key + " was created by another QuickJSContext.");
+        }
+    }
+
+    public int getInt(JSObject jsObj, String name, int defaultValue) {
+        checkSameThread();
+        checkDestroyed();
+        return getInt(context, jsObj.getPointer(), name, defaultValue);
+    }
+
+    public long getLong(JSObject jsObj, String name, long defaultValue) {
+        checkSameThread();
+        checkDestroyed();
+        return getLong(context, jsObj.getPointer(), name, defaultValue);
+    }
+
+    public double getDouble(JSObject jsObj, String name, double defaultValue) {
+        checkSameThread();
+        checkDestroyed();
+        return getDouble(context, jsObj.getPointer(), name, defaultValue);
+    }
+
+    public boolean getBoolean(JSObject jsObj, String name, boolean defaultValue) {
+        checkSameThread();
+        checkDestroyed();
+        return getBoolean(context, jsObj.getPointer(), name, defaultValue);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T readArrayBuffer(JSObject jsObj, String name, ArrayBufferReader<T> reader) {
+        checkSameThread();
+        checkDestroyed();
+        return (T) readArrayBuffer(context, jsObj.getPointer(), name, reader);
+    }
+
+    public void setProperty(JSObject jsObj, String name, Object value) {
+        checkSameThread();
+        checkDestroyed();
+
         setProperty(context, jsObj.getPointer(), name, value);
     }
 
-    private void putCallFunction(JSCallFunction callFunction) {
-        int callFunctionId = callFunction.hashCode();
-        callFunctionMap.put(callFunctionId, callFunction);
+    /**
+     * 每创建一个对应的 JS 函数需要注册一次，返回的 id 传给 Native 层创建函数，Native 层的 toJSValue 也会回调这个方法。
+     * 函数被回收时 Native 层回调 {@link #removeCallFunction(int)}。
+     */
+    int registerCallFunction(JSCallFunction callFunction) {
+        return callbackTable.acquire(callFunction);
     }
 
     /**
@@ -377,24 +850,158 @@ public class QuickJSContext implements Closeable {
      * @param callFunctionId JSCallFunction 对象标识
      */
     public void removeCallFunction(int callFunctionId) {
-        callFunctionMap.remove(callFunctionId);
+        callbackTable.release(callFunctionId);
     }
 
     /**
-     * 该方法只提供给 Native 层回调.
-     * @param callFunctionId JSCallFunction 对象标识
-     * @param args JS 到 Java 的参数映射
+     * 创建一个 JS 函数，返回的 JSFunction 可以通过 {@link JSObject#setProperty(String, JSObject)} 设置到多个对象上，
+     * 共享同一个 Native 函数对象，不需要每次 setProperty 都重新创建。
+     * 回调抛出的异常不会转为 JS 错误，JS 代码不能捕获，回到 Java 层后原样抛给调用方。
      */
-    public Object callFunctionBack(int callFunctionId, Object... args) {
+    public JSFunction createFunction(String name, JSCallFunction callFunction) {
         checkSameThread();
         checkDestroyed();
 
-        JSCallFunction callFunction = callFunctionMap.get(callFunctionId);
-        Object ret = callFunction.call(args);
-        if (ret instanceof JSCallFunction) {
-            putCallFunction((JSCallFunction) ret);
+        if (callFunction == null) {
+            throw new NullPointerException("JSCallFunction cannot be null");
         }
 
+        return (JSFunction) createFunction(context, name == null ? "" : name, registerCallFunction(callFunction), CallbackTable.KIND_CALL_FUNCTION);
+    }
+
+    /**
+     * 以下方法创建固定签名的 JS 函数，参数和返回值直接以基础类型经过 JNI 传递，
+     * 不会创建参数数组，也不会对参数和返回值装箱。参数按 JS 的类型转换规则转换，缺少的参数按 undefined 处理。
+     * 方法名和参数类型一一对应，避免 lambda 表达式和 {@link #createFunction(String, JSCallFunction)} 产生重载歧义。
+     * 和 createFunction 不同，回调抛出的异常会转为 JS 的 InternalError（消息是异常的 toString），JS 代码可以捕获；
+     * 没有被捕获时调用方得到 {@link QuickJSException}，原始的异常可以通过 getCause 取得。
+     */
+    public JSFunction createDoubleBinaryFunction(String name, JSDoubleBinaryFunction function) {
+        return createTypedFunction(name, function, CallbackTable.KIND_DOUBLE_BINARY);
+    }
+
+    public JSFunction createDoubleFunction(String name, JSDoubleFunction function) {
+        return createTypedFunction(name, function, CallbackTable.KIND_DOUBLE);
+    }
+
+    public JSFunction createIntFunction(String name, JSIntFunction function) {
+        return createTypedFunction(name, function, CallbackTable.KIND_INT);
+    }
+
+    public JSFunction createIntConsumer(String name, JSIntConsumer function) {
+        return createTypedFunction(name, function, CallbackTable.KIND_INT_CONSUMER);
+    }
+
+    public JSFunction createStringToIntFunction(String name, JSStringToIntFunction function) {
+        return createTypedFunction(name, function, CallbackTable.KIND_STRING_TO_INT);
+    }
+
+    /**
+     * 创建参数按需转换的 JS 函数，见 {@link JSArgumentsFunction}。回调抛出的异常和固定签名的函数一样转为 JS 错误。
+     */
+    public JSFunction createArgumentsFunction(String name, JSArgumentsFunction function) {
+        return createTypedFunction(name, function, CallbackTable.KIND_ARGUMENTS);
+    }
+
+    private JSFunction createTypedFunction(String name, Object function, int kind) {
+        checkSameThread();
+        checkDestroyed();
+
+        if (function == null) {
+            throw new NullPointerException("Function cannot be null");
+        }
+
+        return (JSFunction) createFunction(context, name == null ? "" : name, callbackTable.acquire(function), kind);
+    }
+
+    private Object getCallback(int callFunctionId) {
+        checkSameThread();
+        checkDestroyed();
+
+        Object callback = callbackTable.get(callFunctionId);
+        if (callback == null) {
+            throw new QuickJSException("The callback has already been released, id: " + callFunctionId);
+        }
+        return callback;
+    }
+
+    /**
+     * 以下方法只提供给 Native 层回调，对应固定签名的 JS 函数.
+     */
+    public double callDoubleBinaryBack(int callFunctionId, double a, double b) {
+        return ((JSDoubleBinaryFunction) getCallback(callFunctionId)).call(a, b);
+    }
+
+    public double callDoubleBack(int callFunctionId, double a) {
+        return ((JSDoubleFunction) getCallback(callFunctionId)).call(a);
+    }
+
+    public int callIntBack(int callFunctionId, int a) {
+        return ((JSIntFunction) getCallback(callFunctionId)).call(a);
+    }
+
+    public void callIntConsumerBack(int callFunctionId, int a) {
+        ((JSIntConsumer) getCallback(callFunctionId)).accept(a);
+    }
+
+    public int callStringToIntBack(int callFunctionId, String s) {
+        return ((JSStringToIntFunction) getCallback(callFunctionId)).call(s);
+    }
+
+    public Object callArgumentsBack(int callFunctionId, long args, int length) {
+        JSArgumentsFunction function = (JSArgumentsFunction) getCallback(callFunctionId);
+        JSArguments arguments = new JSArguments(this, args, length);
+        Object ret;
+        try {
+            ret = function.call(arguments);
+        } finally {
+            // Native 层的参数视图在回调返回后失效
+            arguments.invalidate();
+        }
+        return returnToJS(ret);
+    }
+
+    int getArgumentInt(long args, int index) {
+        checkSameThread();
+        checkDestroyed();
+        return getArgumentInt(context, args, index);
+    }
+
+    double getArgumentDouble(long args, int index) {
+        checkSameThread();
+        checkDestroyed();
+        return getArgumentDouble(context, args, index);
+    }
+
+    boolean getArgumentBoolean(long args, int index) {
+        checkSameThread();
+        checkDestroyed();
+        return getArgumentBoolean(context, args, index);
+    }
+
+    String getArgumentString(long args, int index) {
+        checkSameThread();
+        checkDestroyed();
+        return getArgumentString(context, args, index);
+    }
+
+    Object getArgumentObject(long args, int index) {
+        checkSameThread();
+        checkDestroyed();
+        return getArgumentObject(context, args, index);
+    }
+
+    /**
+     * 该方法只提供给 Native 层回调.
+     * @param callFunctionId JSCallFunction 对象标识
+     * @param args JS 到 Java 的参数映射
+     */
+    public Object callFunctionBack(int callFunctionId, Object... args) {
+        JSCallFunction callFunction = (JSCallFunction) getCallback(callFunctionId);
+        return returnToJS(callFunction.call(args));
+    }
+
+    private Object returnToJS(Object ret) {
         if (ret instanceof JSObject) {
             // 注意：JSObject 对象作为参数返回到️ JavaScript 中，不需要调用 release 方法，
             // JS 引擎会进行 free，但是这里需要手动对 JSObject 对象的计数减一。
@@ -402,6 +1009,9 @@ public class QuickJSContext implements Closeable {
 
             if (((JSObject) ret).getRefCount() == 0) {
                 objectRecords.remove(((JSObject) ret));
+                releaseReceiver((JSObject) ret);
+            } else {
+                objectRecords.updateRefCount((JSObject) ret);
             }
         }
 
@@ -420,6 +1030,21 @@ public class QuickJSContext implements Closeable {
         // todo 如果计数为 0，从 objectRecords 里移除掉
         if (jsObj.getRefCount() == 0) {
             objectRecords.remove(jsObj);
+            releaseReceiver(jsObj);
+        } else {
+            objectRecords.updateRefCount(jsObj);
+        }
+    }
+
+    /**
+     * JSFunction 的计数为 0 时释放它持有的 this 对象。
+     */
+    private void releaseReceiver(JSObject jsObj) {
+        if (jsObj instanceof QuickJSFunction) {
+            long receiver = ((QuickJSFunction) jsObj).takeReceiver();
+            if (receiver != 0) {
+                freeValue(context, receiver);
+            }
         }
     }
 
@@ -428,7 +1053,7 @@ public class QuickJSContext implements Closeable {
      * 该方法仅供单元测试使用
      */
     int getCallFunctionMapSize() {
-        return callFunctionMap.size();
+        return callbackTable.size();
     }
 
     /**
@@ -467,18 +1092,100 @@ public class QuickJSContext implements Closeable {
         set(context, jsArray.getPointer(), value, index);
     }
 
+    public int[] toIntArray(JSArray jsArray) {
+        checkSameThread();
+        checkDestroyed();
+
+        return toIntArray(context, jsArray.getPointer());
+    }
+
+    public long[] toLongArray(JSArray jsArray) {
+        checkSameThread();
+        checkDestroyed();
+
+        return toLongArray(context, jsArray.getPointer());
+    }
+
+    public double[] toDoubleArray(JSArray jsArray) {
+        checkSameThread();
+        checkDestroyed();
+
+        return toDoubleArray(context, jsArray.getPointer());
+    }
+
+    public String[] toStringArray(JSArray jsArray) {
+        checkSameThread();
+        checkDestroyed();
+
+        return toStringArray(context, jsArray.getPointer());
+    }
+
+    public void copyInto(JSArray jsArray, double[] dst, int offset, int from, int len) {
+        checkSameThread();
+        checkDestroyed();
+
+        if (dst == null) {
+            throw new NullPointerException("Destination array cannot be null");
+        }
+
+        if (offset < 0 || from < 0 || len < 0 || len > dst.length - offset) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", from: " + from + ", len: " + len + ", dst.length: " + dst.length);
+        }
+
+        copyInto(context, jsArray.getPointer(), dst, offset, from, len);
+    }
+
     Object call(JSObject func, long objPointer, int thisPointerTag, Object... args) {
+        CallArguments arguments = prepareCall(args);
+        return call(context, func.getPointer(), objPointer, thisPointerTag, arguments.types, arguments.primitives, arguments.references);
+    }
+
+    int callInt(JSObject func, long objPointer, int thisPointerTag, Object... args) {
+        CallArguments arguments = prepareCall(args);
+        return callInt(context, func.getPointer(), objPointer, thisPointerTag, arguments.types, arguments.primitives, arguments.references);
+    }
+
+    double callDouble(JSObject func, long objPointer, int thisPointerTag, Object... args) {
+        CallArguments arguments = prepareCall(args);
+        return callDouble(context, func.getPointer(), objPointer, thisPointerTag, arguments.types, arguments.primitives, arguments.references);
+    }
+
+    boolean callBoolean(JSObject func, long objPointer, int thisPointerTag, Object... args) {
+        CallArguments arguments = prepareCall(args);
+        return callBoolean(context, func.getPointer(), objPointer, thisPointerTag, arguments.types, arguments.primitives, arguments.references);
+    }
+
+    private CallArguments prepareCall(Object[] args) {
         checkSameThread();
         checkDestroyed();
+        releaseCollectedObjects();
 
-        for (int i = 0; i < args.length; i++) {
-            Object arg = args[i];
-            if (arg instanceof JSCallFunction) {
-                putCallFunction((JSCallFunction) arg);
+        CallArguments arguments = new CallArguments(args);
+        int registered = 0;
+        try {
+            for (; registered < arguments.types.length; registered++) {
+                if (arguments.types[registered] == CallArguments.TYPE_CALL_FUNCTION) {
+                    arguments.primitives[registered] = registerCallFunction((JSCallFunction) args[registered]);
+                }
+            }
+        } finally {
+            // 注册中途失败时注销已经注册的回调，Native 层不会再为它们创建函数
+            if (registered < arguments.types.length) {
+                removeCallFunctions(arguments.types, arguments.primitives, registered);
             }
         }
+        return arguments;
+    }
 
-        return call(context, func.getPointer(), objPointer, thisPointerTag, args);
+    /**
+     * 注销前 count 个参数里已经注册的回调。
+     */
+    void removeCallFunctions(byte[] types, long[] primitives, int count) {
+        for (int i = 0; i < count; i++) {
+            if (types[i] == CallArguments.TYPE_CALL_FUNCTION) {
+                removeCallFunction((int) primitives[i]);
+            }
+        }
     }
 
     /**
@@ -491,6 +1198,7 @@ public class QuickJSContext implements Closeable {
         checkDestroyed();
 
         dupValue(jsObj);
+        objectRecords.updateRefCount(jsObj);
     }
 
     public JSObject createNewJSObject() {
@@ -501,6 +1209,42 @@ public class QuickJSContext implements Closeable {
         return (JSArray) parseJSON("[]");
     }
 
+    /**
+     * 一次 JNI 调用批量创建 JS 数组，避免逐个元素调用 {@link JSArray#set(Object, int)}。
+     */
+    public JSArray newArray(int[] values) {
+        checkSameThread();
+        checkDestroyed();
+
+        return (JSArray) newIntArray(context, values);
+    }
+
+    public JSArray newArray(double[] values) {
+        checkSameThread();
+        checkDestroyed();
+
+        return (JSArray) newDoubleArray(context, values);
+    }
+
+    public JSArray newArray(String[] values) {
+        checkSameThread();
+        checkDestroyed();
+
+        return (JSArray) newStringArray(context, values);
+    }
+
+    /**
+     * 元素类型和 {@link JSFunction#call(Object...)} 的参数一致，JSObject 类型的元素会被数组持有引用。
+     */
+    public JSArray newArray(List<?> values) {
+        if (values == null) {
+            throw new NullPointerException("Array values cannot be null");
+        }
+
+        CallArguments arguments = prepareCall(values.toArray());
+        return (JSArray) newObjectArray(context, arguments.types, arguments.primitives, arguments.references);
+    }
+
     /**
      * Use {@link #parse(String)} replace.
      */
@@ -517,12 +1261,125 @@ public class QuickJSContext implements Closeable {
         return (JSObject) obj;
     }
 
+    /**
+     * 把 Java 对象转换为 JS 值，整个对象图只有一次 JNI 调用，不会生成中间的 JSON 字符串。
+     * Map 转为对象（key 通过 String.valueOf 转换），List 等 Collection 和 Object[] 转为数组，
+     * 其他类型和 {@link JSFunction#call(Object...)} 的参数一致；同一个容器对象（包括循环引用）会转为同一个 JS 对象。
+     */
+    public Object toJS(Object value) {
+        checkSameThread();
+        checkDestroyed();
+
+        ObjectGraph graph = new ObjectGraph(this, value);
+        return toJS(context, graph.types, graph.primitives, graph.references, graph.keys, graph.size);
+    }
+
     public Object parse(String json) {
         checkSameThread();
         checkDestroyed();
         return parseJSON(context, json);
     }
 
+    /**
+     * 直接解析 UTF-8 编码的 JSON，不需要先转换为 String。
+     */
+    public Object parse(byte[] json) {
+        checkSameThread();
+        checkDestroyed();
+
+        if (json == null) {
+            throw new NullPointerException("JSON cannot be null");
+        }
+
+        return parseBytes(context, json, 0, json.length);
+    }
+
+    /**
+     * 解析 position 到 limit 之间的 UTF-8 数据，buffer 的 position 不会改变。
+     * 如果 DirectByteBuffer 在 limit 位置的字节是 0，会直接在原内存上解析，否则会拷贝一份。
+     */
+    public Object parse(ByteBuffer json) {
+        checkSameThread();
+        checkDestroyed();
+
+        if (json == null) {
+            throw new NullPointerException("JSON cannot be null");
+        }
+
+        if (json.isDirect()) {
+            return parseDirectBuffer(context, json, json.position(), json.limit());
+        }
+
+        if (json.hasArray()) {
+            return parseBytes(context, json.array(), json.arrayOffset() + json.position(), json.remaining());
+        }
+
+        byte[] bytes = new byte[json.remaining()];
+        json.duplicate().get(bytes);
+        return parseBytes(context, bytes, 0, bytes.length);
+    }
+
+    /**
+     * 分块读取 UTF-8 数据直接写入 Native 内存后解析，读取完毕后不会关闭 in。
+     */
+    public Object parse(InputStream in) throws IOException {
+        checkSameThread();
+        checkDestroyed();
+
+        if (in == null) {
+            throw new NullPointerException("InputStream cannot be null");
+        }
+
+        byte[] buffer = acquireTransferBuffer();
+        try {
+            return parseStream(context, in, buffer);
+        } finally {
+            transferBuffer = buffer;
+        }
+    }
+
+    /**
+     * 把 JS 对象编码为紧凑的二进制格式（带类型标记、varint 长度、字符串复用和共享对象/循环引用），
+     * 可以缓存或者跨进程传输，通过 {@link #decode(ByteBuffer)} 或者 {@link JSBinaryCodec#decode(ByteBuffer)} 还原。
+     * 格式带有版本号，和 QuickJS 的版本无关。函数、TypedArray、BigInt 和 Symbol 不支持编码，会抛出异常。
+     */
+    public ByteBuffer encode(JSObject jsObj) {
+        checkSameThread();
+        checkDestroyed();
+
+        return ByteBuffer.wrap(encode(context, jsObj.getPointer()));
+    }
+
+    /**
+     * 解码 buffer 里 position 到 limit 之间的数据，DirectByteBuffer 和带数组的 ByteBuffer 不会额外拷贝，
+     * buffer 的 position 不会改变。数据可以来自 {@link #encode(JSObject)} 或者 {@link JSBinaryCodec#encode(Object)}，
+     * 解码时会校验每个长度和下标，数据被截断或者不合法时抛出 QuickJSException。
+     */
+    public JSObject decode(ByteBuffer buffer) {
+        checkSameThread();
+        checkDestroyed();
+
+        if (buffer == null) {
+            throw new NullPointerException("Buffer cannot be null");
+        }
+
+        Object result;
+        if (buffer.isDirect()) {
+            result = decode(context, buffer, null, buffer.position(), buffer.remaining());
+        } else if (buffer.hasArray()) {
+            result = decode(context, null, buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            result = decode(context, null, bytes, 0, bytes.length);
+        }
+
+        if (!(result instanceof JSObject)) {
+            throw new QuickJSException("The decoded value is not an object: " + result);
+        }
+        return (JSObject) result;
+    }
+
     public byte[] compile(String script) {
         return compile(script, UNKNOWN_FILE);
     }
@@ -553,6 +1410,71 @@ public class QuickJSContext implements Closeable {
         return compile(context, script, fileName, true);
     }
 
+    public byte[] compile(byte[] script, String fileName) {
+        return compileBytes(script, fileName, false);
+    }
+
+    public byte[] compile(ByteBuffer script, String fileName) {
+        return compileBuffer(script, fileName, false);
+    }
+
+    public byte[] compile(File file) throws IOException {
+        return compileFile(file, false);
+    }
+
+    public byte[] compileModule(byte[] script, String fileName) {
+        return compileBytes(script, fileName, true);
+    }
+
+    public byte[] compileModule(ByteBuffer script, String fileName) {
+        return compileBuffer(script, fileName, true);
+    }
+
+    public byte[] compileModule(File file) throws IOException {
+        return compileFile(file, true);
+    }
+
+    private byte[] compileBytes(byte[] script, String fileName, boolean isModule) {
+        if (script == null) {
+            throw new NullPointerException("Script cannot be null with " + fileName);
+        }
+
+        checkSameThread();
+        checkDestroyed();
+        return compileBytes(context, script, null, 0, script.length, fileName, isModule);
+    }
+
+    private byte[] compileBuffer(ByteBuffer script, String fileName, boolean isModule) {
+        if (script == null) {
+            throw new NullPointerException("Script cannot be null with " + fileName);
+        }
+
+        checkSameThread();
+        checkDestroyed();
+
+        if (script.isDirect()) {
+            return compileBytes(context, null, script, script.position(), script.remaining(), fileName, isModule);
+        }
+
+        if (script.hasArray()) {
+            return compileBytes(context, script.array(), null, script.arrayOffset() + script.position(), script.remaining(), fileName, isModule);
+        }
+
+        byte[] bytes = new byte[script.remaining()];
+        script.duplicate().get(bytes);
+        return compileBytes(context, bytes, null, 0, bytes.length, fileName, isModule);
+    }
+
+    private byte[] compileFile(File file, boolean isModule) throws IOException {
+        if (file == null) {
+            throw new NullPointerException("File cannot be null");
+        }
+
+        checkSameThread();
+        checkDestroyed();
+        return compileFile(context, file.getPath(), file.getPath(), isModule);
+    }
+
     public Object execute(byte[] code) {
         if (code == null) {
             throw new NullPointerException("Bytecode cannot be null");
@@ -560,6 +1482,7 @@ public class QuickJSContext implements Closeable {
 
         checkSameThread();
         checkDestroyed();
+        releaseCollectedObjects();
 
         return execute(context, code);
     }
@@ -571,6 +1494,7 @@ public class QuickJSContext implements Closeable {
 
         checkSameThread();
         checkDestroyed();
+        releaseCollectedObjects();
         return evaluateModule(context, script, moduleName);
     }
 
@@ -578,6 +1502,58 @@ public class QuickJSContext implements Closeable {
         return evaluateModule(script, UNKNOWN_FILE);
     }
 
+    public Object evaluateModule(byte[] script, String moduleName) {
+        if (script == null) {
+            throw new NullPointerException("Script cannot be null with " + moduleName);
+        }
+
+        checkSameThread();
+        checkDestroyed();
+        releaseCollectedObjects();
+        return evaluateBytes(context, script, null, 0, script.length, moduleName, true);
+    }
+
+    public Object evaluateModule(ByteBuffer script, String moduleName) {
+        return evaluateBuffer(script, moduleName, true);
+    }
+
+    public Object evaluateModule(File file) throws IOException {
+        return evaluateFile(file, true);
+    }
+
+    private Object evaluateBuffer(ByteBuffer script, String fileName, boolean isModule) {
+        if (script == null) {
+            throw new NullPointerException("Script cannot be null with " + fileName);
+        }
+
+        checkSameThread();
+        checkDestroyed();
+        releaseCollectedObjects();
+
+        if (script.isDirect()) {
+            return evaluateBytes(context, null, script, script.position(), script.remaining(), fileName, isModule);
+        }
+
+        if (script.hasArray()) {
+            return evaluateBytes(context, script.array(), null, script.arrayOffset() + script.position(), script.remaining(), fileName, isModule);
+        }
+
+        byte[] bytes = new byte[script.remaining()];
+        script.duplicate().get(bytes);
+        return evaluateBytes(context, bytes, null, 0, bytes.length, fileName, isModule);
+    }
+
+    private Object evaluateFile(File file, boolean isModule) throws IOException {
+        if (file == null) {
+            throw new NullPointerException("File cannot be null");
+        }
+
+        checkSameThread();
+        checkDestroyed();
+        releaseCollectedObjects();
+        return evaluateFile(context, file.getPath(), file.getPath(), isModule);
+    }
+
     public void throwJSException(String error) {
         // throw $error;
         String errorScript = "throw " + "\"" + error + "\"" + ";";
@@ -604,7 +1580,7 @@ public class QuickJSContext implements Closeable {
     private native Object evaluate(long context, String script, String fileName);
     private native Object evaluateModule(long context, String script, String fileName);
     private native JSObject getGlobalObject(long context);
-    private native Object call(long context, long func, long thisObj, int thisObjTag, Object[] args);
+    private native Object call(long context, long func, long thisObj, int thisObjTag, byte[] argTypes, long[] argPrimitives, Object[] argReferences);
     private native Object getProperty(long context, long objValue, String name);
     private native void setProperty(long context, long objValue, String name, Object value);
     private native String stringify(long context, long objValue);
@@ -618,6 +1594,52 @@ public class QuickJSContext implements Closeable {
     private native byte[] compile(long context, String sourceCode, String fileName, boolean isModule); // Bytecode compile
     private native Object execute(long context, byte[] bytecode); // Bytecode execute
     private native Object getOwnPropertyNames(long context, long objValue);
+    private native int[] toIntArray(long context, long objValue);
+    private native long[] toLongArray(long context, long objValue);
+    private native double[] toDoubleArray(long context, long objValue);
+    private native String[] toStringArray(long context, long objValue);
+    private native void copyInto(long context, long objValue, double[] dst, int offset, int from, int len);
+    private native int getInt(long context, long objValue, String name, int defaultValue);
+    private native long getLong(long context, long objValue, String name, long defaultValue);
+    private native double getDouble(long context, long objValue, String name, double defaultValue);
+    private native boolean getBoolean(long context, long objValue, String name, boolean defaultValue);
+    private native int callInt(long context, long func, long thisObj, int thisObjTag, byte[] argTypes, long[] argPrimitives, Object[] argReferences);
+    private native double callDouble(long context, long func, long thisObj, int thisObjTag, byte[] argTypes, long[] argPrimitives, Object[] argReferences);
+    private native boolean callBoolean(long context, long func, long thisObj, int thisObjTag, byte[] argTypes, long[] argPrimitives, Object[] argReferences);
+    private native Object newIntArray(long context, int[] values);
+    private native Object newDoubleArray(long context, double[] values);
+    private native Object newStringArray(long context, String[] values);
+    private native Object newObjectArray(long context, byte[] argTypes, long[] argPrimitives, Object[] argReferences);
+    private native Object readArrayBuffer(long context, long objValue, String name, ArrayBufferReader<?> reader);
+    private native int newAtom(long context, String name);
+    private native void freeAtoms(long context, int[] atoms);
+    private native Object getPropertyByAtom(long context, long objValue, int atom);
+    private native void setPropertyByAtom(long context, long objValue, int atom, Object value);
+    private native Object[] getProperties(long context, long objValue, String[] names);
+    private native void setProperties(long context, long objValue, String[] names, byte[] argTypes, long[] argPrimitives, Object[] argReferences);
+    private native String[] keys(long context, long objValue);
+    private native JSEntries entries(long context, long objValue);
+    private native Object toJavaCollection(long context, long objValue, MapFilter filter, Object extra, MapCreator creator);
+    private native Object toJS(long context, byte[] types, long[] primitives, Object[] references, String[] keys, int size);
+    private native byte[] encode(long context, long objValue);
+    private native Object decode(long context, ByteBuffer directBuffer, byte[] array, int offset, int length);
+    private native void stringifyTo(long context, long objValue, OutputStream out, byte[] buffer) throws IOException;
+    private native Object parseBytes(long context, byte[] json, int offset, int length);
+    private native Object parseDirectBuffer(long context, ByteBuffer json, int position, int limit);
+    private native Object parseStream(long context, InputStream in, byte[] chunk) throws IOException;
+    private native Object evaluateBytes(long context, byte[] script, ByteBuffer directScript, int offset, int length, String fileName, boolean isModule);
+    private native byte[] compileBytes(long context, byte[] script, ByteBuffer directScript, int offset, int length, String fileName, boolean isModule);
+    private native Object evaluateFile(long context, String path, String fileName, boolean isModule) throws IOException;
+    private native byte[] compileFile(long context, String path, String fileName, boolean isModule) throws IOException;
+    private native void setStringCacheSize(long context, int capacity);
+    private native long[] getStringCacheStats(long context);
+    private native void freeValues(long context, long[] objValues, int[] counts, int size);
+    private native Object createFunction(long context, String name, int callFunctionId, int kind);
+    private native int getArgumentInt(long context, long args, int index);
+    private native double getArgumentDouble(long context, long args, int index);
+    private native boolean getArgumentBoolean(long context, long args, int index);
+    private native String getArgumentString(long context, long args, int index);
+    private native Object getArgumentObject(long context, long args, int index);
 
     // destroy context and runtime
     private native void destroyContext(long context);
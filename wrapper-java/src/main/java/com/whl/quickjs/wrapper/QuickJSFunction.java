@@ -19,13 +19,33 @@ public class QuickJSFunction extends QuickJSObject implements JSFunction {
     private int stashTimes = 0;
     private Status currentStatus = Status.NOT_CALLED;
 
+    // QuickJS 里 JS_TAG_OBJECT 的值
+    static final int JS_TAG_OBJECT = -1;
+
     private final long thisPointer;
     private final int thisPointerTag;
+    // Native 层创建 JSFunction 时对 this 对象计数加一，保证 this 的 JSObject 被释放（包括自动释放）之后调用仍然有效，
+    // 函数释放时由 QuickJSContext 一起释放，释放之后为 0
+    private long receiver;
 
     public QuickJSFunction(QuickJSContext context, long pointer, long thisPointer, int thisPointerTag) {
         super(context, pointer);
         this.thisPointer = thisPointer;
         this.thisPointerTag = thisPointerTag;
+        this.receiver = thisPointerTag == JS_TAG_OBJECT ? thisPointer : 0;
+    }
+
+    long getReceiver() {
+        return receiver;
+    }
+
+    /**
+     * 取出需要释放的 this 指针，只会返回一次。
+     */
+    long takeReceiver() {
+        long r = receiver;
+        receiver = 0;
+        return r;
     }
 
     @Override
@@ -41,26 +61,60 @@ public class QuickJSFunction extends QuickJSObject implements JSFunction {
 
     @Override
     public Object call(Object... args) {
-        checkRefCountIsZero();
+        beginCall();
+        try {
+            return getContext().call(this, thisPointer, thisPointerTag, args);
+        } finally {
+            endCall();
+        }
+    }
 
-        currentStatus = Status.CALLING;
-        Object ret;
+    @Override
+    public int callInt(Object... args) {
+        beginCall();
         try {
-            ret = getContext().call(this, thisPointer, thisPointerTag, args);
+            return getContext().callInt(this, thisPointer, thisPointerTag, args);
         } finally {
-            // call 可能会抛出异常，需要保障以下代码被执行，不然因为状态不对，导致无法正常 release。
-            currentStatus = Status.CALLED;
-
-            if (stashTimes > 0) {
-                // 如果有暂存，这里需要恢复下 release 操作
-                for (int i = 0; i < stashTimes; i++) {
-                    release();
-                }
-                stashTimes = 0;
-            }
+            endCall();
         }
+    }
 
-        return ret;
+    @Override
+    public double callDouble(Object... args) {
+        beginCall();
+        try {
+            return getContext().callDouble(this, thisPointer, thisPointerTag, args);
+        } finally {
+            endCall();
+        }
+    }
+
+    @Override
+    public boolean callBoolean(Object... args) {
+        beginCall();
+        try {
+            return getContext().callBoolean(this, thisPointer, thisPointerTag, args);
+        } finally {
+            endCall();
+        }
+    }
+
+    private void beginCall() {
+        checkRefCountIsZero();
+        currentStatus = Status.CALLING;
+    }
+
+    private void endCall() {
+        // call 可能会抛出异常，需要保障以下代码被执行，不然因为状态不对，导致无法正常 release。
+        currentStatus = Status.CALLED;
+
+        if (stashTimes > 0) {
+            // 如果有暂存，这里需要恢复下 release 操作
+            for (int i = 0; i < stashTimes; i++) {
+                release();
+            }
+            stashTimes = 0;
+        }
     }
 
     @Override
@@ -1,7 +1,11 @@
 package com.whl.quickjs.wrapper;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -16,7 +20,8 @@ public class QuickJSObject implements JSObject {
     private final QuickJSContext context;
     private final long pointer;
     private int refCount;
-    private Throwable stackTrace;
+    // 在 ObjectRecords 里的槽位，-1 表示没有被记录
+    int recordSlot = -1;
 
     public QuickJSObject(QuickJSContext context, long pointer) {
         this.context = context;
@@ -40,6 +45,12 @@ public class QuickJSObject implements JSObject {
         return context.getProperty(this, name);
     }
 
+    @Override
+    public Object getProperty(JSPropertyKey key) {
+        checkRefCountIsZero();
+        return context.getProperty(this, key);
+    }
+
     @Override
     public String getStringProperty(String name) {
         return getString(name);
@@ -47,12 +58,12 @@ public class QuickJSObject implements JSObject {
 
     @Override
     public void setStackTrace(Throwable stackTrace) {
-        this.stackTrace = stackTrace;
+        context.setStackTrace(this, stackTrace);
     }
 
     @Override
     public Throwable getStackTrace() {
-        return stackTrace;
+        return context.getStackTrace(this);
     }
 
     @Override
@@ -90,11 +101,47 @@ public class QuickJSObject implements JSObject {
         setPropertyObject(name, value);
     }
 
+    @Override
+    public void setProperty(String name, int[] value) {
+        setPropertyObject(name, value);
+    }
+
+    @Override
+    public void setProperty(String name, long[] value) {
+        setPropertyObject(name, value);
+    }
+
+    @Override
+    public void setProperty(String name, float[] value) {
+        setPropertyObject(name, value);
+    }
+
+    @Override
+    public void setProperty(String name, double[] value) {
+        setPropertyObject(name, value);
+    }
+
+    @Override
+    public void setProperty(String name, short[] value) {
+        setPropertyObject(name, value);
+    }
+
+    @Override
+    public void setProperty(String name, ByteBuffer value) {
+        setPropertyObject(name, value);
+    }
+
     @Override
     public void setProperty(String name, JSCallFunction value) {
         setPropertyObject(name, value);
     }
 
+    @Override
+    public void setProperty(JSPropertyKey key, Object value) {
+        checkRefCountIsZero();
+        context.setProperty(this, key, value);
+    }
+
     private void setPropertyObject(String name, Object o) {
         checkRefCountIsZero();
         context.setProperty(this, name, o);
@@ -182,12 +229,42 @@ public class QuickJSObject implements JSObject {
         return value instanceof Long ? (Long) value : null;
     }
 
+    @Override
+    public int getInt(String name, int defaultValue) {
+        checkRefCountIsZero();
+        return context.getInt(this, name, defaultValue);
+    }
+
+    @Override
+    public long getLong(String name, long defaultValue) {
+        checkRefCountIsZero();
+        return context.getLong(this, name, defaultValue);
+    }
+
+    @Override
+    public double getDouble(String name, double defaultValue) {
+        checkRefCountIsZero();
+        return context.getDouble(this, name, defaultValue);
+    }
+
+    @Override
+    public boolean getBoolean(String name, boolean defaultValue) {
+        checkRefCountIsZero();
+        return context.getBoolean(this, name, defaultValue);
+    }
+
     @Override
     public byte[] getBytes(String name) {
         Object value = getProperty(name);
         return value instanceof byte[] ? (byte[]) value : null;
     }
 
+    @Override
+    public <T> T readArrayBuffer(String name, ArrayBufferReader<T> reader) {
+        checkRefCountIsZero();
+        return context.readArrayBuffer(this, name, reader);
+    }
+
     @Override
     public JSObject getJSObjectProperty(String name) {
         return getJSObject(name);
@@ -232,6 +309,30 @@ public class QuickJSObject implements JSObject {
         return (JSArray) context.getOwnPropertyNames(this);
     }
 
+    @Override
+    public Object[] getProperties(String... names) {
+        checkRefCountIsZero();
+        return context.getProperties(this, names);
+    }
+
+    @Override
+    public void setProperties(Map<String, ?> values) {
+        checkRefCountIsZero();
+        context.setProperties(this, values);
+    }
+
+    @Override
+    public String[] keys() {
+        checkRefCountIsZero();
+        return context.keys(this);
+    }
+
+    @Override
+    public JSEntries entries() {
+        checkRefCountIsZero();
+        return context.entries(this);
+    }
+
     @Override
     public void release() {
         if (isRefCountZero()) {
@@ -254,6 +355,14 @@ public class QuickJSObject implements JSObject {
         refCount--;
     }
 
+    /**
+     * 开启对象复用后，同一个 JS 对象再次返回到 Java 层时复用已有的对象，计数加一。
+     */
+    void incrementRefCount() {
+        checkRefCountIsZero();
+        refCount++;
+    }
+
     @Override
     public HashMap<String, Object> toMap() {
         return toMap(null);
@@ -266,16 +375,13 @@ public class QuickJSObject implements JSObject {
 
     @Override
     public HashMap<String, Object> toMap(MapFilter filter) {
-        return (HashMap<String, Object>) toMap(filter, null, HashMap::new);
+        return (HashMap<String, Object>) toMap(filter, null, null);
     }
 
     @Override
     public Map<String, Object> toMap(MapFilter filter, Object extra, MapCreator mapCreator) {
-        Map<String, Object> objectMap = mapCreator.get();
-        HashMap<Long, Object> circulars = new HashMap<>();
-        convertToMap(this, objectMap, circulars, filter, extra, mapCreator);
-        circulars.clear();
-        return objectMap;
+        checkRefCountIsZero();
+        return (Map<String, Object>) context.toJavaCollection(this, filter, extra, mapCreator);
     }
 
     @Override
@@ -288,78 +394,24 @@ public class QuickJSObject implements JSObject {
         return toArray(filter, null, null);
     }
 
+    /**
+     * 旧版本逐个属性回调 Java 层的转换入口，保留给重写或者直接调用它的子类。
+     * 现在由 Native 层一次完成转换，结果会被填充到 map（Map 或者 ArrayList）里，target 也会记录到 circulars。
+     * 注意：嵌套的循环引用指向 Native 层创建的容器，而不是传入的 map。
+     *
+     * @deprecated 使用 {@link #toMap(MapFilter, Object, MapCreator)} 或者 {@link JSArray#toArray(MapFilter, Object, MapCreator)}
+     */
+    @Deprecated
+    @SuppressWarnings("unchecked")
     protected void convertToMap(Object target, Object map, HashMap<Long, Object> circulars, MapFilter filter, Object extra, MapCreator mapCreator) {
-        circulars.put(((JSObject) target).getPointer(), map);
-
-        boolean isArray = target instanceof JSArray;
-        JSArray array = isArray ? (JSArray) target : ((JSObject) target).getNames();
-        int length = array.length();
-        for (int i = 0; i < length; i++) {
-            String key = null;
-            Object value;
-            if (isArray) {
-                value = array.get(i);
-            } else {
-                key = (String) array.get(i);
-                if (filter != null && filter.shouldSkipKey(key, pointer, extra)) {
-                    continue;
-                }
-                value = ((JSObject) target).getProperty(key);
-            }
-
-            if (value instanceof JSObject) {
-                long pointer = ((JSObject) value).getPointer();
-                if (circulars.containsKey(pointer)) {
-                    // Circular reference objects.
-                    Object refValue = circulars.get(pointer);
-                    if (map instanceof Map) {
-                        ((Map<String, Object>) map).put(key, refValue);
-                    } else if (map instanceof ArrayList){
-                        ((ArrayList<Object>) map).add(refValue);
-                    }
-                    continue;
-                }
-            }
-
-            if (value instanceof JSFunction) {
-                // Unsupported type.
-                ((JSFunction) value).release();
-                continue;
-            }
-
-            if (value instanceof JSArray) {
-                ArrayList<Object> list = new ArrayList<>(((JSArray) value).length());
-                convertToMap(value, list, circulars, filter, extra, mapCreator);
-                if (map instanceof Map) {
-                    ((Map<String, Object>) map).put(key, list);
-                } else if (map instanceof ArrayList){
-                    ((ArrayList<Object>) map).add(list);
-                }
-                ((JSArray) value).release();
-                continue;
-            }
-
-            if (value instanceof JSObject) {
-                Map<String, Object> valueMap = mapCreator.get();
-                convertToMap(value, valueMap, circulars, filter, extra, mapCreator);
-                if (map instanceof Map) {
-                    ((Map<String, Object>) map).put(key, valueMap);
-                } else if (map instanceof ArrayList){
-                    ((ArrayList<Object>) map).add(valueMap);
-                }
-                ((JSObject) value).release();
-                continue;
-            }
-
-            // Primitive types.
-            if (map instanceof Map) {
-                ((Map<String, Object>) map).put(key, value);
-            } else if (map instanceof ArrayList){
-                ((ArrayList<Object>) map).add(value);
-            }
-        }
-        if (!isArray) {
-            array.release();
+        JSObject jsObj = (JSObject) target;
+        circulars.put(jsObj.getPointer(), map);
+
+        Object result = context.toJavaCollection(jsObj, filter, extra, mapCreator);
+        if (map instanceof Map && result instanceof Map) {
+            ((Map<String, Object>) map).putAll((Map<String, Object>) result);
+        } else if (map instanceof ArrayList && result instanceof ArrayList) {
+            ((ArrayList<Object>) map).addAll((ArrayList<Object>) result);
         }
     }
 
@@ -373,6 +425,18 @@ public class QuickJSObject implements JSObject {
         return context.stringify(this);
     }
 
+    @Override
+    public void stringify(OutputStream out) throws IOException {
+        checkRefCountIsZero();
+        context.stringify(this, out);
+    }
+
+    @Override
+    public void stringify(Writer writer) throws IOException {
+        checkRefCountIsZero();
+        context.stringify(this, writer);
+    }
+
     @Override
     public boolean isAlive() {
         return !isRefCountZero();
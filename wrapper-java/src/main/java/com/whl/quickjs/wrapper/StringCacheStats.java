@@ -0,0 +1,61 @@
+package com.whl.quickjs.wrapper;
+
+/**
+ * {@link QuickJSContext#getStringCacheStats()} 的结果。
+ * java 开头的计数是 JS 字符串转换为 Java String 时的命中情况，js 开头的是 Java String 转换为 JS 字符串时的命中情况。
+ */
+public final class StringCacheStats {
+
+    private final long javaHits;
+    private final long javaMisses;
+    private final long jsHits;
+    private final long jsMisses;
+    private final int size;
+    private final int capacity;
+
+    StringCacheStats(long[] stats) {
+        this.javaHits = stats[0];
+        this.javaMisses = stats[1];
+        this.jsHits = stats[2];
+        this.jsMisses = stats[3];
+        this.size = (int) stats[4];
+        this.capacity = (int) stats[5];
+    }
+
+    public long getJavaHits() {
+        return javaHits;
+    }
+
+    public long getJavaMisses() {
+        return javaMisses;
+    }
+
+    public long getJsHits() {
+        return jsHits;
+    }
+
+    public long getJsMisses() {
+        return jsMisses;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public String toString() {
+        return "StringCacheStats{" +
+                "javaHits=" + javaHits +
+                ", javaMisses=" + javaMisses +
+                ", jsHits=" + jsHits +
+                ", jsMisses=" + jsMisses +
+                ", size=" + size +
+                ", capacity=" + capacity +
+                '}';
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.whl.quickjs.wrapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 把 Native 层输出的 UTF-8 字节按块解码后写入 Writer，块末尾被截断的字符会留到下一块再解码。
+ * 只用于 {@link QuickJSContext#stringify(JSObject, Writer)}，输入保证是合法的 UTF-8。
+ */
+final class Utf8WriterOutputStream extends OutputStream {
+
+    private final Writer writer;
+    private final byte[] pending = new byte[4];
+    private int pendingLength;
+    private int pendingExpected;
+
+    Utf8WriterOutputStream(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int end = off + len;
+        while (pendingLength > 0 && off < end) {
+            pending[pendingLength++] = b[off++];
+            if (pendingLength == pendingExpected) {
+                writer.write(new String(pending, 0, pendingLength, StandardCharsets.UTF_8));
+                pendingLength = 0;
+            }
+        }
+
+        // 找到末尾不完整的多字节字符
+        int complete = end;
+        for (int i = end - 1; i >= off && i >= end - 3; i--) {
+            int c = b[i] & 0xFF;
+            if (c >= 0xC0) {
+                int expected = c >= 0xF0 ? 4 : c >= 0xE0 ? 3 : 2;
+                if (end - i < expected) {
+                    complete = i;
+                    pendingExpected = expected;
+                }
+                break;
+            } else if (c < 0x80) {
+                break;
+            }
+        }
+
+        if (complete > off) {
+            writer.write(new String(b, off, complete - off, StandardCharsets.UTF_8));
+        }
+        for (int i = complete; i < end; i++) {
+            pending[pendingLength++] = b[i];
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+}